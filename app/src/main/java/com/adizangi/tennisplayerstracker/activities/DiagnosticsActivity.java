@@ -0,0 +1,121 @@
+/*
+   The Diagnostics screen of the app
+   Shows a summary of the measurements of the latest runs of the background
+   tasks, and lets the user export all the measurements as JSON
+ */
+
+package com.adizangi.tennisplayerstracker.activities;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.adizangi.tennisplayerstracker.R;
+import com.adizangi.tennisplayerstracker.utils_data.FileManager;
+import com.adizangi.tennisplayerstracker.utils_data.MetricsSummary;
+import com.adizangi.tennisplayerstracker.utils_data.RunMetrics;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.appcompat.app.ActionBar;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+import androidx.core.content.FileProvider;
+
+public class DiagnosticsActivity extends AppCompatActivity {
+
+    /* Must match the cache path in res/xml/file_paths.xml */
+    private static final String EXPORT_DIRECTORY = "diagnostics";
+    private static final String EXPORT_FILENAME = "runs.json";
+
+    private List<RunMetrics> runs;
+
+    private View.OnClickListener exportListener = new View.OnClickListener() {
+        /*
+           Called when the export button is clicked
+           Shares the measurements of the saved runs as JSON
+         */
+        @Override
+        public void onClick(View v) {
+            exportRuns();
+        }
+    };
+
+    @Override
+    /*
+       Displays the Diagnostics screen
+       It includes an action bar with a back button that returns to
+       MainActivity, the summary of the saved runs, and a button that exports
+       the runs
+     */
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_diagnostics);
+        Toolbar toolbar = findViewById(R.id.action_bar);
+        setSupportActionBar(toolbar);
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setDisplayHomeAsUpEnabled(true);
+        }
+        runs = new FileManager(this).readRunMetrics();
+        if (runs == null) {
+            runs = new ArrayList<>();
+        }
+        TextView report = findViewById(R.id.diagnostics_report);
+        report.setText(new MetricsSummary(runs).getReport());
+        Button exportButton = findViewById(R.id.export_button);
+        exportButton.setOnClickListener(exportListener);
+    }
+
+    /*
+       Lets the user share the measurements of the saved runs as a JSON array
+       with another app
+       The JSON is written to a file in the cache directory and shared
+       through the FileProvider, since the runs may be too large to be sent
+       in the intent itself
+     */
+    private void exportRuns() {
+        try {
+            JSONArray runsJSON = new JSONArray();
+            for (RunMetrics run : runs) {
+                runsJSON.put(run.toJSON());
+            }
+            File directory = new File(getCacheDir(), EXPORT_DIRECTORY);
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Can't create " + directory);
+            }
+            File exportFile = new File(directory, EXPORT_FILENAME);
+            try (Writer writer = new OutputStreamWriter(
+                    new FileOutputStream(exportFile), StandardCharsets.UTF_8)) {
+                writer.write(runsJSON.toString(2));
+            }
+            Uri exportURI = FileProvider.getUriForFile(this,
+                    getPackageName() + ".fileprovider", exportFile);
+            Intent sendIntent = new Intent(Intent.ACTION_SEND)
+                    .setType("application/json")
+                    .putExtra(Intent.EXTRA_STREAM, exportURI)
+                    .addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            startActivity(Intent.createChooser(sendIntent,
+                    getString(R.string.button_export)));
+        } catch (JSONException | IOException e) {
+            e.printStackTrace();
+            Toast.makeText(this, "There was a problem with exporting the runs",
+                    Toast.LENGTH_LONG).show();
+        }
+    }
+
+}
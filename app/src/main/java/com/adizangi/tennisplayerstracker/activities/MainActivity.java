@@ -31,7 +31,6 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 
 import com.adizangi.tennisplayerstracker.BuildConfig;
-import com.adizangi.tennisplayerstracker.TimeActivity;
 import com.adizangi.tennisplayerstracker.adapters.TabAdapter;
 import com.adizangi.tennisplayerstracker.dialogs.CreditsDialog;
 import com.adizangi.tennisplayerstracker.dialogs.FeaturesDialog;
@@ -117,6 +116,7 @@ public class MainActivity extends AppCompatActivity {
        the app
        If 'Credits' was selected, shows a dialog that displays a list of
        credits for the information and images in this app
+       If 'Diagnostics' was selected, opens DiagnosticsActivity
        If the action was not recognized, passes it to the superclass
      */
     @Override
@@ -135,10 +135,9 @@ public class MainActivity extends AppCompatActivity {
                 CreditsDialog creditsDialog = new CreditsDialog();
                 creditsDialog.show(getSupportFragmentManager(), "credits");
                 return true;
-            case  R.id.item_time:
-                // Remove
-                Intent i = new Intent(this, TimeActivity.class);
-                startActivity(i);
+            case R.id.item_diagnostics:
+                Intent diagnosticsIntent = new Intent(this, DiagnosticsActivity.class);
+                startActivity(diagnosticsIntent);
                 return true;
             default:
                 return super.onOptionsItemSelected(item);
@@ -105,15 +105,17 @@ public class ProgressBarActivity extends AppCompatActivity
        Sets the 'use wifi only' preference in Settings to the given boolean,
        so that the app will always use the connection type given by the boolean
        Begins a work chain that downloads content, which consists of a worker
-       that fetches tennis data from the ESPN website, followed by a worker
-       that sends a notification with the newest events
-       Registers a live Observer for the work chain
+       that fetches the notification data, followed by a worker that sends a
+       notification with the newest events, followed by a worker that fetches
+       the rest of the tennis data from the ESPN website
+       Registers a live Observer for the last worker in the chain, since the
+       app can open only after the data from that worker is saved
      */
     private void downloadContent(boolean useWifiOnly) {
         backgroundManager.setNetworkPreference(useWifiOnly);
         UUID[] uuids = backgroundManager.downloadContent();
         WorkManager.getInstance(this)
-                .getWorkInfoByIdLiveData(uuids[0])
+                .getWorkInfoByIdLiveData(uuids[uuids.length - 1])
                 .observe(this, workObserver);
     }
 
@@ -182,6 +184,12 @@ public class ProgressBarActivity extends AppCompatActivity
                 .getInt(FetchDataWorker.PROGRESS_KEY, 0);
         progressBar.setProgress(progressPercentage);
         switch (workInfo.getState()) {
+            case BLOCKED:
+                /* Shows regular waiting message while the workers before it
+                   in the chain are running */
+                progressState.setText(getString(R.string.text_preparing_to_start));
+                message.setText(getString(R.string.text_waiting_message));
+                break;
             case ENQUEUED:
                 boolean isRetrying = prefs.getBoolean(getString(R.string.is_worker_retrying_key), false);
                 if (isRetrying) {
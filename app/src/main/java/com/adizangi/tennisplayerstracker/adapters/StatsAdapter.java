@@ -5,15 +5,22 @@
 package com.adizangi.tennisplayerstracker.adapters;
 
 import android.content.Context;
+import android.content.res.Resources;
 import android.graphics.Color;
 import android.view.LayoutInflater;
+import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.adizangi.tennisplayerstracker.R;
+import com.adizangi.tennisplayerstracker.utils_data.ImageLoader;
 import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+import com.adizangi.tennisplayerstracker.utils_data.TrendAggregates;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import androidx.annotation.NonNull;
 import androidx.constraintlayout.widget.ConstraintLayout;
@@ -23,6 +30,20 @@ public class StatsAdapter extends RecyclerView.Adapter
         <StatsAdapter.ViewHolder> {
 
     private List<PlayerStats> stats;
+    private TrendAggregates trendAggregates;
+    private Map<String, String> headToHeads;
+    private OnStatsShownListener onStatsShownListener;
+    private ImageLoader imageLoader;
+    private int headshotSize;
+    private int flagWidth;
+    private int flagHeight;
+
+    /*
+       Listens for PlayerStats objects that are shown in the RecyclerView
+     */
+    public interface OnStatsShownListener {
+        void onStatsShown(PlayerStats playerStats);
+    }
 
     /*
        Holds a reference to the views of an item in the RecyclerView
@@ -32,6 +53,9 @@ public class StatsAdapter extends RecyclerView.Adapter
         TextView name;
         TextView tournamentStanding;
         TextView statsSummary;
+        TextView trendSummary;
+        ImageView headshot;
+        ImageView flag;
 
         /*
            Constructs a ViewHolder with the given layout of an item in the RecyclerView
@@ -41,23 +65,50 @@ public class StatsAdapter extends RecyclerView.Adapter
             name = layout.findViewById(R.id.name);
             tournamentStanding = layout.findViewById(R.id.tournament_standing);
             statsSummary = layout.findViewById(R.id.stats_summary);
+            trendSummary = layout.findViewById(R.id.trend_summary);
+            headshot = layout.findViewById(R.id.headshot);
+            flag = layout.findViewById(R.id.flag);
         }
     }
 
     /*
        Constructs a StatsAdapter with the given list of PlayerStats objects
+       and the given trends of the players, that tells the given listener
+       about each object it shows
      */
-    public StatsAdapter(List<PlayerStats> stats) {
+    public StatsAdapter(List<PlayerStats> stats,
+                        TrendAggregates trendAggregates,
+                        OnStatsShownListener onStatsShownListener) {
         this.stats = stats;
+        this.trendAggregates = trendAggregates;
+        headToHeads = new HashMap<>();
+        this.onStatsShownListener = onStatsShownListener;
+    }
+
+    /*
+       Sets the head to head records to show, which is a map from a player's
+       name to the summaries of the player's records
+     */
+    public void setHeadToHeads(Map<String, String> headToHeads) {
+        this.headToHeads = headToHeads;
     }
 
     /*
        Creates a new ViewHolder and returns it
+       The sizes of the images are read once, since the images are decoded
+       for the size of their views
      */
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         final Context context = parent.getContext();
+        if (imageLoader == null) {
+            imageLoader = ImageLoader.getInstance(context);
+            Resources resources = context.getResources();
+            headshotSize = resources.getDimensionPixelSize(R.dimen.headshot_size);
+            flagWidth = resources.getDimensionPixelSize(R.dimen.flag_width);
+            flagHeight = resources.getDimensionPixelSize(R.dimen.flag_height);
+        }
         LayoutInflater inflater = LayoutInflater.from(context);
         ConstraintLayout layout = (ConstraintLayout)
                 inflater.inflate(R.layout.stats_list_item, parent, false);
@@ -66,13 +117,34 @@ public class StatsAdapter extends RecyclerView.Adapter
 
     /*
        Fills the views in the given ViewHolder with information from the
-       PlayerStats object that corresponds to the given position
+       PlayerStats object that corresponds to the given position, the
+       player's trend and head to head records, and tells the listener that
+       the object is shown
+       The trend is hidden if the player has neither yet
+       The player's headshot and flag are loaded in the background, and the
+       flag is hidden if the player has none
      */
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
         PlayerStats playerStats = stats.get(position);
+        onStatsShownListener.onStatsShown(playerStats);
         holder.name.setText(playerStats.getName());
+        imageLoader.load(playerStats.getHeadshotURL(), holder.headshot,
+                headshotSize, headshotSize);
+        String flagURL = playerStats.getFlagURL();
+        holder.flag.setVisibility(flagURL == null || flagURL.isEmpty() ?
+                View.GONE : View.VISIBLE);
+        imageLoader.load(flagURL, holder.flag, flagWidth, flagHeight);
         holder.statsSummary.setText(playerStats.getStatsSummary());
+        TrendAggregates.PlayerTrend trend = trendAggregates.getTrend(playerStats.getName());
+        String trendSummary = trend == null ? "" :
+                trend.getSummary(trendAggregates.getLatestDay());
+        String headToHead = headToHeads.get(playerStats.getName());
+        if (headToHead != null) {
+            trendSummary += (trendSummary.isEmpty() ? "" : "\n") + headToHead;
+        }
+        holder.trendSummary.setText(trendSummary);
+        holder.trendSummary.setVisibility(trendSummary.isEmpty() ? View.GONE : View.VISIBLE);
         String tournamentStanding = playerStats.getTournamentStanding();
         holder.tournamentStanding.setText(tournamentStanding);
         if (tournamentStanding.contains("advanced")) {
@@ -8,6 +8,10 @@
    to the next round, red text that says the player is out of the tournament,
    or gray text that says the player is not playing
    The sections are sorted so green sections are first and gray sections are last
+   Below the stats, each section shows the player's ranking trend, recent
+   form and titles progression, once there are snapshots of a few days, and
+   the player's head to head records against the other players in the list
+   Pulling the list down refreshes the statistics of the players in the list
  */
 
 package com.adizangi.tennisplayerstracker.fragments;
@@ -25,15 +29,20 @@ import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
+
+import java.util.Map;
 
 import com.adizangi.tennisplayerstracker.R;
 import com.adizangi.tennisplayerstracker.adapters.StatsAdapter;
+import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
 import com.adizangi.tennisplayerstracker.view_models.TabsViewModel;
 
 public class StatsTabFragment extends Fragment {
 
     private TabsViewModel tabsViewModel;
     private StatsAdapter statsAdapter;
+    private SwipeRefreshLayout swipeRefreshLayout;
 
     private Observer<String> addedPlayerObserver = new Observer<String>() {
         @Override
@@ -46,6 +55,69 @@ public class StatsTabFragment extends Fragment {
         }
     };
 
+    private Observer<TabsViewModel.RowUpdate> updatedRowObserver =
+            new Observer<TabsViewModel.RowUpdate>() {
+        @Override
+        /*
+           Updates the row of the player whose statistics were loaded, and
+           moves it if its position in the list changed
+         */
+        public void onChanged(TabsViewModel.RowUpdate rowUpdate) {
+            if (rowUpdate.getOldPosition() != rowUpdate.getNewPosition()) {
+                statsAdapter.notifyItemMoved(
+                        rowUpdate.getOldPosition(), rowUpdate.getNewPosition());
+            }
+            statsAdapter.notifyItemChanged(rowUpdate.getNewPosition());
+        }
+    };
+
+    private StatsAdapter.OnStatsShownListener statsShownListener =
+            new StatsAdapter.OnStatsShownListener() {
+        /*
+           Lets the ViewModel load the given statistics if they are missing
+           or stale
+         */
+        @Override
+        public void onStatsShown(PlayerStats playerStats) {
+            tabsViewModel.onPlayerStatsShown(playerStats);
+        }
+    };
+
+    private Observer<Boolean> isRefreshingObserver = new Observer<Boolean>() {
+        @Override
+        /*
+           Shows the refresh indicator while the selected players are
+           refreshed
+         */
+        public void onChanged(Boolean isRefreshing) {
+            swipeRefreshLayout.setRefreshing(isRefreshing);
+        }
+    };
+
+    private SwipeRefreshLayout.OnRefreshListener refreshListener =
+            new SwipeRefreshLayout.OnRefreshListener() {
+        /*
+           Called when the user pulls the list down
+           Refreshes the statistics of the selected players
+         */
+        @Override
+        public void onRefresh() {
+            tabsViewModel.refreshSelectedPlayers();
+        }
+    };
+
+    private Observer<Map<String, String>> headToHeadsObserver =
+            new Observer<Map<String, String>>() {
+        @Override
+        /*
+           Shows the given head to head records of the players in the list
+         */
+        public void onChanged(Map<String, String> headToHeads) {
+            statsAdapter.setHeadToHeads(headToHeads);
+            statsAdapter.notifyDataSetChanged();
+        }
+    };
+
     private Observer<String> removedPlayerObserver = new Observer<String>() {
         @Override
         /*
@@ -74,7 +146,9 @@ public class StatsTabFragment extends Fragment {
        Initializes the sub-views of the view returned by onCreateView()
        Fills the RecyclerView such that each entry contains statistics and
        tournament results of one of the user's selected players
-       Sets responses to change in the user's selected players
+       Sets responses to change in the user's selected players and to
+       statistics that were loaded
+       Pulling the list down refreshes the selected players' statistics
      */
     @Override
     public void onViewCreated(@NonNull View view,
@@ -87,12 +161,21 @@ public class StatsTabFragment extends Fragment {
         RecyclerView statsRecyclerView = view.findViewById(R.id.stats_recycler_view);
         RecyclerView.LayoutManager manager = new LinearLayoutManager(requireContext());
         statsRecyclerView.setLayoutManager(manager);
-        statsAdapter = new StatsAdapter(tabsViewModel.getSelectedPlayersStats());
+        statsAdapter = new StatsAdapter(tabsViewModel.getSelectedPlayersStats(),
+                tabsViewModel.getTrendAggregates(), statsShownListener);
         statsRecyclerView.setAdapter(statsAdapter);
+        swipeRefreshLayout = view.findViewById(R.id.stats_swipe_refresh);
+        swipeRefreshLayout.setOnRefreshListener(refreshListener);
         MutableLiveData<String> addedPlayer = tabsViewModel.getAddedPlayer();
         addedPlayer.observe(getViewLifecycleOwner(), addedPlayerObserver);
         MutableLiveData<String> removedPlayer = tabsViewModel.getRemovedPlayer();
         removedPlayer.observe(getViewLifecycleOwner(), removedPlayerObserver);
+        MutableLiveData<TabsViewModel.RowUpdate> updatedRow = tabsViewModel.getUpdatedRow();
+        updatedRow.observe(getViewLifecycleOwner(), updatedRowObserver);
+        MutableLiveData<Boolean> isRefreshing = tabsViewModel.getIsRefreshing();
+        isRefreshing.observe(getViewLifecycleOwner(), isRefreshingObserver);
+        MutableLiveData<Map<String, String>> headToHeads = tabsViewModel.getHeadToHeads();
+        headToHeads.observe(getViewLifecycleOwner(), headToHeadsObserver);
     }
 
 }
@@ -0,0 +1,90 @@
+/*
+   Limits the number of bytes that PageFetcher downloads during a run of a
+   background task, so that a refresh on a metered network can't use more
+   data than the user allowed
+   The budget belongs to the run that started it: it is active on the
+   thread that started it and on the threads that this thread creates while
+   it is active, like the pools of TournamentPageFetcher and
+   PlayerPagePipeline, so runs that overlap each have their own budget, and
+   requests that the user's actions send from other threads are not limited
+   The budget is soft- it is checked before each request is sent and the
+   body is charged after it was read, so requests that are sent in parallel
+   when the budget is almost used up can go over it, by up to
+   RateLimiter.MAX_CONCURRENCY bodies
+ */
+
+package com.adizangi.tennisplayerstracker.network_calls;
+
+public class ByteBudget {
+
+    /* A limit that means the bytes are counted but not limited */
+    public static final long NO_LIMIT = 0;
+
+    private static final InheritableThreadLocal<ByteBudget> runBudget =
+            new InheritableThreadLocal<>();
+
+    private final long maxBytes;
+    private long usedBytes;
+
+    /*
+       Starts a budget of the given number of bytes, or a budget that only
+       counts the bytes if the given number is NO_LIMIT, for the run on the
+       current thread
+       Returns the budget, which is finished when the run ends
+     */
+    public static ByteBudget start(long maxBytes) {
+        ByteBudget budget = new ByteBudget(maxBytes);
+        runBudget.set(budget);
+        return budget;
+    }
+
+    /*
+       Constructs a ByteBudget of the given number of bytes
+     */
+    private ByteBudget(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /*
+       Stops the budget on the current thread, and returns the number of
+       bytes that were downloaded since it started
+     */
+    public synchronized long finish() {
+        if (runBudget.get() == this) {
+            runBudget.remove();
+        }
+        return usedBytes;
+    }
+
+    /*
+       Adds the given number of bytes that were downloaded to the budget of
+       the current thread
+       Does nothing if no budget is active on the current thread
+     */
+    static void charge(long bytes) {
+        ByteBudget budget = runBudget.get();
+        if (budget != null) {
+            synchronized (budget) {
+                budget.usedBytes += bytes;
+            }
+        }
+    }
+
+    /*
+       Checks that the budget of the current thread isn't used up before the
+       request to the given URL is sent
+       Throws ByteBudgetExceededException if it is used up
+     */
+    static void checkRemaining(String url) throws ByteBudgetExceededException {
+        ByteBudget budget = runBudget.get();
+        if (budget == null || budget.maxBytes == NO_LIMIT) {
+            return;
+        }
+        synchronized (budget) {
+            if (budget.usedBytes >= budget.maxBytes) {
+                throw new ByteBudgetExceededException(url, budget.maxBytes);
+            }
+        }
+    }
+
+}
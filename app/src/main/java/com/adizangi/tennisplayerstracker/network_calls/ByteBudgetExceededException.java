@@ -0,0 +1,24 @@
+/*
+   Thrown when a request isn't sent because the ByteBudget of the run is
+   used up
+   Retrying the request can't help, so the run should stop and leave the
+   rest of the work to a refresh with a larger budget
+ */
+
+package com.adizangi.tennisplayerstracker.network_calls;
+
+import java.io.IOException;
+
+public class ByteBudgetExceededException extends IOException {
+
+    private static final long serialVersionUID = 433342214579841417L;
+
+    /*
+       Constructs a ByteBudgetExceededException for the request to the given
+       URL, with the given budget in bytes
+     */
+    public ByteBudgetExceededException(String url, long maxBytes) {
+        super("The budget of " + maxBytes + " bytes is used up before " + url);
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+   Stops requests to a host that keeps failing, so that the app doesn't keep
+   sending requests that will fail to a host that is down or overloaded
+   Each host has a breaker that is closed at first, which lets all the
+   requests through
+   After a number of failures in a row the breaker opens, and requests to
+   the host are refused until a cool down period passes
+   Then the breaker is half open: one request is let through as a probe,
+   and the breaker closes if it succeeds or opens again if it fails
+ */
+
+package com.adizangi.tennisplayerstracker.network_calls;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class CircuitBreaker {
+
+    /* Breaker states */
+    private static final int STATE_CLOSED = 0;
+    private static final int STATE_OPEN = 1;
+    private static final int STATE_HALF_OPEN = 2;
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Map<String, HostBreaker> hosts = new HashMap<>();
+
+    /*
+       Constructs a CircuitBreaker that opens after the given number of
+       failures in a row, and stays open for the given number of milliseconds
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /*
+       Returns true if a request may be sent to the given host now
+       When the breaker of the host is half open, only the first caller gets
+       true, and the others get false until the probe's result is recorded
+       If a probe's result isn't recorded within the cool down period,
+       another probe is let through
+     */
+    public synchronized boolean allowRequest(String host) {
+        HostBreaker breaker = getBreaker(host);
+        switch (breaker.state) {
+            case STATE_CLOSED:
+                return true;
+            case STATE_OPEN:
+                if (System.nanoTime() - breaker.openedNanos < openMillis * 1000000) {
+                    return false;
+                }
+                breaker.state = STATE_HALF_OPEN;
+                breaker.openedNanos = System.nanoTime();
+                return true;
+            default:
+                /* A probe is already in flight, unless it was lost without
+                   its result being recorded */
+                if (System.nanoTime() - breaker.openedNanos < openMillis * 1000000) {
+                    return false;
+                }
+                breaker.openedNanos = System.nanoTime();
+                return true;
+        }
+    }
+
+    /*
+       Records that a request to the given host got a response, and closes
+       its breaker
+     */
+    public synchronized void recordSuccess(String host) {
+        HostBreaker breaker = getBreaker(host);
+        breaker.state = STATE_CLOSED;
+        breaker.failures = 0;
+    }
+
+    /*
+       Records that a request to the given host failed
+       Opens the breaker of the host if it was a probe, or if the host has
+       failed failureThreshold times in a row
+     */
+    public synchronized void recordFailure(String host) {
+        HostBreaker breaker = getBreaker(host);
+        breaker.failures++;
+        if (breaker.state == STATE_HALF_OPEN || breaker.failures >= failureThreshold) {
+            open(breaker);
+        }
+    }
+
+    /*
+       Opens the breaker of the given host right away, without waiting for
+       more failures
+       Used when the host can't be reached at all, so more requests can't
+       succeed
+     */
+    public synchronized void trip(String host) {
+        open(getBreaker(host));
+    }
+
+    /*
+       Returns true if the breaker of the given host is open or half open
+     */
+    public synchronized boolean isOpen(String host) {
+        return getBreaker(host).state != STATE_CLOSED;
+    }
+
+    /*
+       Opens the given breaker and starts its cool down period
+     */
+    private void open(HostBreaker breaker) {
+        breaker.state = STATE_OPEN;
+        breaker.openedNanos = System.nanoTime();
+    }
+
+    /*
+       Returns the breaker of the given host, and creates a closed one if
+       there is none
+     */
+    private HostBreaker getBreaker(String host) {
+        HostBreaker breaker = hosts.get(host);
+        if (breaker == null) {
+            breaker = new HostBreaker();
+            hosts.put(host, breaker);
+        }
+        return breaker;
+    }
+
+    /*
+       Holds the state of the breaker of one host
+     */
+    private static class HostBreaker {
+
+        int state = STATE_CLOSED;
+        int failures;
+        long openedNanos;
+    }
+
+}
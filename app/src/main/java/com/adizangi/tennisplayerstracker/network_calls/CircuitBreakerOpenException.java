@@ -0,0 +1,24 @@
+/*
+   Thrown when a request is refused because the CircuitBreaker of its host
+   is open
+   This means the host is down or overloaded, so the whole task should be
+   retried later instead of the single request
+ */
+
+package com.adizangi.tennisplayerstracker.network_calls;
+
+import java.io.IOException;
+
+public class CircuitBreakerOpenException extends IOException {
+
+    private static final long serialVersionUID = 5712942579916288525L;
+
+    /*
+       Constructs a CircuitBreakerOpenException for the given host, with the
+       failure that opened the breaker as the cause, which may be null
+     */
+    public CircuitBreakerOpenException(String host, Throwable cause) {
+        super("The circuit breaker of " + host + " is open", cause);
+    }
+
+}
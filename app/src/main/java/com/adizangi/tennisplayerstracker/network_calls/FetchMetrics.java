@@ -0,0 +1,98 @@
+/*
+   Collects a RequestMetric for every request that PageFetcher sends while
+   a run is being recorded
+   The requests are sent from many threads and many classes, so they are
+   collected in one place for the whole process instead of being passed
+   through every fetcher
+   Runs that overlap share the requests that were sent while both of them
+   were recorded
+ */
+
+package com.adizangi.tennisplayerstracker.network_calls;
+
+import com.adizangi.tennisplayerstracker.utils_data.RequestMetric;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FetchMetrics {
+
+    private static final List<RequestMetric> requests = new ArrayList<>();
+    private static int numOfActiveRuns;
+
+    /*
+       Starts collecting requests for a run
+       Returns a mark that is passed to finishRun() when the run ends
+     */
+    public static synchronized int startRun() {
+        numOfActiveRuns++;
+        return requests.size();
+    }
+
+    /*
+       Stops collecting requests for the run that started with the given
+       mark, and returns the requests that were sent since it started
+       When no run is recorded anymore, the collected requests are released
+     */
+    public static synchronized List<RequestMetric> finishRun(int mark) {
+        List<RequestMetric> runRequests =
+                new ArrayList<>(requests.subList(Math.min(mark, requests.size()),
+                        requests.size()));
+        numOfActiveRuns = Math.max(numOfActiveRuns - 1, 0);
+        if (numOfActiveRuns == 0) {
+            requests.clear();
+        }
+        return runRequests;
+    }
+
+    /*
+       Records the given attempt of a request to the given URL of the given
+       page kind, that got the given status after the given latency
+       Does nothing if no run is recorded
+     */
+    static synchronized void recordRequest(String url,
+                                           String pageKind,
+                                           int attempt,
+                                           long latencyMillis,
+                                           int status) {
+        if (numOfActiveRuns > 0) {
+            requests.add(new RequestMetric(url, pageKind, attempt, latencyMillis, status));
+        }
+    }
+
+    /*
+       Sets the number of bytes that were read from the body of the latest
+       request to the given URL
+     */
+    static synchronized void recordBytes(String url, long bytes) {
+        RequestMetric request = getLatestRequest(url);
+        if (request != null) {
+            request.setBytes(bytes);
+        }
+    }
+
+    /*
+       Sets the time in milliseconds that parsing the body of the latest
+       request to the given URL took
+     */
+    static synchronized void recordParse(String url, long parseMillis) {
+        RequestMetric request = getLatestRequest(url);
+        if (request != null) {
+            request.setParseMillis(parseMillis);
+        }
+    }
+
+    /*
+       Returns the latest recorded request to the given URL
+       Returns null if there is none
+     */
+    private static RequestMetric getLatestRequest(String url) {
+        for (int i = requests.size() - 1; i >= 0; i--) {
+            if (requests.get(i).getURL().equals(url)) {
+                return requests.get(i);
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+   Keeps the images that PageFetcher downloaded on the disk, as the bytes
+   that were downloaded, so an image is downloaded only once while it is in
+   the cache
+   The images are kept as they were downloaded and not as bitmaps, since the
+   compressed bytes are much smaller, and the same image may be shown in
+   views of different sizes
+   When the cache grows above its limit, the images that were used least
+   recently are deleted
+ */
+
+package com.adizangi.tennisplayerstracker.network_calls;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class ImageCache {
+
+    private static final String ENTRY_SUFFIX = ".img";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long maxBytes;
+    private long totalBytes = -1;
+
+    /*
+       Constructs an ImageCache that keeps the images in the given directory,
+       up to the given number of bytes
+     */
+    public ImageCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /*
+       Returns the bytes of the cached image with the given URL, or null if
+       the image isn't cached or can't be read
+       Marks the image as used now
+     */
+    public synchronized byte[] get(String url) {
+        File file = getFile(url);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (!url.equals(in.readUTF())) {
+                return null;
+            }
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            file.setLastModified(System.currentTimeMillis());
+            return data;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /*
+       Saves the given bytes of the image with the given URL
+       Deletes the images that were used least recently if the cache is
+       above its limit
+     */
+    public synchronized void put(String url, byte[] data) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+        File file = getFile(url);
+        File tempFile = new File(directory, file.getName() + TEMP_SUFFIX);
+        long oldLength = file.length();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tempFile))) {
+            out.writeUTF(url);
+            out.writeInt(data.length);
+            out.write(data);
+        } catch (Exception e) {
+            e.printStackTrace();
+            tempFile.delete();
+            return;
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            return;
+        }
+        if (totalBytes == -1) {
+            totalBytes = getDirectorySize();
+        } else {
+            totalBytes += file.length() - oldLength;
+        }
+        trim();
+    }
+
+    /*
+       Deletes the image with the given URL, if it is cached
+     */
+    public synchronized void remove(String url) {
+        File file = getFile(url);
+        long length = file.length();
+        if (file.delete() && totalBytes != -1) {
+            totalBytes -= length;
+        }
+    }
+
+    /*
+       Returns the file of the image with the given URL
+     */
+    private File getFile(String url) {
+        return new File(directory, PageCache.getKeyHash(url) + ENTRY_SUFFIX);
+    }
+
+    /*
+       Returns the number of bytes of all the images in the directory
+     */
+    private long getDirectorySize() {
+        long size = 0;
+        for (File file : listEntries()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    /*
+       Deletes the images that were used least recently until the cache is
+       within its limit
+     */
+    private void trim() {
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+        File[] files = listEntries();
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+
+    /*
+       Returns the files of the images in the directory
+     */
+    private File[] listEntries() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int numOfEntries = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(ENTRY_SUFFIX)) {
+                files[numOfEntries++] = file;
+            }
+        }
+        return Arrays.copyOf(files, numOfEntries);
+    }
+
+}
@@ -4,25 +4,67 @@
 
 package com.adizangi.tennisplayerstracker.network_calls;
 
-import org.jsoup.Jsoup;
+import com.adizangi.tennisplayerstracker.utils_data.ScheduleSnapshot;
+import com.adizangi.tennisplayerstracker.utils_data.TournamentSummary;
+
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class NotificationFetcher {
 
     private Document tSchedule;
     private Document ySchedule;
+    private ScheduleSnapshot ySnapshot;
+    private List<String> todayURLs;
+    private Map<String, TournamentSummary> todayTournaments;
+    private boolean isFinalToday;
+    private TournamentPageFetcher pageFetcher;
+    private TournamentIndex tournamentIndex;
 
     /*
        Constructs a NotificationFetcher with the given HTML documents of
        today's match schedule and yesterday's match schedule from ESPN
      */
     public NotificationFetcher(Document tSchedule, Document ySchedule) {
+        this(tSchedule, ySchedule, null);
+    }
+
+    /*
+       Constructs a NotificationFetcher with the given HTML document of
+       today's match schedule from ESPN, and either the HTML document of
+       yesterday's match schedule or the snapshot of yesterday's schedule that
+       was saved in the previous run
+       If the snapshot is given, yesterday's schedule document may be null,
+       and only the tournament pages whose results were not known in the
+       previous run are fetched again
+       The snapshot must be of yesterday's schedule, or null
+     */
+    public NotificationFetcher(Document tSchedule,
+                               Document ySchedule,
+                               ScheduleSnapshot ySnapshot) {
         this.tSchedule = tSchedule;
         this.ySchedule = ySchedule;
+        this.ySnapshot = ySnapshot;
+        pageFetcher = new TournamentPageFetcher();
+    }
+
+    /*
+       Makes getNotificationText() also add yesterday's and today's
+       tournament pages to the given index, so that a crawl that follows
+       doesn't fetch them again
+       The index needs all of yesterday's pages, so the pages whose results
+       are in the snapshot are fetched too
+     */
+    public void setTournamentIndex(TournamentIndex tournamentIndex) {
+        this.tournamentIndex = tournamentIndex;
     }
 
     /*
@@ -31,61 +73,179 @@ public class NotificationFetcher {
        May throw IOException
      */
     public String getNotificationText() throws IOException {
-        String notification = yesterdayResults() + todaySchedule();
+        List<String> yesterdayURLs = getYesterdayTournamentURLs();
+        todayURLs = pageFetcher.getTournamentURLs(tSchedule);
+        Set<String> urlsToFetch = new LinkedHashSet<>();
+        for (String tournamentURL : yesterdayURLs) {
+            if (tournamentIndex != null || getSavedSummary(tournamentURL) == null) {
+                urlsToFetch.add(tournamentURL);
+            }
+        }
+        urlsToFetch.addAll(todayURLs);
+        Map<String, Document> tournamentDocs =
+                pageFetcher.getTournamentPages(urlsToFetch);
+        if (tournamentIndex != null) {
+            for (String tournamentURL : yesterdayURLs) {
+                tournamentIndex.addTournamentPage(tournamentDocs.get(tournamentURL), false);
+            }
+            for (String tournamentURL : todayURLs) {
+                tournamentIndex.addTournamentPage(tournamentDocs.get(tournamentURL), true);
+            }
+        }
+        todayTournaments = new HashMap<>();
+        for (String tournamentURL : todayURLs) {
+            todayTournaments.put(tournamentURL,
+                    summarizeTournament(tournamentDocs.get(tournamentURL)));
+        }
+        String notification = yesterdayResults(yesterdayURLs, tournamentDocs) +
+                todaySchedule(tournamentDocs);
         return notification;
     }
 
+    /*
+       Returns a snapshot of today's schedule with the given date in the
+       format yyyyMMdd, which can be saved and given to tomorrow's
+       NotificationFetcher
+       Only safe to call after getNotificationText()
+     */
+    public ScheduleSnapshot getTodaySnapshot(String date) {
+        return new ScheduleSnapshot(date, todayURLs, todayTournaments);
+    }
+
+    /*
+       Returns the number of tournaments that are played today
+       Does not require yesterday's match schedule
+     */
+    public int getActiveTournamentCount() {
+        if (Selector.NO_MATCH.hasMatch(tSchedule)) {
+            return 0;
+        }
+        return Selector.SCORE_HEADLINE.select(tSchedule).size();
+    }
+
+    /*
+       Returns true if a singles final is played today
+       Only accurate after getNotificationText() was called
+     */
+    public boolean isFinalToday() {
+        return isFinalToday;
+    }
+
+    /*
+       Returns the URLs of yesterday's tournaments, in the order they appear
+       in yesterday's schedule
+       They are taken from yesterday's schedule document if it was given, and
+       from the snapshot of yesterday's schedule otherwise
+     */
+    private List<String> getYesterdayTournamentURLs() {
+        if (ySchedule != null) {
+            return pageFetcher.getTournamentURLs(ySchedule);
+        }
+        return ySnapshot.getTournamentURLs();
+    }
+
+    /*
+       Returns the summary of yesterday's tournament with the given URL from
+       the snapshot of yesterday's schedule
+       Returns null if there is no snapshot, if the tournament is not in the
+       snapshot, or if its final results were not known yet
+     */
+    private TournamentSummary getSavedSummary(String tournamentURL) {
+        if (ySnapshot == null) {
+            return null;
+        }
+        TournamentSummary summary = ySnapshot.getTournaments().get(tournamentURL);
+        if (summary == null || summary.isFinalPending()) {
+            return null;
+        }
+        return summary;
+    }
+
+    /*
+       Returns a TournamentSummary of the given tournament page
+     */
+    private TournamentSummary summarizeTournament(Document tournamentDoc) {
+        String tournamentName = getTournamentName(tournamentDoc);
+        String tournamentRound = Selector.MATCH_COURT.selectFirst(tournamentDoc).text();
+        String finalResults = "";
+        if (tournamentRound.contains("Singles") &&
+                tournamentRound.contains("Final")) {
+            finalResults = getFinalResults(tournamentDoc, tournamentName);
+        }
+        return new TournamentSummary(tournamentName, tournamentRound, finalResults);
+    }
+
+    /*
+       Returns the name of the tournament whose page is given
+     */
+    private String getTournamentName(Document tournamentDoc) {
+        String docTitle = tournamentDoc.title();
+        return docTitle.substring
+                (0, docTitle.indexOf("Daily Match Schedule - ESPN") - 1);
+    }
+
+    /*
+       Returns the results of the singles finals in the given tournament page,
+       in the format of TournamentSummary.getFinalResults()
+       Returns null if one of the finals doesn't have a winner yet
+       Only safe to call if the page's round is a singles final
+     */
+    private String getFinalResults(Document tournamentDoc, String tournamentName) {
+        StringBuilder finalResults = new StringBuilder();
+        Elements matchTables = Selector.TABLE.select(tournamentDoc);
+        int numOfTables = matchTables.size();
+        /* Loop to get both men's tennis and women's tennis winners */
+        for (int table = 0; table < numOfTables; table += 2) {
+            Elements rows = Selector.ROW.select(matchTables.get(table));
+            Element firstRow = rows.get(1);
+            Element secondRow = rows.get(2);
+            boolean isFirstWinner = Selector.ARROW_WRAPPER.hasMatch(firstRow);
+            boolean isSecondWinner = Selector.ARROW_WRAPPER.hasMatch(secondRow);
+            if (!isFirstWinner && !isSecondWinner) {
+                /* The final was not played yet */
+                return null;
+            }
+            Element scoreTable = matchTables.get(table + 1);
+            String winner;
+            String opponent;
+            String score;
+            if (isFirstWinner) {
+                winner = firstRow.text();
+                opponent = secondRow.text();
+                score = Selector.ROW.select(scoreTable).get(1).text();
+            } else {
+                winner = secondRow.text();
+                opponent = firstRow.text();
+                score = Selector.ROW.select(scoreTable).get(2).text();
+            }
+            String report = winner + " won the " + tournamentName +
+                    " against " + opponent + " " + score + "\n";
+            finalResults.append(report);
+        }
+        return finalResults.toString();
+    }
+
     /*
        Returns a summary of yesterday's tournament outcomes
        For any tournament finals that were played yesterday, adds the name of
        player who won and the tournament's name to the summary
        If there were no finals yesterday, returns an empty string
-       May throw IOException
+       The tournaments are the ones with the given URLs
+       Their results are taken from the snapshot of yesterday's schedule when
+       they are known there, and from the given map of pages otherwise
      */
-    private String yesterdayResults() throws IOException {
-        if (ySchedule.select("h3.noMatch").size() > 0) {
-            /* No matches yesterday- returns an empty string */
-            return "";
-        }
+    private String yesterdayResults(List<String> yesterdayURLs,
+                                    Map<String, Document> tournamentDocs) {
         StringBuilder reportForYesterday = new StringBuilder();
-        Elements tournaments = ySchedule.select("div.scoreHeadline");
         /* Loops over yesterday's tournaments */
-        for (Element tournament : tournaments) {
-            String tournamentURL = tournament.selectFirst("a")
-                    .attr("abs:href");
-            Document tournamentDoc = Jsoup.connect(tournamentURL).get();
-            String docTitle = tournamentDoc.title();
-            String tournamentName = docTitle.substring
-                    (0, docTitle.indexOf("Daily Match Schedule - ESPN") - 1);
-            String tournamentRound = tournamentDoc
-                    .selectFirst("div.matchCourt").text();
-            if (tournamentRound.contains("Singles") &&
-                    tournamentRound.contains("Final")) {
+        for (String tournamentURL : yesterdayURLs) {
+            TournamentSummary summary = getSavedSummary(tournamentURL);
+            if (summary == null) {
+                summary = summarizeTournament(tournamentDocs.get(tournamentURL));
+            }
+            if (!summary.isFinalPending()) {
                 /* Adds the winners of a tournament to the summary */
-                Elements matchTables = tournamentDoc.select("table");
-                int numOfTables = matchTables.size();
-                /* Loop to get both men's tennis and women's tennis winners */
-                for (int table = 0; table < numOfTables; table += 2) {
-                    Elements rows = matchTables.get(table).select("tr");
-                    Element firstRow = rows.get(1);
-                    Element secondRow = rows.get(2);
-                    Element scoreTable = matchTables.get(table + 1);
-                    String winner;
-                    String opponent;
-                    String score;
-                    if (firstRow.select("div.arrowWrapper").size() > 0) {
-                        winner = firstRow.text();
-                        opponent = secondRow.text();
-                        score = scoreTable.select("tr").get(1).text();
-                    } else {
-                        winner = secondRow.text();
-                        opponent = firstRow.text();
-                        score = scoreTable.select("tr").get(2).text();
-                    }
-                    String report = winner + " won the " + tournamentName +
-                            " against " + opponent + " " + score + "\n";
-                    reportForYesterday.append(report);
-                }
+                reportForYesterday.append(summary.getFinalResults());
             }
         }
         if (reportForYesterday.length() > 0) {
@@ -99,35 +259,26 @@ public class NotificationFetcher {
        current round of each tournament
        If there is a final today, adds the time when it is scheduled to begin
        If there are no tournaments today, returns an empty string
-       May throw IOException
+       The pages of the tournaments are taken from the given map
      */
-    private String todaySchedule() throws IOException {
-        if (tSchedule.select("h3.noMatch").size() > 0) {
-            /* No matches yesterday- returns an empty string */
-            return "";
-        }
+    private String todaySchedule(Map<String, Document> tournamentDocs) {
         StringBuilder dailyTournaments = new StringBuilder();
         StringBuilder dailyFinals = new StringBuilder();
-        Elements tournaments = tSchedule.select("div.scoreHeadline");
         /* Loops over today's tournaments */
-        for (Element tournament : tournaments) {
-            String tournamentURL = tournament.selectFirst("a")
-                    .attr("abs:href");
-            Document tournamentDoc = Jsoup.connect(tournamentURL).get();
-            String docTitle = tournamentDoc.title();
-            String tournamentName = docTitle.substring
-                    (0, docTitle.indexOf("Daily Match Schedule - ESPN") - 1);
-            String tournamentRound = tournamentDoc
-                    .selectFirst("div.matchCourt").text();
+        for (String tournamentURL : todayURLs) {
+            Document tournamentDoc = tournamentDocs.get(tournamentURL);
+            TournamentSummary summary = todayTournaments.get(tournamentURL);
+            String tournamentName = summary.getName();
+            String tournamentRound = summary.getRound();
             if (tournamentDoc.text().contains("Singles")) {
                 if (tournamentRound.contains("Final")) {
                     /* Adds the time when the final is scheduled to begin */
-                    Element matchTable = tournamentDoc.selectFirst("table");
-                    Elements rows = matchTable.select("tr");
+                    isFinalToday = true;
+                    Element matchTable = Selector.TABLE.selectFirst(tournamentDoc);
+                    Elements rows = Selector.ROW.select(matchTable);
                     String firstOpponent = rows.get(1).text();
                     String secondOpponent = rows.get(2).text();
-                    String matchTitle = tournamentDoc
-                            .selectFirst("div.matchTitle").text();
+                    String matchTitle = Selector.MATCH_TITLE.selectFirst(tournamentDoc).text();
                     String time = matchTitle.substring(
                             matchTitle.indexOf(":") + 2,
                             matchTitle.lastIndexOf("-") - 1);
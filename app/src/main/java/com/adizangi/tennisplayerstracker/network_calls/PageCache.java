@@ -0,0 +1,287 @@
+/*
+   Keeps the pages that PageFetcher downloaded on the disk, along with the
+   validators that the website sent with them (ETag and Last-Modified)
+   When a cached page is fetched again, PageFetcher sends the validators,
+   and if the page didn't change the website answers with 304 and the page
+   is taken from the cache instead of being downloaded again
+   Each page is saved as soon as it is downloaded, so a task that is stopped
+   in the middle doesn't lose the pages it already fetched
+   A page is kept under a key, which is its URL, or its URL with a suffix
+   when only part of the page is kept, so the parts don't replace the page
+   When the cache grows above its limit, the pages that were used least
+   recently are deleted
+ */
+
+package com.adizangi.tennisplayerstracker.network_calls;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class PageCache {
+
+    private static final String ENTRY_SUFFIX = ".page";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long maxBytes;
+    private long totalBytes = -1;
+
+    /*
+       Constructs a PageCache that keeps the pages in the given directory,
+       up to the given number of bytes
+     */
+    public PageCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /*
+       Returns the SHA-1 hash of the given key in hex, which names the file
+       of the key in a cache
+     */
+    public static String getKeyHash(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1")
+                    .digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            /* Every Java platform has SHA-1 */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+       Returns the cached page with the given key, or null if the page isn't
+       cached or can't be read
+       Marks the page as used now
+     */
+    public synchronized Entry get(String url) {
+        File file = getFile(url);
+        if (!file.exists()) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+            Entry entry = (Entry) in.readObject();
+            if (!url.equals(entry.url)) {
+                return null;
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return entry;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /*
+       Saves the page with the given key, with the given validators and
+       charset, which may be null, and the given content
+       The content is what the caller needs to use the page again, which may
+       be only part of the page's body
+       Pages without any validator are not saved, since they can't be
+       revalidated
+       Deletes the pages that were used least recently if the cache is above
+       its limit
+     */
+    public synchronized void put(String url,
+                                 String eTag,
+                                 String lastModified,
+                                 String charset,
+                                 byte[] content) {
+        if (eTag == null && lastModified == null) {
+            return;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+        write(new Entry(url, eTag, lastModified, charset, content,
+                System.currentTimeMillis()));
+    }
+
+    /*
+       Records that the given cached page, which has the given key, was
+       revalidated now and didn't change, so it is as fresh as a page that
+       was downloaded now
+     */
+    public synchronized void markRevalidated(String url, Entry entry) {
+        if (!url.equals(entry.url) || !directory.exists()) {
+            return;
+        }
+        entry.storedTime = System.currentTimeMillis();
+        write(entry);
+    }
+
+    /*
+       Saves the given entry in the file of its key
+       Deletes the pages that were used least recently if the cache is above
+       its limit
+     */
+    private void write(Entry entry) {
+        File file = getFile(entry.url);
+        File tempFile = new File(directory, file.getName() + TEMP_SUFFIX);
+        long oldLength = file.length();
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(tempFile))) {
+            out.writeObject(entry);
+        } catch (Exception e) {
+            e.printStackTrace();
+            tempFile.delete();
+            return;
+        }
+        /* The page is replaced in one step, so a task that is stopped while
+           writing doesn't leave a broken page */
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            return;
+        }
+        if (totalBytes == -1) {
+            totalBytes = getDirectorySize();
+        } else {
+            totalBytes += file.length() - oldLength;
+        }
+        trim();
+    }
+
+    /*
+       Returns the file of the page with the given key
+     */
+    private File getFile(String url) {
+        return new File(directory, getKeyHash(url) + ENTRY_SUFFIX);
+    }
+
+    /*
+       Returns the number of bytes of all the pages in the directory
+     */
+    private long getDirectorySize() {
+        long size = 0;
+        for (File file : listEntries()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    /*
+       Deletes the pages that were used least recently until the cache is
+       within its limit
+     */
+    private void trim() {
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+        File[] files = listEntries();
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+
+    /*
+       Returns the files of the pages in the directory
+     */
+    private File[] listEntries() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int numOfEntries = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(ENTRY_SUFFIX)) {
+                files[numOfEntries++] = file;
+            }
+        }
+        return Arrays.copyOf(files, numOfEntries);
+    }
+
+    /*
+       Represents a cached page: its content, the validators that were sent
+       with it, and the time it was saved
+     */
+    public static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 4413926055180372964L;
+
+        private String url;
+        private String eTag;
+        private String lastModified;
+        private String charset;
+        private byte[] content;
+        private long storedTime;
+
+        /*
+           Constructs an Entry of the page with the given URL
+         */
+        Entry(String url,
+              String eTag,
+              String lastModified,
+              String charset,
+              byte[] content,
+              long storedTime) {
+            this.url = url;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.charset = charset;
+            this.content = content;
+            this.storedTime = storedTime;
+        }
+
+        /*
+           Returns the ETag of the page, or null if it had none
+         */
+        public String getETag() {
+            return eTag;
+        }
+
+        /*
+           Returns the Last-Modified date of the page, or null if it had none
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /*
+           Returns the charset of the content, or null if it is unknown
+         */
+        public String getCharset() {
+            return charset;
+        }
+
+        /*
+           Returns the cached content of the page
+         */
+        public byte[] getContent() {
+            return content;
+        }
+
+        /*
+           Returns the time in milliseconds when the page was downloaded, or
+           last revalidated without changing
+         */
+        public long getStoredTime() {
+            return storedTime;
+        }
+    }
+
+}
@@ -0,0 +1,338 @@
+/*
+   Fetches pages from the ESPN website
+   All the requests of the app go through this class, so that the limits
+   that apply to every request are set in one place
+   Each kind of page has a limit on the size of its body, so that a page
+   that is much larger than expected can't use up the memory of the device
+   Every request is recorded in FetchMetrics
+   Requests wait for the RateLimiter of their host before they are sent,
+   and their responses teach it how many requests the host can take
+   A request that fails with a temporary problem is retried a few times,
+   with a random delay that grows with each attempt, so one slow page
+   doesn't fail the whole task
+   Requests to a host that keeps failing are refused by the CircuitBreaker,
+   and then the task should be retried later as a whole
+   The bytes of every body are charged to the active ByteBudget, and no
+   request is sent once it is used up
+   When a PageCache is set, pages that are cached are revalidated with
+   conditional requests, and are only downloaded again if they changed
+   Images go through the same limits, and are cached by ImageLoader
+ */
+
+package com.adizangi.tennisplayerstracker.network_calls;
+
+import com.adizangi.tennisplayerstracker.utils_data.RequestMetric;
+
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class PageFetcher {
+
+    /* Page kinds- which kind of page a request fetches */
+    public static final String PAGE_RANKINGS = "rankings";
+    public static final String PAGE_SCHEDULE = "schedule";
+    public static final String PAGE_TOURNAMENT = "tournament";
+    public static final String PAGE_PLAYER = "player";
+    public static final String PAGE_IMAGE = "image";
+
+    /* The rankings limit is higher, since cutting a rankings page would drop
+       players from the app without any error */
+    private static final int MAX_RANKINGS_BYTES = 2 * 1024 * 1024;
+    private static final int MAX_SCHEDULE_BYTES = 1024 * 1024;
+    private static final int MAX_TOURNAMENT_BYTES = 1024 * 1024;
+    private static final int MAX_PLAYER_BYTES = 1024 * 1024;
+    private static final int MAX_IMAGE_BYTES = 512 * 1024;
+
+    private static final int STATUS_NOT_MODIFIED = 304;
+
+    /* HTTP statuses that mean the host is overloaded */
+    private static final int STATUS_TOO_MANY_REQUESTS = 429;
+    private static final int MIN_SERVER_ERROR_STATUS = 500;
+
+    /* Retries of a request that failed with a temporary problem- the delay
+       before each retry is random, up to a bound that doubles with each
+       attempt, so that requests that failed together don't retry together */
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 4000;
+
+    /* The breaker of a host opens after this many temporary failures in a
+       row, and refuses requests to it for a minute */
+    private static final int FAILURE_THRESHOLD = 5;
+    public static final long BREAKER_OPEN_MILLIS = 60 * 1000;
+
+    /* Shared by all the PageFetchers, so that the limits apply to all the
+       requests of the app */
+    private static final RateLimiter RATE_LIMITER = new RateLimiter();
+    private static final CircuitBreaker CIRCUIT_BREAKER =
+            new CircuitBreaker(FAILURE_THRESHOLD, BREAKER_OPEN_MILLIS);
+
+    private static volatile PageCache pageCache;
+
+    /*
+       Returns the RateLimiter that all the requests wait for
+     */
+    public static RateLimiter getRateLimiter() {
+        return RATE_LIMITER;
+    }
+
+    /*
+       Returns the PageCache that the pages are saved in, or null if none
+       was set
+     */
+    public static PageCache getPageCache() {
+        return pageCache;
+    }
+
+    /*
+       Sets the PageCache that all the PageFetchers save the pages in and
+       revalidate them from
+     */
+    public static void setPageCache(PageCache cache) {
+        pageCache = cache;
+    }
+
+    /*
+       Returns true if the given response says that the cached page that was
+       sent to execute() didn't change, in which case its body is empty
+     */
+    public static boolean isNotModified(Connection.Response response) {
+        return response.statusCode() == STATUS_NOT_MODIFIED;
+    }
+
+    /*
+       Fetches the page of the given kind with the given URL and returns it
+       as a parsed Document
+       If the page is in the PageCache and didn't change, it is parsed from
+       the cache, and otherwise the downloaded page is saved in the cache
+       A body that is larger than the limit of its kind is cut at the limit
+       May throw IOException
+     */
+    public Document fetch(String url, String pageKind) throws IOException {
+        PageCache cache = pageCache;
+        PageCache.Entry cachedPage = cache == null ? null : cache.get(url);
+        Connection.Response response = execute(url, pageKind, cachedPage);
+        long parseStart;
+        Document document;
+        if (cachedPage != null && isNotModified(response)) {
+            cache.markRevalidated(url, cachedPage);
+            parseStart = System.nanoTime();
+            document = Jsoup.parse(new ByteArrayInputStream(cachedPage.getContent()),
+                    cachedPage.getCharset(), url);
+        } else {
+            byte[] body = response.bodyAsBytes();
+            FetchMetrics.recordBytes(url, body.length);
+            ByteBudget.charge(body.length);
+            if (cache != null) {
+                cache.put(url, response.header("ETag"), response.header("Last-Modified"),
+                        response.charset(), body);
+            }
+            parseStart = System.nanoTime();
+            document = response.parse();
+        }
+        FetchMetrics.recordParse(url, (System.nanoTime() - parseStart) / 1000000);
+        return document;
+    }
+
+    /*
+       Fetches the image with the given URL and returns its bytes, as they
+       were downloaded
+       An image that is larger than MAX_IMAGE_BYTES is cut at the limit, and
+       then can't be decoded
+       May throw IOException
+     */
+    public byte[] fetchImage(String url) throws IOException {
+        byte[] body = execute(url, PAGE_IMAGE, null).bodyAsBytes();
+        FetchMetrics.recordBytes(url, body.length);
+        ByteBudget.charge(body.length);
+        return body;
+    }
+
+    /*
+       Sends the request for the page of the given kind with the given URL
+       and returns the response without parsing its body, so the body can be
+       read as a stream
+       If the given cached page isn't null, the request is conditional on
+       its validators, and if the page didn't change the response has status
+       304 and no body (see isNotModified())
+       If the request fails with a temporary problem, retries it up to
+       MAX_ATTEMPTS attempts in total, after a random delay
+       A body that is larger than the limit of its kind is cut at the limit
+       The caller should charge the bytes it reads from the body to the
+       ByteBudget
+       Throws CircuitBreakerOpenException if the host can't be reached or
+       keeps failing, ByteBudgetExceededException if the active budget is
+       used up, and may throw other kinds of IOException
+     */
+    public Connection.Response execute(String url,
+                                       String pageKind,
+                                       PageCache.Entry cachedPage) throws IOException {
+        String host = new URL(url).getHost();
+        IOException lastFailure = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            if (attempt > 0) {
+                waitBeforeRetry(attempt);
+            }
+            ByteBudget.checkRemaining(url);
+            if (!CIRCUIT_BREAKER.allowRequest(host)) {
+                throw new CircuitBreakerOpenException(host, lastFailure);
+            }
+            try {
+                Connection.Response response = executeOnce(url, pageKind, cachedPage, host, attempt);
+                CIRCUIT_BREAKER.recordSuccess(host);
+                return response;
+            } catch (IOException e) {
+                if (!isTemporary(e)) {
+                    if (e instanceof HttpStatusException) {
+                        /* The host answered, so it is up */
+                        CIRCUIT_BREAKER.recordSuccess(host);
+                    }
+                    throw e;
+                }
+                CIRCUIT_BREAKER.recordFailure(host);
+                lastFailure = e;
+            }
+        }
+        if (CIRCUIT_BREAKER.isOpen(host)) {
+            throw new CircuitBreakerOpenException(host, lastFailure);
+        }
+        throw lastFailure;
+    }
+
+    /*
+       Sends the request for the page of the given kind with the given URL
+       to the given host once, conditional on the given cached page if it
+       isn't null, and returns the response
+       The given attempt is the number of times the request was retried
+       before, and is recorded with the request
+       Waits for the RateLimiter of the host before the request is sent, and
+       counts the request as in flight until the response arrives
+       May throw IOException
+     */
+    private Connection.Response executeOnce(String url,
+                                            String pageKind,
+                                            PageCache.Entry cachedPage,
+                                            String host,
+                                            int attempt) throws IOException {
+        try {
+            RATE_LIMITER.acquire(host);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Waiting to fetch a page was interrupted");
+        }
+        long requestStart = System.nanoTime();
+        try {
+            Connection.Response response = connect(url, pageKind, cachedPage).execute();
+            long latencyMillis = (System.nanoTime() - requestStart) / 1000000;
+            FetchMetrics.recordRequest(url, pageKind, attempt, latencyMillis,
+                    response.statusCode());
+            RATE_LIMITER.recordResponse(host, latencyMillis);
+            return response;
+        } catch (HttpStatusException e) {
+            FetchMetrics.recordRequest(url, pageKind, attempt,
+                    (System.nanoTime() - requestStart) / 1000000, e.getStatusCode());
+            if (e.getStatusCode() == STATUS_TOO_MANY_REQUESTS ||
+                    e.getStatusCode() >= MIN_SERVER_ERROR_STATUS) {
+                RATE_LIMITER.recordOverload(host, requestStart);
+            }
+            throw e;
+        } catch (SocketTimeoutException e) {
+            FetchMetrics.recordRequest(url, pageKind, attempt,
+                    (System.nanoTime() - requestStart) / 1000000,
+                    RequestMetric.STATUS_NO_RESPONSE);
+            RATE_LIMITER.recordOverload(host, requestStart);
+            throw e;
+        } catch (IOException e) {
+            FetchMetrics.recordRequest(url, pageKind, attempt,
+                    (System.nanoTime() - requestStart) / 1000000,
+                    RequestMetric.STATUS_NO_RESPONSE);
+            throw e;
+        } finally {
+            RATE_LIMITER.release(host);
+        }
+    }
+
+    /*
+       Returns true if the given failure is a temporary problem, which may
+       not happen again if the request is retried
+     */
+    private boolean isTemporary(IOException e) {
+        if (e instanceof HttpStatusException) {
+            int statusCode = ((HttpStatusException) e).getStatusCode();
+            return statusCode == STATUS_TOO_MANY_REQUESTS ||
+                    statusCode >= MIN_SERVER_ERROR_STATUS;
+        }
+        /* A host that can't be reached may be a short problem of the
+           network, so it is retried like a timeout */
+        return e instanceof SocketTimeoutException || e instanceof SocketException ||
+                e instanceof UnknownHostException;
+    }
+
+    /*
+       Sleeps before the retry with the given number, for a random delay
+       between zero and a bound that doubles with each retry, up to
+       MAX_BACKOFF_MILLIS
+       Throws InterruptedIOException if the thread is interrupted while
+       sleeping
+     */
+    private void waitBeforeRetry(int retry) throws InterruptedIOException {
+        long bound = Math.min(BASE_BACKOFF_MILLIS << (retry - 1), MAX_BACKOFF_MILLIS);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Waiting to retry a page was interrupted");
+        }
+    }
+
+    /*
+       Returns a Connection to the given URL with the limits of the given
+       page kind, with the validators of the given cached page if it isn't
+       null
+       Only images are accepted with a content type that isn't text
+     */
+    private Connection connect(String url, String pageKind, PageCache.Entry cachedPage) {
+        Connection connection = Jsoup.connect(url)
+                .maxBodySize(getMaxBodySize(pageKind))
+                .ignoreContentType(pageKind.equals(PAGE_IMAGE));
+        if (cachedPage != null) {
+            if (cachedPage.getETag() != null) {
+                connection.header("If-None-Match", cachedPage.getETag());
+            }
+            if (cachedPage.getLastModified() != null) {
+                connection.header("If-Modified-Since", cachedPage.getLastModified());
+            }
+        }
+        return connection;
+    }
+
+    /*
+       Returns the limit in bytes on the body of a page of the given kind
+     */
+    private int getMaxBodySize(String pageKind) {
+        switch (pageKind) {
+            case PAGE_RANKINGS:
+                return MAX_RANKINGS_BYTES;
+            case PAGE_SCHEDULE:
+                return MAX_SCHEDULE_BYTES;
+            case PAGE_TOURNAMENT:
+                return MAX_TOURNAMENT_BYTES;
+            case PAGE_IMAGE:
+                return MAX_IMAGE_BYTES;
+            default:
+                return MAX_PLAYER_BYTES;
+        }
+    }
+
+}
@@ -0,0 +1,425 @@
+/*
+   Fetches a player's page from the ESPN website and keeps only the parts
+   that PlayerStatsFetcher reads, which are the first h1, the first
+   div.player-stats, the #my-players-table element, and the first
+   div.main-headshot and ul.general-info, which have the player's headshot
+   and flag
+   The page is scanned while it is downloaded, and only those subtrees are
+   parsed into a Document, so the navigation, scripts and ads of the page
+   are never built into a DOM
+   The bodies of script and style elements are skipped without being
+   buffered, and the download stops once all the subtrees were found
+   A PlayerPageExtractor extracts one page at a time, so threads that
+   extract pages concurrently should each have their own
+ */
+
+package com.adizangi.tennisplayerstracker.network_calls;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class PlayerPageExtractor {
+
+    private static final Pattern CLASS_PATTERN = Pattern.compile(
+            "\\sclass\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+))",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern ID_PATTERN = Pattern.compile(
+            "\\sid\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+))",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final int SUBTREE_HEADING = 0;
+    private static final int SUBTREE_PLAYER_STATS = 1;
+    private static final int SUBTREE_MY_PLAYERS_TABLE = 2;
+    private static final int SUBTREE_HEADSHOT = 3;
+    private static final int SUBTREE_GENERAL_INFO = 4;
+    private static final int NUM_OF_SUBTREES = 5;
+
+    /* The subtrees are cached under the page's URL with this suffix, so they
+       don't replace the full page that PageFetcher may cache under the URL */
+    private static final String SUBTREES_KEY_SUFFIX = "#subtrees";
+
+    private Reader reader;
+    private StringBuilder[] subtrees;
+    private StringBuilder capture;
+    private String captureTagName;
+    private int captureDepth;
+
+    /*
+       Fetches the page with the given URL and returns a Document that
+       contains only the subtrees that PlayerStatsFetcher reads, in the order
+       h1, div.player-stats, #my-players-table, div.main-headshot,
+       ul.general-info
+       A subtree that is not in the page is left out of the Document
+       May throw IOException
+     */
+    public Document extract(String playerURL) throws IOException {
+        return parseSubtrees(fetchSubtrees(playerURL), playerURL);
+    }
+
+    /*
+       Returns the key in the PageCache of the subtrees of the player's page
+       with the given URL
+     */
+    public static String getCacheKey(String playerURL) {
+        return playerURL + SUBTREES_KEY_SUFFIX;
+    }
+
+    /*
+       Fetches the page with the given URL and returns the HTML of only the
+       subtrees that PlayerStatsFetcher reads, without parsing it
+       Only the subtrees are saved in the PageCache, so a page that didn't
+       change is taken from there without reading it again
+       This is the part of the extraction that waits for the network
+       May throw IOException
+     */
+    public String fetchSubtrees(String playerURL) throws IOException {
+        PageCache cache = PageFetcher.getPageCache();
+        String cacheKey = getCacheKey(playerURL);
+        PageCache.Entry cachedPage = cache == null ? null : cache.get(cacheKey);
+        Connection.Response response = new PageFetcher()
+                .execute(playerURL, PageFetcher.PAGE_PLAYER, cachedPage);
+        if (cachedPage != null && PageFetcher.isNotModified(response)) {
+            cache.markRevalidated(cacheKey, cachedPage);
+            return new String(cachedPage.getContent(), StandardCharsets.UTF_8);
+        }
+        Charset charset = StandardCharsets.UTF_8;
+        if (response.charset() != null && Charset.isSupported(response.charset())) {
+            charset = Charset.forName(response.charset());
+        }
+        CountingInputStream bodyStream = new CountingInputStream(response.bodyStream());
+        String subtreesHtml = readSubtrees(new BufferedReader(
+                new InputStreamReader(bodyStream, charset)));
+        FetchMetrics.recordBytes(playerURL, bodyStream.getCount());
+        ByteBudget.charge(bodyStream.getCount());
+        if (cache != null) {
+            cache.put(cacheKey, response.header("ETag"), response.header("Last-Modified"),
+                    StandardCharsets.UTF_8.name(), subtreesHtml.getBytes(StandardCharsets.UTF_8));
+        }
+        return subtreesHtml;
+    }
+
+    /*
+       Parses the given HTML of the subtrees of the page with the given URL
+       into a Document
+       This is the part of the extraction that uses the CPU, and it may be
+       called from any thread
+     */
+    public Document parseSubtrees(String subtreesHtml, String playerURL) {
+        long parseStart = System.nanoTime();
+        Document playerDocument = Jsoup.parseBodyFragment(subtreesHtml, playerURL);
+        FetchMetrics.recordParse(playerURL, (System.nanoTime() - parseStart) / 1000000);
+        return playerDocument;
+    }
+
+    /*
+       Reads a player's page from the given Reader and returns the HTML of
+       only the subtrees that PlayerStatsFetcher reads
+       Closes the Reader
+       May throw IOException
+     */
+    public String readSubtrees(Reader pageReader) throws IOException {
+        reader = pageReader;
+        subtrees = new StringBuilder[NUM_OF_SUBTREES];
+        capture = null;
+        try {
+            scan();
+        } finally {
+            reader.close();
+        }
+        StringBuilder html = new StringBuilder();
+        for (StringBuilder subtree : subtrees) {
+            if (subtree != null) {
+                html.append(subtree);
+            }
+        }
+        return html.toString();
+    }
+
+    /*
+       Reads the page until it ends or until all the subtrees were captured
+       Text and tags are appended to the subtree that is being captured, if
+       there is one, and are dropped otherwise
+     */
+    private void scan() throws IOException {
+        int c = reader.read();
+        while (c != -1 && !isDone()) {
+            if (c == '<') {
+                c = readMarkup();
+            } else {
+                if (capture != null) {
+                    capture.append((char) c);
+                }
+                c = reader.read();
+            }
+        }
+    }
+
+    /*
+       Reads the markup that comes after a '<', which is a tag, a comment or
+       a declaration, and handles it
+       Returns the character that comes after the markup
+     */
+    private int readMarkup() throws IOException {
+        int c = reader.read();
+        if (c == '!') {
+            skipDeclaration();
+            return reader.read();
+        }
+        boolean isEndTag = c == '/';
+        if (isEndTag) {
+            c = reader.read();
+        }
+        if (!Character.isLetter(c)) {
+            /* Not a tag- the '<' is text */
+            if (capture != null) {
+                capture.append('<');
+                if (isEndTag) {
+                    capture.append('/');
+                }
+            }
+            return c;
+        }
+        StringBuilder tag = new StringBuilder(isEndTag ? "</" : "<");
+        StringBuilder tagName = new StringBuilder();
+        while (c != -1 && !Character.isWhitespace(c) && c != '>' && c != '/') {
+            tag.append((char) c);
+            tagName.append(Character.toLowerCase((char) c));
+            c = reader.read();
+        }
+        char quote = 0;
+        while (c != -1 && (quote != 0 || c != '>')) {
+            if (quote == 0 && (c == '"' || c == '\'')) {
+                quote = (char) c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+            tag.append((char) c);
+            c = reader.read();
+        }
+        tag.append('>');
+        String name = tagName.toString();
+        if (isEndTag) {
+            handleEndTag(name, tag);
+        } else if (name.equals("script") || name.equals("style")) {
+            skipRawText(name);
+        } else {
+            boolean isSelfClosing = tag.length() > 2 &&
+                    tag.charAt(tag.length() - 2) == '/';
+            handleStartTag(name, tag, isSelfClosing);
+        }
+        return reader.read();
+    }
+
+    /*
+       Handles the start tag with the given name and text
+       Starts capturing a subtree if the tag is the root of one that wasn't
+       captured yet, and otherwise appends the tag to the current capture
+     */
+    private void handleStartTag(String name, StringBuilder tag, boolean isSelfClosing) {
+        if (capture != null) {
+            capture.append(tag);
+            if (name.equals(captureTagName) && !isSelfClosing) {
+                captureDepth++;
+            }
+            return;
+        }
+        int subtree = getSubtreeIndex(name, tag.toString());
+        if (subtree == -1 || subtrees[subtree] != null || isSelfClosing) {
+            return;
+        }
+        capture = new StringBuilder(tag);
+        subtrees[subtree] = capture;
+        captureTagName = name;
+        captureDepth = 1;
+    }
+
+    /*
+       Handles the end tag with the given name and text
+       Ends the current capture if the tag closes its root
+     */
+    private void handleEndTag(String name, StringBuilder tag) {
+        if (capture == null) {
+            return;
+        }
+        capture.append(tag);
+        if (name.equals(captureTagName)) {
+            captureDepth--;
+            if (captureDepth == 0) {
+                capture = null;
+            }
+        }
+    }
+
+    /*
+       Returns the index of the subtree whose root is the tag with the given
+       name and text
+       Returns -1 if the tag is not the root of a needed subtree
+     */
+    private int getSubtreeIndex(String name, String tag) {
+        if (name.equals("h1")) {
+            return SUBTREE_HEADING;
+        }
+        if ("my-players-table".equals(getAttribute(ID_PATTERN, tag))) {
+            return SUBTREE_MY_PLAYERS_TABLE;
+        }
+        String classes = getAttribute(CLASS_PATTERN, tag);
+        if (classes == null) {
+            return -1;
+        }
+        classes = " " + classes + " ";
+        if (name.equals("div") && classes.contains(" player-stats ")) {
+            return SUBTREE_PLAYER_STATS;
+        }
+        if (name.equals("div") && classes.contains(" main-headshot ")) {
+            return SUBTREE_HEADSHOT;
+        }
+        if (name.equals("ul") && classes.contains(" general-info ")) {
+            return SUBTREE_GENERAL_INFO;
+        }
+        return -1;
+    }
+
+    /*
+       Returns the value of the attribute that the given pattern matches in
+       the given tag
+       Returns null if the tag doesn't have the attribute
+     */
+    private String getAttribute(Pattern attributePattern, String tag) {
+        Matcher matcher = attributePattern.matcher(tag);
+        if (!matcher.find()) {
+            return null;
+        }
+        for (int group = 1; group <= 3; group++) {
+            if (matcher.group(group) != null) {
+                return matcher.group(group);
+            }
+        }
+        return null;
+    }
+
+    /*
+       Skips the body and the end tag of the script or style element with
+       the given tag name, without keeping the skipped characters
+     */
+    private void skipRawText(String name) throws IOException {
+        String endTag = "</" + name;
+        int matched = 0;
+        int c = reader.read();
+        while (c != -1) {
+            if (Character.toLowerCase((char) c) == endTag.charAt(matched)) {
+                matched++;
+                if (matched == endTag.length()) {
+                    skipUntil('>');
+                    return;
+                }
+            } else {
+                matched = c == '<' ? 1 : 0;
+            }
+            c = reader.read();
+        }
+    }
+
+    /*
+       Skips a comment or a declaration such as the doctype, whose '<!' was
+       already read
+     */
+    private void skipDeclaration() throws IOException {
+        int first = reader.read();
+        int second = first == '-' ? reader.read() : -1;
+        if (first != '-' || second != '-') {
+            if (first != '>') {
+                skipUntil('>');
+            }
+            return;
+        }
+        /* A comment ends with "-->" */
+        int dashes = 0;
+        int c = reader.read();
+        while (c != -1) {
+            if (c == '>' && dashes >= 2) {
+                return;
+            }
+            dashes = c == '-' ? dashes + 1 : 0;
+            c = reader.read();
+        }
+    }
+
+    /*
+       Skips characters until after the given character
+     */
+    private void skipUntil(char end) throws IOException {
+        int c = reader.read();
+        while (c != -1 && c != end) {
+            c = reader.read();
+        }
+    }
+
+    /*
+       Returns true if all the subtrees were captured
+     */
+    private boolean isDone() {
+        if (capture != null) {
+            return false;
+        }
+        for (StringBuilder subtree : subtrees) {
+            if (subtree == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+       An InputStream that counts the bytes that are read from the stream it
+       wraps, so the size of a page that is read as a stream can be measured
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        /*
+           Constructs a CountingInputStream that reads from the given stream
+         */
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int numOfBytes = super.read(b, off, len);
+            if (numOfBytes > 0) {
+                count += numOfBytes;
+            }
+            return numOfBytes;
+        }
+
+        /*
+           Returns the number of bytes that were read so far
+         */
+        long getCount() {
+            return count;
+        }
+    }
+
+}
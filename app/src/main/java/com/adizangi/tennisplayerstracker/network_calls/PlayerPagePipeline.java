@@ -0,0 +1,257 @@
+/*
+   Turns the pages of many players into PlayerStats objects in two stages
+   that run at the same time, so that waiting for the network and parsing
+   overlap instead of adding up
+   The network stage downloads the needed parts of each page on a few I/O
+   threads and puts them into a bounded queue
+   The parsing stage takes the pages from the queue on one thread per CPU
+   core, parses them, and puts the PlayerStats into the result map
+   When the queue is full, the network stage waits for the parsing stage,
+   so the number of downloaded pages that are held in memory is bounded
+ */
+
+package com.adizangi.tennisplayerstracker.network_calls;
+
+import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+class PlayerPagePipeline {
+
+    /* The RateLimiter decides how many of the I/O threads send requests at
+       a time, so there are enough threads for its highest limit */
+    private static final int NUM_OF_IO_THREADS = RateLimiter.MAX_CONCURRENCY;
+    private static final int QUEUE_CAPACITY = 8;
+
+    /* Tells a parsing thread that there are no more pages */
+    private static final Page END_OF_PAGES = new Page(null, null);
+
+    private PageParser parser;
+
+    /*
+       Constructs a PlayerPagePipeline that makes PlayerStats from pages with
+       the given PageParser
+     */
+    PlayerPagePipeline(PageParser parser) {
+        this.parser = parser;
+    }
+
+    /*
+       Fetches and parses the pages of the given players, and returns a map
+       from the key of each player to the player's PlayerStats
+       If a page fails to download or to parse, stops the other work and
+       throws the exception that it failed with
+       May throw IOException
+     */
+    Map<String, PlayerStats> run(List<PlayerPage> playerPages) throws IOException {
+        final Map<String, PlayerStats> stats = new ConcurrentHashMap<>();
+        if (playerPages.isEmpty()) {
+            return new HashMap<>();
+        }
+        final BlockingQueue<Page> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        final AtomicReference<RuntimeException> parseException = new AtomicReference<>();
+        int numOfIOThreads = Math.min(playerPages.size(), NUM_OF_IO_THREADS);
+        int numOfCPUThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService ioExecutor = Executors.newFixedThreadPool(numOfIOThreads);
+        ExecutorService cpuExecutor = Executors.newFixedThreadPool(numOfCPUThreads);
+        try {
+            List<Future<?>> parsingThreads = new ArrayList<>();
+            for (int thread = 0; thread < numOfCPUThreads; thread++) {
+                parsingThreads.add(cpuExecutor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws InterruptedException {
+                        parsePages(queue, stats, parseException);
+                        return null;
+                    }
+                }));
+            }
+            List<Future<?>> downloads = new ArrayList<>();
+            for (final PlayerPage playerPage : playerPages) {
+                downloads.add(ioExecutor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException, InterruptedException {
+                        String html = new PlayerPageExtractor()
+                                .fetchSubtrees(playerPage.getURL());
+                        queue.put(new Page(playerPage, html));
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> download : downloads) {
+                waitFor(download);
+            }
+            for (int thread = 0; thread < numOfCPUThreads; thread++) {
+                putInQueue(queue, END_OF_PAGES);
+            }
+            for (Future<?> parsingThread : parsingThreads) {
+                waitFor(parsingThread);
+            }
+        } finally {
+            ioExecutor.shutdownNow();
+            cpuExecutor.shutdownNow();
+        }
+        if (parseException.get() != null) {
+            throw parseException.get();
+        }
+        return new HashMap<>(stats);
+    }
+
+    /*
+       Takes pages from the given queue until the end of the pages, and puts
+       the PlayerStats of each one into the given map
+       If parsing a page fails, saves the exception in the given reference
+       and keeps taking pages without parsing them, so that the network stage
+       is never blocked by a full queue
+     */
+    private void parsePages(BlockingQueue<Page> queue,
+                            Map<String, PlayerStats> stats,
+                            AtomicReference<RuntimeException> parseException)
+            throws InterruptedException {
+        Page page = queue.take();
+        while (page != END_OF_PAGES) {
+            if (parseException.get() == null) {
+                try {
+                    PlayerPage playerPage = page.playerPage;
+                    Document playerDocument = new PlayerPageExtractor()
+                            .parseSubtrees(page.html, playerPage.getURL());
+                    stats.put(playerPage.getKey(), parser.parse(playerDocument,
+                            playerPage.getName(), playerPage.getRanking()));
+                } catch (RuntimeException e) {
+                    parseException.compareAndSet(null, e);
+                }
+            }
+            page = queue.take();
+        }
+    }
+
+    /*
+       Waits for the given task to finish
+       If the task failed, throws the exception that it failed with
+     */
+    private void waitFor(Future<?> task) throws IOException {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Fetching player pages was interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw new InterruptedIOException("Fetching player pages was interrupted");
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /*
+       Puts the given page in the given queue, waiting for space if needed
+     */
+    private void putInQueue(BlockingQueue<Page> queue, Page page) throws IOException {
+        try {
+            queue.put(page);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Fetching player pages was interrupted");
+        }
+    }
+
+    /*
+       Makes a PlayerStats object from the page of a player
+     */
+    interface PageParser {
+
+        /*
+           Returns a PlayerStats object for the player with the given name and
+           ranking number, whose page is the given Document
+         */
+        PlayerStats parse(Document playerDocument, String name, String rankingNumber);
+    }
+
+    /*
+       A player whose page should be fetched
+     */
+    static class PlayerPage {
+
+        private String key;
+        private String name;
+        private String ranking;
+        private String url;
+
+        /*
+           Constructs a PlayerPage of the player with the given key in the
+           player stats map, name, ranking number and page URL
+         */
+        PlayerPage(String key, String name, String ranking, String url) {
+            this.key = key;
+            this.name = name;
+            this.ranking = ranking;
+            this.url = url;
+        }
+
+        /*
+           Returns the key of the player in the player stats map
+         */
+        String getKey() {
+            return key;
+        }
+
+        /*
+           Returns the player's name
+         */
+        String getName() {
+            return name;
+        }
+
+        /*
+           Returns the player's ranking number
+         */
+        String getRanking() {
+            return ranking;
+        }
+
+        /*
+           Returns the URL of the player's page
+         */
+        String getURL() {
+            return url;
+        }
+    }
+
+    /*
+       The downloaded parts of a player's page, waiting in the queue to be
+       parsed
+     */
+    private static class Page {
+
+        private PlayerPage playerPage;
+        private String html;
+
+        /*
+           Constructs a Page with the given player and HTML
+         */
+        Page(PlayerPage playerPage, String html) {
+            this.playerPage = playerPage;
+            this.html = html;
+        }
+    }
+
+}
@@ -5,87 +5,264 @@
 
 package com.adizangi.tennisplayerstracker.network_calls;
 
+import com.adizangi.tennisplayerstracker.utils_data.MatchRecord;
 import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+import com.adizangi.tennisplayerstracker.utils_data.SnapshotStore;
 
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 public class PlayerStatsFetcher {
 
-    private Document mRankings;
-    private Document wRankings;
+    /* How many players of each tour are updated in every refresh, unless
+       the user picks another depth in Settings */
+    public static final int DEFAULT_RANKING_DEPTH = 100;
+
+    private RankingsTable mRankings;
+    private RankingsTable wRankings;
+    private TournamentIndex tournamentIndex;
+    private Map<String, PlayerStats> previousStatsByName;
+    private List<MatchRecord> observedMatches;
+    private int today;
 
     /*
        Constructs a PlayerStatsFetcher with the given HTML documents of the
        men's tennis rankings and women's tennis rankings from ESPN
+       The stats of every player are taken from the player's page
      */
     public PlayerStatsFetcher(Document mRankings, Document wRankings) {
+        this(new RankingsTable(mRankings), new RankingsTable(wRankings));
+    }
+
+    /*
+       Constructs a PlayerStatsFetcher with the given men's tennis rankings
+       and women's tennis rankings
+       The stats of every player are taken from the player's page
+     */
+    public PlayerStatsFetcher(RankingsTable mRankings, RankingsTable wRankings) {
+        this(mRankings, wRankings, null, null);
+    }
+
+    /*
+       Constructs a PlayerStatsFetcher with the given men's tennis rankings
+       and women's tennis rankings, the given index of the tournaments that
+       are played, and the given player stats map from the previous refresh
+       A player's page is fetched only if the index doesn't cover the player,
+       or if the player isn't in the previous map, since the titles and the
+       images are taken from there
+       The page of a player whose images were never looked at is fetched
+       once, so stats that were saved before images were added get them
+       A player who isn't in the index and was not playing in the previous
+       refresh is still not playing
+       The index and the previous map may be null, in which case the stats of
+       every player are taken from the player's page
+     */
+    public PlayerStatsFetcher(RankingsTable mRankings,
+                              RankingsTable wRankings,
+                              TournamentIndex tournamentIndex,
+                              Map<String, PlayerStats> previousStats) {
         this.mRankings = mRankings;
         this.wRankings = wRankings;
+        this.tournamentIndex = tournamentIndex;
+        previousStatsByName = new HashMap<>();
+        observedMatches = Collections.synchronizedList(new ArrayList<MatchRecord>());
+        today = SnapshotStore.getEpochDay(Calendar.getInstance());
+        if (previousStats != null) {
+            for (PlayerStats playerStats : previousStats.values()) {
+                previousStatsByName.put(playerStats.getName(), playerStats);
+            }
+        }
     }
 
     /*
-       Returns a map from each player to a PlayerStats object
+       Returns a map from each of the top DEFAULT_RANKING_DEPTH players of
+       each tour to a PlayerStats object
        The ESPN website doesn't have player information when a new year
        starts and there have not been any tennis tournaments in the new year
        In this case, returns an empty map
        May throw IOException
      */
     public Map<String, PlayerStats> getPlayerStatsMap() throws IOException {
+        return getPlayerStatsMap(DEFAULT_RANKING_DEPTH, null);
+    }
+
+    /*
+       Returns a map from each of the given players to a PlayerStats object,
+       fetching only the pages of those players
+       Each player is represented by name followed by ranking in parenthesis
+       The players are matched by name, and may be anywhere in the rankings
+       The map is keyed by the players' current rankings
+       Players that are not in the rankings are left out of the map
+       May throw IOException
+     */
+    public Map<String, PlayerStats> getPlayerStatsMap(Collection<String> players)
+            throws IOException {
+        return getPlayerStatsMap(0, players);
+    }
+
+    /*
+       Returns a map from each of the top players of each tour, down to the
+       given ranking depth, and each of the given extra players to a
+       PlayerStats object
+       The extra players may be anywhere in the rankings, so that players
+       below the depth are kept up to date while the user follows them
+       Each player is represented by name followed by ranking in parenthesis
+       The extra players are matched by name, since their rankings may have
+       changed since they were selected, and the map is keyed by the
+       players' current rankings
+       The extra players may be null, in which case only the top players are
+       in the map
+       May throw IOException
+     */
+    public Map<String, PlayerStats> getPlayerStatsMap(int rankingDepth,
+                                                      Collection<String> extraPlayers)
+            throws IOException {
         Map<String, PlayerStats> stats = new HashMap<>();
-        Element mRankingsTable = mRankings.selectFirst("table");
-        if (mRankingsTable == null) {
+        if (mRankings.isEmpty()) {
             return new HashMap<>();
         }
-        Elements mRows = mRankingsTable.select("tr");
-        Element wRankingsTable = wRankings.selectFirst("table");
-        Elements wRows = wRankingsTable.select("tr");
-        int mNumOfRows = mRows.size();
-        int wNumOfRows = wRows.size();
-        for (int rowIndex = 1; rowIndex < 101; rowIndex++) {
-            if (rowIndex < mNumOfRows) {  // Check is needed due to bug in the website
-                Elements mColumns = mRows.get(rowIndex).select("td");
-                String playerName = mColumns.get(1).text();
-                String playerRanking = mColumns.get(0).text();
-                Element playerNameLink = mColumns.get(1).selectFirst("a");
-                String playerURL = playerNameLink.attr("abs:href");
-                Document playerDocument = Jsoup.connect(playerURL).get();
-                String playerKey = playerName + " (" + playerRanking + ")";
-                PlayerStats playerStats = getPlayerStats(playerDocument,
-                        playerName, playerRanking);
-                stats.put(playerKey, playerStats);
+        Set<String> extraNames = new HashSet<>();
+        if (extraPlayers != null) {
+            for (String player : extraPlayers) {
+                extraNames.add(RankingsTable.getPlayerName(player));
             }
-            if (rowIndex < wNumOfRows) {
-                Elements wColumns = wRows.get(rowIndex).select("td");
-                String playerName = wColumns.get(1).text();
-                String playerRanking = wColumns.get(0).text();
-                Element playerNameLink = wColumns.get(1).selectFirst("a");
-                String playerURL = playerNameLink.attr("abs:href");
-                Document playerDocument = Jsoup.connect(playerURL).get();
-                String playerKey = playerName + " (" + playerRanking + ")";
-                PlayerStats playerStats = getPlayerStats(playerDocument,
-                        playerName, playerRanking);
-                stats.put(playerKey, playerStats);
+        }
+        List<PlayerPagePipeline.PlayerPage> pagesToFetch = new ArrayList<>();
+        int numOfRows = Math.max(mRankings.size(), wRankings.size());
+        for (int index = 0; index < numOfRows; index++) {
+            if (index < mRankings.size() &&  // Check is needed due to bug in the website
+                    isIncluded(mRankings, index, rankingDepth, extraNames)) {
+                addPlayerStats(stats, pagesToFetch, mRankings, index);
+            }
+            if (index < wRankings.size() &&
+                    isIncluded(wRankings, index, rankingDepth, extraNames)) {
+                addPlayerStats(stats, pagesToFetch, wRankings, index);
             }
         }
+        PlayerPagePipeline pipeline = new PlayerPagePipeline(
+                new PlayerPagePipeline.PageParser() {
+                    @Override
+                    public PlayerStats parse(Document playerDocument,
+                                             String name, String rankingNumber) {
+                        return getPlayerStats(playerDocument, name, rankingNumber);
+                    }
+                });
+        stats.putAll(pipeline.run(pagesToFetch));
         return stats;
     }
 
     /*
-       Returns a PlayerStats object for the player whose information is in
-       the given document
+       Returns the matches that were played in the current tournaments of the
+       players whose pages were fetched
+       The list is only complete after getPlayerStatsMap() returned
+     */
+    public List<MatchRecord> getObservedMatches() {
+        return observedMatches;
+    }
+
+    /*
+       Returns true if the player at the given index of the given rankings
+       table is within the given ranking depth, or has one of the given
+       names of extra players
+     */
+    private boolean isIncluded(RankingsTable rankings,
+                               int index,
+                               int rankingDepth,
+                               Set<String> extraNames) {
+        return index < rankingDepth || extraNames.contains(rankings.getName(index));
+    }
+
+    /*
+       Puts the PlayerStats object of the player at the given index of the
+       given rankings table into the given map if it can be made from the
+       tournament index
+       Otherwise, adds the player's page to the given list of pages to fetch
+     */
+    private void addPlayerStats(Map<String, PlayerStats> stats,
+                                List<PlayerPagePipeline.PlayerPage> pagesToFetch,
+                                RankingsTable rankings,
+                                int index) {
+        String playerName = rankings.getName(index);
+        String playerRanking = rankings.getRanking(index);
+        String playerKey = rankings.getPlayerKey(index);
+        String playerURL = rankings.getPlayerURL(index);
+        PlayerStats playerStats = getIndexedPlayerStats(playerURL,
+                playerName, playerRanking);
+        if (playerStats == null) {
+            pagesToFetch.add(new PlayerPagePipeline.PlayerPage(
+                    playerKey, playerName, playerRanking, playerURL));
+        } else {
+            stats.put(playerKey, playerStats);
+        }
+    }
+
+    /*
+       Returns a PlayerStats object for the player with the given page URL
+       that is made from the tournament index and the player's stats from the
+       previous refresh, without fetching the player's page
+       Returns null if the player's page needs to be fetched
+     */
+    private PlayerStats getIndexedPlayerStats(String playerURL,
+                                              String name, String rankingNumber) {
+        PlayerStats previousStats = previousStatsByName.get(name);
+        if (tournamentIndex == null || previousStats == null ||
+                previousStats.getHeadshotURL() == null) {
+            return null;
+        }
+        String ranking = "Current ranking: " + rankingNumber;
+        if (tournamentIndex.covers(playerURL)) {
+            return new PlayerStats(
+                    name,
+                    ranking,
+                    previousStats.getTitles(),
+                    tournamentIndex.getTournamentStanding(playerURL),
+                    tournamentIndex.getCurrentTournament(playerURL),
+                    tournamentIndex.getLatestMatchResult(playerURL),
+                    tournamentIndex.getUpcomingMatch(playerURL),
+                    previousStats.getHeadshotURL(),
+                    previousStats.getFlagURL());
+        }
+        if (!tournamentIndex.contains(playerURL) &&
+                previousStats.getTournamentStanding().equals("not playing")) {
+            return new PlayerStats(
+                    name,
+                    ranking,
+                    previousStats.getTitles(),
+                    "not playing",
+                    "",
+                    "",
+                    "",
+                    previousStats.getHeadshotURL(),
+                    previousStats.getFlagURL());
+        }
+        return null;
+    }
+
+    /*
+       Returns a PlayerStats object for the player with the given name and
+       ranking number, whose information is in the given document
+       The document may be the full page of the player, or only the subtrees
+       that PlayerPageExtractor keeps
+       The matches the player played in the current tournament are added to
+       the observed matches
      */
-    private PlayerStats getPlayerStats(Document playerDocument,
-                                       String name, String rankingNumber) {
+    public PlayerStats getPlayerStats(Document playerDocument,
+                                      String name, String rankingNumber) {
         String ranking = "Current ranking: " + rankingNumber;
         String titles = getTitles(playerDocument);
         int latestResultIndex = getLatestResultIndex(playerDocument);
@@ -97,6 +274,7 @@ public class PlayerStatsFetcher {
             currentTournament = getCurrentTournament(playerDocument);
             latestMatchResult = getLatestMatchResult
                     (playerDocument, latestResultIndex);
+            addPlayedMatches(playerDocument, latestResultIndex, name, currentTournament);
         }
         String upcomingMatch = "";
         if (standing.contains("advanced")) {
@@ -110,22 +288,34 @@ public class PlayerStatsFetcher {
                 standing,
                 currentTournament,
                 latestMatchResult,
-                upcomingMatch);
+                upcomingMatch,
+                getImageURL(playerDocument, Selector.PLAYER_HEADSHOT),
+                getImageURL(playerDocument, Selector.PLAYER_FLAG));
+    }
+
+    /*
+       Returns the absolute URL of the first image that the given Selector
+       matches in the given document
+       Returns an empty string if there is no such image
+     */
+    private String getImageURL(Document playerDocument, Selector imageSelector) {
+        Element image = imageSelector.selectFirst(playerDocument);
+        return image == null ? "" : image.absUrl("src");
     }
 
     /*
        Returns the name of the player whose information is in the given document
      */
     private String getName(Document playerDocument) {
-        return playerDocument.selectFirst("h1").text();
+        return Selector.H1.selectFirst(playerDocument).text();
     }
 
     /*
        Returns the ranking of the player whose information is in the given document
      */
     private String getRanking(Document playerDocument) {
-        Element detailsList = playerDocument.select("ul").get(1);
-        Elements listItems = detailsList.select("li");
+        Element detailsList = Selector.LIST.select(playerDocument).get(1);
+        Elements listItems = Selector.LIST_ITEM.select(detailsList);
         String rankingFullText = listItems.get(0).text();
         return rankingFullText.substring(rankingFullText.indexOf("#") + 1);
     }
@@ -135,15 +325,15 @@ public class PlayerStatsFetcher {
        in the given document
      */
     private String getTitles(Document playerDocument) {
-        Element playerStatsDiv = playerDocument.selectFirst("div.player-stats");
-        if (playerStatsDiv.select("p").isEmpty()) { // check needed due to bug in website
+        Element playerStatsDiv = Selector.PLAYER_STATS.selectFirst(playerDocument);
+        if (!Selector.PARAGRAPH.hasMatch(playerStatsDiv)) { // check needed due to bug in website
             return "Singles titles: unknown";
         }
-        String statsFullTitle = playerStatsDiv.selectFirst("p").text();
+        String statsFullTitle = Selector.PARAGRAPH.selectFirst(playerStatsDiv).text();
         String year = statsFullTitle.substring(0, statsFullTitle.indexOf(" "));
-        Element statsTable = playerStatsDiv.selectFirst("table");
-        String singlesTitles = statsTable.select("tr").get(1)
-                .selectFirst("td").text();
+        Element statsTable = Selector.TABLE.selectFirst(playerStatsDiv);
+        Element singlesRow = Selector.ROW.select(statsTable).get(1);
+        String singlesTitles = Selector.CELL.selectFirst(singlesRow).text();
         return year + " singles titles: " + singlesTitles;
     }
 
@@ -154,15 +344,15 @@ public class PlayerStatsFetcher {
      */
     private int getLatestResultIndex(Document playerDocument) {
         Element latestTournamentDiv =
-                playerDocument.selectFirst("#my-players-table");
-        String latestTournamentTitle = latestTournamentDiv.selectFirst("h4")
+                Selector.MY_PLAYERS_TABLE.selectFirst(playerDocument);
+        String latestTournamentTitle = Selector.H4.selectFirst(latestTournamentDiv)
                 .text();
         if (!latestTournamentTitle.equals("CURRENT TOURNAMENT")) {
             return -1;
         }
         Element latestTournamentTable =
-                latestTournamentDiv.select("table").get(1);
-        Elements rows = latestTournamentTable.select("tr");
+                Selector.TABLE.select(latestTournamentDiv).get(1);
+        Elements rows = Selector.ROW.select(latestTournamentTable);
         String tournamentType = rows.get(1).text();
         if (!tournamentType.contains("Singles")) {
             return -1;
@@ -170,7 +360,7 @@ public class PlayerStatsFetcher {
         int numOfRows = rows.size();
         int row = 2;
         while (row < numOfRows) {
-            Elements columns = rows.get(row).select("td");
+            Elements columns = Selector.CELL.select(rows.get(row));
             if (columns.size() < 4) {
                 break;
             }
@@ -191,12 +381,12 @@ public class PlayerStatsFetcher {
             return "not playing";
         }
         Element latestTournamentDiv =
-                playerDocument.selectFirst("#my-players-table");
+                Selector.MY_PLAYERS_TABLE.selectFirst(playerDocument);
         Element latestTournamentTable =
-                latestTournamentDiv.select("table").get(1);
-        Elements rows = latestTournamentTable.select("tr");
+                Selector.TABLE.select(latestTournamentDiv).get(1);
+        Elements rows = Selector.ROW.select(latestTournamentTable);
         Element latestResultRow = rows.get(latestResultIndex);
-        Elements columns = latestResultRow.select("td");
+        Elements columns = Selector.CELL.select(latestResultRow);
         String matchResult = columns.get(2).text();
         if (matchResult.equals("-")) {
             String roundNumber = columns.get(0).text();
@@ -215,8 +405,8 @@ public class PlayerStatsFetcher {
      */
     private String getCurrentTournament(Document playerDocument) {
         Element latestTournamentDiv =
-                playerDocument.selectFirst("#my-players-table");
-        return latestTournamentDiv.selectFirst("a").text();
+                Selector.MY_PLAYERS_TABLE.selectFirst(playerDocument);
+        return Selector.LINK.selectFirst(latestTournamentDiv).text();
     }
 
     /*
@@ -228,19 +418,19 @@ public class PlayerStatsFetcher {
     private String getLatestMatchResult(Document playerDocument,
                                         int latestResultIndex) {
         Element latestTournamentDiv =
-                playerDocument.selectFirst("#my-players-table");
+                Selector.MY_PLAYERS_TABLE.selectFirst(playerDocument);
         Element latestTournamentTable =
-                latestTournamentDiv.select("table").get(1);
-        Elements rows = latestTournamentTable.select("tr");
+                Selector.TABLE.select(latestTournamentDiv).get(1);
+        Elements rows = Selector.ROW.select(latestTournamentTable);
         Element latestResultRow = rows.get(latestResultIndex);
-        Elements columns = latestResultRow.select("td");
+        Elements columns = Selector.CELL.select(latestResultRow);
         String matchResult = columns.get(2).text();
         if (matchResult.equals("-")) {
             if (latestResultIndex == 2) {
                 return "";
             }
             latestResultRow = rows.get(latestResultIndex - 1);
-            columns = latestResultRow.select("td");
+            columns = Selector.CELL.select(latestResultRow);
         }
         String round = columns.get(0).text();
         String opponent = columns.get(1).text();
@@ -251,6 +441,40 @@ public class PlayerStatsFetcher {
         return round + "- " + opponent + " " + score;
     }
 
+    /*
+       Adds the matches that the player with the given name played in the
+       given current tournament to the observed matches, using the given
+       index of the latest result row of the document of the player's page
+       Each row of the tournament table has the round, the opponent, the
+       result and the score, where the result is W for a win and a hyphen
+       for a match that wasn't played
+       The matches are recorded on the day the page was fetched, since the
+       page doesn't have their dates
+     */
+    private void addPlayedMatches(Document playerDocument,
+                                  int latestResultIndex,
+                                  String name,
+                                  String currentTournament) {
+        Element latestTournamentDiv =
+                Selector.MY_PLAYERS_TABLE.selectFirst(playerDocument);
+        Element latestTournamentTable =
+                Selector.TABLE.select(latestTournamentDiv).get(1);
+        Elements rows = Selector.ROW.select(latestTournamentTable);
+        for (int row = 2; row <= latestResultIndex; row++) {
+            Elements columns = Selector.CELL.select(rows.get(row));
+            String opponent = columns.get(1).text();
+            String result = columns.get(2).text();
+            if (opponent.isEmpty() || result.equals("-")) {
+                continue;
+            }
+            String round = columns.get(0).text();
+            String score = columns.get(3).text();
+            observedMatches.add(result.equals("W") ?
+                    new MatchRecord(today, currentTournament, round, name, opponent, score) :
+                    new MatchRecord(today, currentTournament, round, opponent, name, score));
+        }
+    }
+
     /*
        Returns the upcoming match of the player whose information is
        in the given document, using the given index of the latest result row
@@ -261,12 +485,12 @@ public class PlayerStatsFetcher {
     private String getUpcomingMatch(Document playerDocument,
                                     int latestResultIndex) {
         Element latestTournamentDiv =
-                playerDocument.selectFirst("#my-players-table");
+                Selector.MY_PLAYERS_TABLE.selectFirst(playerDocument);
         Element latestTournamentTable =
-                latestTournamentDiv.select("table").get(1);
-        Elements rows = latestTournamentTable.select("tr");
+                Selector.TABLE.select(latestTournamentDiv).get(1);
+        Elements rows = Selector.ROW.select(latestTournamentTable);
         Element upcomingMatchRow = rows.get(latestResultIndex);
-        Elements columns = upcomingMatchRow.select("td");
+        Elements columns = Selector.CELL.select(upcomingMatchRow);
         String upcomingMatchDetails = columns.get(3).text();
         if (upcomingMatchDetails.contains("ET")) {
             int secondSpaceIndex = upcomingMatchDetails
@@ -279,7 +503,7 @@ public class PlayerStatsFetcher {
             if (date.equals(upcomingMatchDate)) {
                 String upcomingMatchTime =
                         upcomingMatchDetails.substring(secondSpaceIndex + 1);
-                String playerName = playerDocument.selectFirst("h1").text();
+                String playerName = Selector.H1.selectFirst(playerDocument).text();
                 return playerName + " " + upcomingMatchTime;
             }
         }
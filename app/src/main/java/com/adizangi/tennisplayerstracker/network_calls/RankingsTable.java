@@ -0,0 +1,118 @@
+/*
+   Represents a tennis rankings table from the ESPN website
+   The table is parsed once into arrays of the players' names, rankings and
+   page URLs, so that the fetchers that read the rankings don't walk the
+   rows again, and the HTML document can be released right after it is
+   parsed
+   The table is saved with the rest of the data, so that single players can
+   be refreshed without fetching the rankings again
+ */
+
+package com.adizangi.tennisplayerstracker.network_calls;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+public class RankingsTable implements Serializable {
+
+    private static final long serialVersionUID = 2846120973358845761L;
+
+    private String[] names;
+    private String[] rankings;
+    private String[] playerURLs;
+
+    /*
+       Constructs a RankingsTable from the given HTML document of the men's
+       tennis rankings or the women's tennis rankings from ESPN
+       The ESPN website doesn't have tennis rankings when a new year starts
+       and there have not been any tennis tournaments in the new year
+       In this case, the table is empty
+     */
+    public RankingsTable(Document rankingsDocument) {
+        Element table = Selector.TABLE.selectFirst(rankingsDocument);
+        Elements rows = table == null ? new Elements() : Selector.ROW.select(table);
+        int numOfPlayers = Math.max(rows.size() - 1, 0);
+        names = new String[numOfPlayers];
+        rankings = new String[numOfPlayers];
+        playerURLs = new String[numOfPlayers];
+        int player = 0;
+        /* The first row is the header */
+        for (int rowIndex = 1; rowIndex < rows.size(); rowIndex++) {
+            Elements columns = Selector.CELL.select(rows.get(rowIndex));
+            if (columns.size() < 2) {  // Not a player row
+                continue;
+            }
+            names[player] = columns.get(1).text();
+            rankings[player] = columns.get(0).text();
+            Element playerNameLink = Selector.LINK.selectFirst(columns.get(1));
+            playerURLs[player] = playerNameLink == null ?
+                    "" : playerNameLink.attr("abs:href");
+            player++;
+        }
+        if (player < numOfPlayers) {
+            names = Arrays.copyOf(names, player);
+            rankings = Arrays.copyOf(rankings, player);
+            playerURLs = Arrays.copyOf(playerURLs, player);
+        }
+    }
+
+    /*
+       Returns the number of players in the table
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /*
+       Returns true if the table has no players
+     */
+    public boolean isEmpty() {
+        return names.length == 0;
+    }
+
+    /*
+       Returns the name of the player at the given index, where index 0 is
+       the first player in the table
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /*
+       Returns the ranking number of the player at the given index
+     */
+    public String getRanking(int index) {
+        return rankings[index];
+    }
+
+    /*
+       Returns the URL of the page of the player at the given index
+       Returns an empty string if the table doesn't link to the player's page
+     */
+    public String getPlayerURL(int index) {
+        return playerURLs[index];
+    }
+
+    /*
+       Returns the player at the given index represented by name followed by
+       ranking in parenthesis, which is how the app identifies players
+     */
+    public String getPlayerKey(int index) {
+        return names[index] + " (" + rankings[index] + ")";
+    }
+
+    /*
+       Returns the name of the given player, represented by name followed by
+       ranking in parenthesis
+       The ranking in a saved player may be out of date, so players that
+       were saved are matched by name
+     */
+    public static String getPlayerName(String player) {
+        return player.substring(0, player.lastIndexOf(" ("));
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+   Limits the requests that are sent to each host, so that fetching pages in
+   parallel doesn't get the app rate limited or banned by the ESPN website
+   Each host has a token bucket, which limits how many requests start per
+   second, and a concurrency limit, which limits how many requests are in
+   flight at a time
+   Both limits adapt like AIMD: they grow a little after a window of fast
+   responses, and are cut in half when the host times out or answers with
+   429 or 5xx
+   The requests that were in flight when the limits were cut were sent at
+   the old limits, so their overloads don't cut the limits again
+   The limits can be saved as a string and restored, so that each run
+   starts at the last level that was safe instead of learning it again
+ */
+
+package com.adizangi.tennisplayerstracker.network_calls;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class RateLimiter {
+
+    static final int MIN_CONCURRENCY = 1;
+    static final int MAX_CONCURRENCY = 8;
+    private static final int INITIAL_CONCURRENCY = 2;
+    private static final double MIN_RATE = 0.5;
+    private static final double MAX_RATE = 10;
+    private static final double INITIAL_RATE = 4;
+    private static final double RATE_STEP = 0.5;
+
+    /* A response that took longer than this is not a sign that the host can
+       take more requests */
+    private static final long FAST_RESPONSE_MILLIS = 1500;
+
+    private final Map<String, HostState> hosts = new HashMap<>();
+
+    /*
+       Waits until a request can be sent to the given host, and counts it as
+       in flight
+       Every call must be followed by a call to release() with the same host
+       Throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized void acquire(String host) throws InterruptedException {
+        HostState state = getState(host);
+        while (true) {
+            state.refill();
+            if (state.inFlight < state.concurrency && state.tokens >= 1) {
+                state.tokens--;
+                state.inFlight++;
+                return;
+            }
+            if (state.inFlight < state.concurrency) {
+                /* Waits for the next token */
+                long waitMillis = (long) Math.ceil((1 - state.tokens) / state.rate * 1000);
+                wait(Math.max(waitMillis, 1));
+            } else {
+                /* Waits for a request to be released */
+                wait();
+            }
+        }
+    }
+
+    /*
+       Stops counting a request to the given host as in flight
+     */
+    public synchronized void release(String host) {
+        HostState state = getState(host);
+        state.inFlight = Math.max(state.inFlight - 1, 0);
+        notifyAll();
+    }
+
+    /*
+       Records that the given host responded after the given latency
+       After a window of fast responses as long as the concurrency limit,
+       raises the concurrency limit by one and the rate by RATE_STEP
+     */
+    public synchronized void recordResponse(String host, long latencyMillis) {
+        HostState state = getState(host);
+        if (latencyMillis >= FAST_RESPONSE_MILLIS) {
+            state.fastResponses = 0;
+            return;
+        }
+        state.fastResponses++;
+        if (state.fastResponses >= state.concurrency) {
+            state.fastResponses = 0;
+            state.concurrency = Math.min(state.concurrency + 1, MAX_CONCURRENCY);
+            state.rate = Math.min(state.rate + RATE_STEP, MAX_RATE);
+            notifyAll();
+        }
+    }
+
+    /*
+       Records that the given host timed out or answered that it is
+       overloaded, for a request that was sent at the given time of
+       System.nanoTime()
+       Cuts the concurrency limit and the rate in half, and empties the
+       bucket so the next request waits for a new token
+       Does nothing if the request was sent before the limits were last cut
+     */
+    public synchronized void recordOverload(String host, long requestStartNanos) {
+        HostState state = getState(host);
+        if (requestStartNanos - state.lastDecreaseNanos < 0) {
+            return;
+        }
+        state.lastDecreaseNanos = System.nanoTime();
+        state.fastResponses = 0;
+        state.concurrency = Math.max(state.concurrency / 2, MIN_CONCURRENCY);
+        state.rate = Math.max(state.rate / 2, MIN_RATE);
+        state.tokens = 0;
+    }
+
+    /*
+       Returns the concurrency limit of the given host
+     */
+    public synchronized int getConcurrency(String host) {
+        return getState(host).concurrency;
+    }
+
+    /*
+       Returns the number of requests per second that may start to the
+       given host
+     */
+    public synchronized double getRate(String host) {
+        return getState(host).rate;
+    }
+
+    /*
+       Returns the limits of all the hosts as a string, in the format
+       'host concurrency rate', one host per line
+     */
+    public synchronized String saveState() {
+        StringBuilder savedState = new StringBuilder();
+        for (Map.Entry<String, HostState> entry : hosts.entrySet()) {
+            savedState.append(String.format(Locale.US, "%s %d %.2f%n", entry.getKey(),
+                    entry.getValue().concurrency, entry.getValue().rate));
+        }
+        return savedState.toString();
+    }
+
+    /*
+       Sets the limits of the hosts in the given string, which was returned
+       by saveState()
+       Lines that can't be read are skipped, and limits that are out of range
+       are moved into range
+     */
+    public synchronized void restoreState(String savedState) {
+        for (String line : savedState.split("\n")) {
+            String[] parts = line.trim().split(" ");
+            if (parts.length != 3) {
+                continue;
+            }
+            try {
+                int concurrency = Integer.parseInt(parts[1]);
+                double rate = Double.parseDouble(parts[2]);
+                HostState state = getState(parts[0]);
+                state.concurrency = Math.min(Math.max(concurrency,
+                        MIN_CONCURRENCY), MAX_CONCURRENCY);
+                state.rate = Math.min(Math.max(rate, MIN_RATE), MAX_RATE);
+            } catch (NumberFormatException e) {
+                e.printStackTrace();
+            }
+        }
+        notifyAll();
+    }
+
+    /*
+       Returns the state of the given host, and creates it with the initial
+       limits if there is none
+     */
+    private HostState getState(String host) {
+        HostState state = hosts.get(host);
+        if (state == null) {
+            state = new HostState();
+            hosts.put(host, state);
+        }
+        return state;
+    }
+
+    /*
+       Holds the limits of one host and the requests that are in flight to it
+     */
+    private static class HostState {
+
+        int concurrency = INITIAL_CONCURRENCY;
+        double rate = INITIAL_RATE;
+        double tokens = 1;
+        int inFlight;
+        int fastResponses;
+        long lastRefillNanos = System.nanoTime();
+        long lastDecreaseNanos = lastRefillNanos;
+
+        /*
+           Adds the tokens that were earned since the last refill, up to a
+           full bucket
+           A full bucket holds one second of requests, so a short burst can
+           start right away
+         */
+        void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(tokens + (now - lastRefillNanos) / 1e9 * rate,
+                    Math.max(rate, 1));
+            lastRefillNanos = now;
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+   A CSS query that is compiled once and can be reused to select elements
+   The fetchers select the same few queries thousands of times in every
+   refresh, and Element.select() parses its query again on every call, so
+   all the queries that the fetchers use are compiled here when the class
+   is loaded
+   A Selector is immutable, so it can be used from several threads
+ */
+
+package com.adizangi.tennisplayerstracker.network_calls;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Collector;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+public class Selector {
+
+    /* Generic elements */
+    public static final Selector TABLE = new Selector("table");
+    public static final Selector ROW = new Selector("tr");
+    public static final Selector CELL = new Selector("td");
+    public static final Selector LINK = new Selector("a");
+    public static final Selector H1 = new Selector("h1");
+    public static final Selector H4 = new Selector("h4");
+    public static final Selector PARAGRAPH = new Selector("p");
+    public static final Selector LIST = new Selector("ul");
+    public static final Selector LIST_ITEM = new Selector("li");
+
+    /* Player pages */
+    public static final Selector PLAYER_STATS = new Selector("div.player-stats");
+    public static final Selector MY_PLAYERS_TABLE = new Selector("#my-players-table");
+    public static final Selector PLAYER_HEADSHOT = new Selector("div.main-headshot img");
+    public static final Selector PLAYER_FLAG = new Selector("ul.general-info img");
+
+    /* Match schedules and tournament pages */
+    public static final Selector NO_MATCH = new Selector("h3.noMatch");
+    public static final Selector SCORE_HEADLINE = new Selector("div.scoreHeadline");
+    public static final Selector MATCH_COURT = new Selector("div.matchCourt");
+    public static final Selector MATCH_TITLE = new Selector("div.matchTitle");
+    public static final Selector ARROW_WRAPPER = new Selector("div.arrowWrapper");
+    public static final Selector MATCH_PARTS =
+            new Selector("div.matchCourt, div.matchTitle, table");
+
+    private String query;
+    private Evaluator evaluator;
+
+    /*
+       Constructs a Selector by compiling the given CSS query
+     */
+    public Selector(String query) {
+        this.query = query;
+        evaluator = QueryParser.parse(query);
+    }
+
+    /*
+       Returns the elements that match this Selector under the given root
+       element, including the root itself
+       Same as root.select(query)
+     */
+    public Elements select(Element root) {
+        return Collector.collect(evaluator, root);
+    }
+
+    /*
+       Returns the first element that matches this Selector under the given
+       root element, including the root itself
+       Returns null if there is no match
+       Same as root.selectFirst(query)
+     */
+    public Element selectFirst(Element root) {
+        return Collector.findFirst(evaluator, root);
+    }
+
+    /*
+       Returns true if there is an element that matches this Selector under
+       the given root element
+     */
+    public boolean hasMatch(Element root) {
+        return selectFirst(root) != null;
+    }
+
+    /*
+       Returns the CSS query of this Selector
+     */
+    @Override
+    public String toString() {
+        return query;
+    }
+
+}
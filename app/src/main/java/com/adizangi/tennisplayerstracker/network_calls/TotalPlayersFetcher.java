@@ -7,29 +7,36 @@
 package com.adizangi.tennisplayerstracker.network_calls;
 
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class TotalPlayersFetcher {
 
-    private Document mRankings;
-    private Document wRankings;
+    private RankingsTable mRankings;
+    private RankingsTable wRankings;
 
     /*
        Constructs a TotalPlayersFetcher with the given HTML documents of the
        men's tennis rankings and women's tennis rankings from ESPN
      */
     public TotalPlayersFetcher(Document mRankings, Document wRankings) {
+        this(new RankingsTable(mRankings), new RankingsTable(wRankings));
+    }
+
+    /*
+       Constructs a TotalPlayersFetcher with the given men's tennis rankings
+       and women's tennis rankings
+     */
+    public TotalPlayersFetcher(RankingsTable mRankings, RankingsTable wRankings) {
         this.mRankings = mRankings;
         this.wRankings = wRankings;
     }
 
     /*
        Returns the total players list
-       The list contains the top 100 men players and the top 100 women players
+       The list contains all the men players and women players in the
+       rankings, not only the ones whose stats are updated in every refresh
        Each player is represented by name followed by ranking in parenthesis
        The ESPN website doesn't have tennis rankings when a new year starts
        and there have not been any tennis tournaments in the new year
@@ -37,27 +44,16 @@ public class TotalPlayersFetcher {
      */
     public List<String> getTotalPlayersList() {
         List<String> players = new ArrayList<>();
-        Element mRankingsTable = mRankings.selectFirst("table");
-        if (mRankingsTable == null) {
+        if (mRankings.isEmpty()) {
             return new ArrayList<>();
         }
-        Elements mRows = mRankingsTable.select("tr");
-        Element wRankingsTable = wRankings.selectFirst("table");
-        Elements wRows = wRankingsTable.select("tr");
-        int mNumOfRows = mRows.size();
-        int wNumOfRows = wRows.size();
-        for (int rowIndex = 1; rowIndex < 101; rowIndex++) {
-            if (rowIndex < mNumOfRows) {  // Check is needed due to bug in the website
-                Elements mColumns = mRows.get(rowIndex).select("td");
-                String playerName = mColumns.get(1).text();
-                String playerRanking = mColumns.get(0).text();
-                players.add(playerName + " (" + playerRanking + ")");
+        int numOfRows = Math.max(mRankings.size(), wRankings.size());
+        for (int index = 0; index < numOfRows; index++) {
+            if (index < mRankings.size()) {  // Check is needed due to bug in the website
+                players.add(mRankings.getPlayerKey(index));
             }
-            if (rowIndex < wNumOfRows) {
-                Elements wColumns = wRows.get(rowIndex).select("td");
-                String playerName = wColumns.get(1).text();
-                String playerRanking = wColumns.get(0).text();
-                players.add(playerName + " (" + playerRanking + ")");
+            if (index < wRankings.size()) {
+                players.add(wRankings.getPlayerKey(index));
             }
         }
         return players;
@@ -0,0 +1,326 @@
+/*
+   An index from each player to the player's latest match, next match, and
+   tournament standing, built from the daily match schedule pages of the
+   tournaments that are played
+   It lets PlayerStatsFetcher get this information for most players from a
+   few tournament pages, instead of fetching the page of every player
+   Players are identified by the URL of their ESPN page
+   The matches that were played are also kept as MatchRecord objects, so
+   they can be added to the MatchStore
+   FetchNotificationDataWorker saves the index it builds, so the crawl that
+   follows it doesn't fetch the same pages again
+ */
+
+package com.adizangi.tennisplayerstracker.network_calls;
+
+import com.adizangi.tennisplayerstracker.utils_data.MatchRecord;
+import com.adizangi.tennisplayerstracker.utils_data.SnapshotStore;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TournamentIndex implements Serializable {
+
+    private static final long serialVersionUID = 8841376522093145817L;
+
+    private Map<String, Entry> entries;
+    private List<MatchRecord> observedMatches;
+    private int today;
+
+    /*
+       Constructs an empty TournamentIndex
+       Pages are added to it with addTournamentPage(), so that each page can
+       be released as soon as it was added
+       Yesterday's pages give the results of the latest matches, and today's
+       pages give the upcoming matches and the results of the matches that
+       were already played today
+     */
+    public TournamentIndex() {
+        entries = new HashMap<>();
+        observedMatches = new ArrayList<>();
+        today = SnapshotStore.getEpochDay(Calendar.getInstance());
+    }
+
+    /*
+       Returns the day the index was built on, as a number of days since
+       January 1, 1970
+     */
+    public int getDay() {
+        return today;
+    }
+
+    /*
+       Returns true if the player with the given page URL appears in one of
+       the tournament pages
+     */
+    public boolean contains(String playerURL) {
+        return entries.containsKey(playerURL);
+    }
+
+    /*
+       Returns true if the index has the player's tournament standing,
+       current tournament, latest match result and upcoming match, so the
+       player's page doesn't need to be fetched for them
+       Returns false for a player who won a tournament, since the player's
+       titles changed
+     */
+    public boolean covers(String playerURL) {
+        Entry entry = entries.get(playerURL);
+        return entry != null &&
+                entry.standing != null &&
+                entry.latestMatchResult != null &&
+                !entry.standing.equals("winner");
+    }
+
+    /*
+       Returns the tournament standing of the player with the given page URL,
+       in the format of PlayerStats.getTournamentStanding()
+       Only safe to call if covers() returns true for the player
+     */
+    public String getTournamentStanding(String playerURL) {
+        return entries.get(playerURL).standing;
+    }
+
+    /*
+       Returns the matches that were played in the tournament pages that were
+       added
+     */
+    public List<MatchRecord> getObservedMatches() {
+        return observedMatches;
+    }
+
+    /*
+       Returns the name of the tournament that the player with the given page
+       URL is playing in
+       Only safe to call if covers() returns true for the player
+     */
+    public String getCurrentTournament(String playerURL) {
+        return entries.get(playerURL).tournament;
+    }
+
+    /*
+       Returns the latest match result of the player with the given page URL,
+       in the format of PlayerStats.getLatestMatchResult()
+       Only safe to call if covers() returns true for the player
+     */
+    public String getLatestMatchResult(String playerURL) {
+        return entries.get(playerURL).latestMatchResult;
+    }
+
+    /*
+       Returns the upcoming match of the player with the given page URL, in
+       the format of PlayerStats.getUpcomingMatch()
+       Only safe to call if covers() returns true for the player
+     */
+    public String getUpcomingMatch(String playerURL) {
+        return entries.get(playerURL).upcomingMatch;
+    }
+
+    /*
+       Adds the singles matches in the given tournament page to the index
+       Each match consists of a table of the two players, which marks the
+       winner with an arrow, followed by a table of the score
+       The round and the time of each match are in the div.matchCourt and
+       div.matchTitle that come before its tables
+       The given boolean tells whether the page is of today's matches
+       All of yesterday's pages must be added before today's pages
+       The index doesn't keep a reference to the page
+     */
+    public void addTournamentPage(Document tournamentPage, boolean isToday) {
+        String docTitle = tournamentPage.title();
+        int nameEndIndex = docTitle.indexOf("Daily Match Schedule - ESPN") - 1;
+        if (nameEndIndex < 0) {
+            return;
+        }
+        String tournamentName = docTitle.substring(0, nameEndIndex);
+        Elements pageElements = Selector.MATCH_PARTS.select(tournamentPage);
+        String round = "";
+        String matchTitle = "";
+        Element matchTable = null;
+        for (Element element : pageElements) {
+            if (element.hasClass("matchCourt")) {
+                round = element.text();
+            } else if (element.hasClass("matchTitle")) {
+                matchTitle = element.text();
+            } else if (matchTable == null) {
+                matchTable = element;
+            } else {
+                if (round.contains("Singles")) {
+                    addMatch(tournamentName, round, matchTitle,
+                            matchTable, element, isToday);
+                }
+                matchTable = null;
+            }
+        }
+    }
+
+    /*
+       Adds the match with the given players table and score table to the
+       index
+       A player who lost the match is out of the tournament, and a player who
+       won the final is the winner
+       A player who won another round advanced to a round that isn't known
+       until the player's next match appears in today's page
+       A player in a match that wasn't played yet advanced to the match's
+       round and has the match as the upcoming match if it is today
+       A match that was played is also kept as a MatchRecord of the day of
+       its page
+     */
+    private void addMatch(String tournamentName,
+                          String round,
+                          String matchTitle,
+                          Element matchTable,
+                          Element scoreTable,
+                          boolean isToday) {
+        Elements rows = Selector.ROW.select(matchTable);
+        Elements scoreRows = Selector.ROW.select(scoreTable);
+        if (rows.size() < 3 || scoreRows.size() < 3) {
+            return;
+        }
+        Element firstRow = rows.get(1);
+        Element secondRow = rows.get(2);
+        String firstURL = getPlayerURL(firstRow);
+        String secondURL = getPlayerURL(secondRow);
+        String simpleRound = getSimpleRound(round);
+        boolean isFirstWinner = Selector.ARROW_WRAPPER.hasMatch(firstRow);
+        boolean isSecondWinner = Selector.ARROW_WRAPPER.hasMatch(secondRow);
+        if (isFirstWinner || isSecondWinner) {
+            String score = scoreRows.get(isFirstWinner ? 1 : 2).text();
+            String winnerURL = isFirstWinner ? firstURL : secondURL;
+            String loserURL = isFirstWinner ? secondURL : firstURL;
+            String winnerName = isFirstWinner ? firstRow.text() : secondRow.text();
+            String loserName = isFirstWinner ? secondRow.text() : firstRow.text();
+            String winnerStanding = round.contains("Final") &&
+                    !round.contains("Semifinal") && !round.contains("Quarterfinal") ?
+                    "winner" : null;
+            putEntry(winnerURL, tournamentName, winnerStanding,
+                    simpleRound + "- " + loserName + " " + score, "");
+            putEntry(loserURL, tournamentName, "out",
+                    simpleRound + "- " + winnerName + " " + score, "");
+            observedMatches.add(new MatchRecord(isToday ? today : today - 1,
+                    tournamentName, simpleRound, winnerName, loserName, score));
+        } else if (isToday) {
+            String upcomingTime = getUpcomingTime(matchTitle);
+            putUpcomingMatch(firstURL, tournamentName, simpleRound,
+                    upcomingTime.isEmpty() ? "" : firstRow.text() + " " + upcomingTime);
+            putUpcomingMatch(secondURL, tournamentName, simpleRound,
+                    upcomingTime.isEmpty() ? "" : secondRow.text() + " " + upcomingTime);
+        }
+    }
+
+    /*
+       Puts an entry with the given values for the player with the given page
+       URL, replacing the player's previous entry
+       Does nothing if the URL is empty
+     */
+    private void putEntry(String playerURL,
+                          String tournament,
+                          String standing,
+                          String latestMatchResult,
+                          String upcomingMatch) {
+        if (playerURL.isEmpty()) {
+            return;
+        }
+        Entry entry = new Entry();
+        entry.tournament = tournament;
+        entry.standing = standing;
+        entry.latestMatchResult = latestMatchResult;
+        entry.upcomingMatch = upcomingMatch;
+        entries.put(playerURL, entry);
+    }
+
+    /*
+       Updates the entry of the player with the given page URL with an
+       upcoming match in the given round
+       The latest match result is kept if the player's previous entry is a
+       win in the same tournament, and is unknown otherwise
+       Does nothing if the URL is empty
+     */
+    private void putUpcomingMatch(String playerURL,
+                                  String tournament,
+                                  String round,
+                                  String upcomingMatch) {
+        if (playerURL.isEmpty()) {
+            return;
+        }
+        Entry previousEntry = entries.get(playerURL);
+        String latestMatchResult = null;
+        if (previousEntry != null &&
+                previousEntry.tournament.equals(tournament) &&
+                previousEntry.standing == null) {
+            latestMatchResult = previousEntry.latestMatchResult;
+        }
+        putEntry(playerURL, tournament, "advanced to " + round,
+                latestMatchResult, upcomingMatch);
+    }
+
+    /*
+       Returns the URL of the page of the player in the given row of a
+       players table
+       Returns an empty string if the row doesn't link to the player's page
+     */
+    private String getPlayerURL(Element playerRow) {
+        Element playerLink = Selector.LINK.selectFirst(playerRow);
+        if (playerLink == null) {
+            return "";
+        }
+        return playerLink.attr("abs:href");
+    }
+
+    /*
+       Returns the given round without the event that comes before it and the
+       details that come after the colon, like "Round 2" in
+       "Men's Singles - Round 2: Court 1", which is how the players' pages
+       name the round
+     */
+    private String getSimpleRound(String round) {
+        int colonIndex = round.indexOf(":");
+        String simpleRound = colonIndex == -1 ? round : round.substring(0, colonIndex);
+        int eventEndIndex = simpleRound.lastIndexOf(" - ");
+        if (eventEndIndex == -1) {
+            return simpleRound;
+        }
+        return simpleRound.substring(eventEndIndex + 3);
+    }
+
+    /*
+       Returns the time of the match with the given title, which is between
+       the colon and the last hyphen of the title
+       Returns an empty string if the title doesn't have a time in Eastern Time
+     */
+    private String getUpcomingTime(String matchTitle) {
+        int startIndex = matchTitle.indexOf(":") + 2;
+        int endIndex = matchTitle.lastIndexOf("-") - 1;
+        if (startIndex < 2 || endIndex <= startIndex) {
+            return "";
+        }
+        String time = matchTitle.substring(startIndex, endIndex);
+        if (!time.contains("ET")) {
+            return "";
+        }
+        return time;
+    }
+
+    /*
+       The information that the index has about one player
+       A null standing means the player won a round and the next round isn't
+       known, and a null latest match result means it isn't known
+     */
+    private static class Entry implements Serializable {
+        private static final long serialVersionUID = 2047361938815267410L;
+
+        String tournament;
+        String standing;
+        String latestMatchResult;
+        String upcomingMatch;
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+   Fetches the pages of the tournaments in a daily match schedule from the
+   ESPN website
+   The pages are fetched concurrently, since each tournament has its own page
+ */
+
+package com.adizangi.tennisplayerstracker.network_calls;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TournamentPageFetcher {
+
+    /* The RateLimiter decides how many of the fetches run at a time */
+    private static final int MAX_PARALLEL_FETCHES = RateLimiter.MAX_CONCURRENCY;
+
+    /*
+       Returns the URLs of the tournaments in the given match schedule, in
+       the order they appear in the schedule
+       If there are no matches in the schedule, returns an empty list
+     */
+    public List<String> getTournamentURLs(Document schedule) {
+        List<String> tournamentURLs = new ArrayList<>();
+        if (Selector.NO_MATCH.hasMatch(schedule)) {
+            return tournamentURLs;
+        }
+        Elements tournaments = Selector.SCORE_HEADLINE.select(schedule);
+        for (Element tournament : tournaments) {
+            tournamentURLs.add(Selector.LINK.selectFirst(tournament).attr("abs:href"));
+        }
+        return tournamentURLs;
+    }
+
+    /*
+       Fetches the pages of the tournaments with the given URLs concurrently
+       A URL that is given more than once is fetched only once
+       Returns a map from the URL of each tournament to its page
+       May throw IOException
+     */
+    public Map<String, Document> getTournamentPages(Collection<String> tournamentURLs)
+            throws IOException {
+        Map<String, Document> tournamentPages = new HashMap<>();
+        Collection<String> uniqueURLs = new LinkedHashSet<>(tournamentURLs);
+        if (uniqueURLs.isEmpty()) {
+            return tournamentPages;
+        }
+        int numOfThreads = Math.min(uniqueURLs.size(), MAX_PARALLEL_FETCHES);
+        final PageFetcher pageFetcher = new PageFetcher();
+        ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+        try {
+            Map<String, Future<Document>> futurePages = new LinkedHashMap<>();
+            for (final String tournamentURL : uniqueURLs) {
+                futurePages.put(tournamentURL, executor.submit(new Callable<Document>() {
+                    @Override
+                    public Document call() throws IOException {
+                        return pageFetcher.fetch(tournamentURL,
+                                PageFetcher.PAGE_TOURNAMENT);
+                    }
+                }));
+            }
+            for (Map.Entry<String, Future<Document>> entry : futurePages.entrySet()) {
+                tournamentPages.put(entry.getKey(), getFetchedPage(entry.getValue()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return tournamentPages;
+    }
+
+    /*
+       Waits for the given fetch to finish and returns the fetched page
+       If the fetch failed, throws the IOException that it failed with
+     */
+    private Document getFetchedPage(Future<Document> futurePage) throws IOException {
+        try {
+            return futurePage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Fetching a tournament was interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+}
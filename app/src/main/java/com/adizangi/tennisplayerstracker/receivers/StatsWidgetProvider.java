@@ -0,0 +1,87 @@
+/*
+   The home screen widget, which shows the standings of the user's selected
+   players and their matches today
+   The widget is filled from the WidgetSnapshot that is saved whenever the
+   stats or the selected players change, so an update reads one small file
+   Tapping the widget opens the app
+ */
+
+package com.adizangi.tennisplayerstracker.receivers;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.widget.RemoteViews;
+
+import com.adizangi.tennisplayerstracker.R;
+import com.adizangi.tennisplayerstracker.activities.MainActivity;
+import com.adizangi.tennisplayerstracker.utils_data.FileManager;
+import com.adizangi.tennisplayerstracker.utils_data.WidgetSnapshot;
+
+public class StatsWidgetProvider extends AppWidgetProvider {
+
+    /*
+       Called when the widgets with the given IDs should be updated
+       Fills them from the saved widget snapshot
+     */
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        appWidgetManager.updateAppWidget(appWidgetIds, getViews(context));
+    }
+
+    /*
+       Updates all the widgets on the home screen from the saved widget
+       snapshot
+       Called after the widget snapshot is saved
+     */
+    public static void updateWidgets(Context context) {
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(
+                new ComponentName(context, StatsWidgetProvider.class));
+        if (appWidgetIds.length > 0) {
+            appWidgetManager.updateAppWidget(appWidgetIds, getViews(context));
+        }
+    }
+
+    /*
+       Returns the views of the widget, filled from the saved widget snapshot
+       Each selected player has a line with the player's ranking and
+       tournament standing, and each upcoming match today has a line under
+       them
+     */
+    private static RemoteViews getViews(Context context) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_stats);
+        WidgetSnapshot snapshot = new FileManager(context).readWidgetSnapshot();
+        StringBuilder standings = new StringBuilder();
+        StringBuilder matches = new StringBuilder();
+        if (snapshot != null) {
+            for (int row = 0; row < snapshot.getNumOfRows(); row++) {
+                if (standings.length() > 0) {
+                    standings.append("\n");
+                }
+                standings.append(snapshot.getName(row));
+                int ranking = snapshot.getRankingNumber(row);
+                if (ranking != -1) {
+                    standings.append(" (").append(ranking).append(")");
+                }
+                standings.append("- ").append(snapshot.getTournamentStanding(row));
+                String upcomingMatch = snapshot.getUpcomingMatch(row);
+                if (!upcomingMatch.isEmpty()) {
+                    matches.append(matches.length() > 0 ? "\n" : "").append(upcomingMatch);
+                }
+            }
+        }
+        views.setTextViewText(R.id.widget_standings, standings.length() > 0 ?
+                standings.toString() : context.getString(R.string.text_widget_no_players));
+        views.setTextViewText(R.id.widget_matches, matches.length() > 0 ?
+                matches.toString() : context.getString(R.string.text_widget_no_matches));
+        Intent intent = new Intent(context, MainActivity.class);
+        PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, intent, 0);
+        views.setOnClickPendingIntent(R.id.widget_root, pendingIntent);
+        return views;
+    }
+
+}
@@ -14,27 +14,31 @@ import android.net.ConnectivityManager;
 import android.net.NetworkCapabilities;
 
 import com.adizangi.tennisplayerstracker.R;
-import com.adizangi.tennisplayerstracker.workers.FetchDataWorker;
-import com.adizangi.tennisplayerstracker.workers.NotificationWorker;
+import com.adizangi.tennisplayerstracker.network_calls.ByteBudget;
+import com.adizangi.tennisplayerstracker.network_calls.PlayerStatsFetcher;
 
 import java.util.Calendar;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 
 import androidx.preference.PreferenceManager;
-import androidx.work.BackoffPolicy;
-import androidx.work.Constraints;
-import androidx.work.Data;
-import androidx.work.ExistingWorkPolicy;
 import androidx.work.NetworkType;
-import androidx.work.OneTimeWorkRequest;
-import androidx.work.WorkManager;
 
 public class BackgroundManager extends ContextWrapper {
 
     public static final String DOWNLOAD_CONTENT_WORK_NAME = "downloadContent";
-    public static final String RESCHEDULE_KEY = "reschedule";
+    public static final String DEFERRED_CRAWL_WORK_NAME = "deferredCrawl";
+    public static final String PREFETCH_WORK_NAME = "prefetch";
+
+    /* Fetch profiles- how much a refresh may download on the current
+       network
+       On a metered network a scheduled refresh fetches only the schedule
+       and the selected players, and the full crawl is deferred until the
+       network is unmetered */
+    public static final String PROFILE_METERED = "metered";
+    public static final String PROFILE_UNMETERED = "unmetered";
+
+    private static final long BYTES_IN_MEGABYTE = 1024 * 1024;
 
     /*
        Constructs a BackgroundManager with the given application context
@@ -80,83 +84,44 @@ public class BackgroundManager extends ContextWrapper {
 
     /*
        Starts a chain of background work that downloads content
-       The chain consists of a worker that fetches tennis data from the ESPN
-       website, followed by a worker that sends a notification with the
-       newest events
+       The chain consists of a worker that fetches the data for today's
+       notification, followed by a worker that sends a notification with the
+       newest events, followed by a worker that fetches the rest of the
+       tennis data from the ESPN website
        It will begin right away as long as there is network connection
        If the network disconnects, the work will be retried as soon as possible
        Returns an array of the UUIDs of the work requests in the chain's order
      */
     public UUID[] downloadContent() {
-        OneTimeWorkRequest fetchDataReq = new OneTimeWorkRequest.Builder
-                (FetchDataWorker.class)
-                .setConstraints(new Constraints.Builder()
-                        .setRequiredNetworkType(getPermittedNetwork())
-                        .build())
-                .setBackoffCriteria(
-                        BackoffPolicy.LINEAR,
-                        OneTimeWorkRequest.MIN_BACKOFF_MILLIS,
-                        TimeUnit.MILLISECONDS)
-                .build();
-        OneTimeWorkRequest notificationReq = new OneTimeWorkRequest.Builder
-                (NotificationWorker.class)
-                .setInputData(new Data.Builder()
-                        .putBoolean(RESCHEDULE_KEY, false)
-                        .build())
-                .build();
-        WorkManager.getInstance(this)
-                .beginUniqueWork(DOWNLOAD_CONTENT_WORK_NAME,
-                        ExistingWorkPolicy.REPLACE,
-                        fetchDataReq)
-                .then(notificationReq)
-                .enqueue();
-        return new UUID[]{fetchDataReq.getId(), notificationReq.getId()};
+        return new RefreshScheduler(this).enqueueRefresh(
+                RefreshScheduler.KIND_ONE_TIME, RefreshScheduler.SCOPE_FULL, 0);
     }
 
     /*
-       Schedules a repeating chain of work that makes a daily update
-       The chain consists of a worker that fetches updated tennis data from the
-       ESPN website, followed by a worker that sends a notification with the
-       newest events
-       It is scheduled for midnight each day, but if the device is on doze mode
-       at midnight, it will be delayed until the device exits doze mode
-       It also requires network connection to start
-       The repeating chain is created by adding RESCHEDULE_KEY with the value
-       true, so that NotificationWorker will reschedule the next chain
+       Schedules the repeating refresh of the app's data
+       The cadence and the scope of each refresh are picked by
+       RefreshScheduler based on the tennis activity that was observed in the
+       latest refresh, and each refresh schedules the one after it
+       If a refresh is in progress, it is not cancelled- the schedule is
+       updated when it finishes
+       Also schedules the prefetch that fills the page cache while the
+       device is charging on an unmetered network, if it isn't scheduled yet
      */
     public void scheduleDailyUpdates() {
-        Constraints constraints = new Constraints.Builder()
-                .setRequiredNetworkType(getPermittedNetwork())
-                .build();
-        OneTimeWorkRequest fetchDataReq = new OneTimeWorkRequest.Builder
-                (FetchDataWorker.class)
-                .setConstraints(constraints)
-                .setInitialDelay(getTimeUntilMidnight(), TimeUnit.MILLISECONDS)
-                .build();
-        OneTimeWorkRequest notificationReq = new OneTimeWorkRequest.Builder
-                (NotificationWorker.class)
-                .setInputData(new Data.Builder()
-                        .putBoolean(RESCHEDULE_KEY, true)
-                        .build())
-                .build();
-        WorkManager.getInstance(this)
-                .beginUniqueWork(DOWNLOAD_CONTENT_WORK_NAME,
-                        ExistingWorkPolicy.REPLACE,
-                        fetchDataReq)
-                .then(notificationReq)
-                .enqueue();
+        new RefreshCoordinator(this).requestReschedule();
+        new RefreshScheduler(this).schedulePrefetch();
     }
 
     /*
-       Cancels and reschedules the work chain that is created in
+       Reschedules the repeating refresh that is created in
        scheduleDailyUpdates()
        This method can be used to apply changes in the time zone or network
        preferences
      */
     public void resetDailyUpdates() {
-        /* Since the work chain was created with the REPLACE policy, it's
-           enough to call scheduleDailyUpdates()
-           The older chain will be cancelled and the newer one will replace it */
+        /* RefreshCoordinator replaces a refresh that hasn't started yet, and
+           merges the change into a refresh that is in progress, so it's
+           enough to call scheduleDailyUpdates() */
         scheduleDailyUpdates();
     }
 
@@ -190,15 +155,60 @@ public class BackgroundManager extends ContextWrapper {
     }
 
     /*
-       Returns the number of milliseconds between the current time and 12:00am
+       Returns the fetch profile of the network that the device uses now,
+       which is PROFILE_METERED if the network is metered (usually mobile
+       data) and PROFILE_UNMETERED otherwise
+     */
+    public String getFetchProfile() {
+        ConnectivityManager connectivityManager =
+                getSystemService(ConnectivityManager.class);
+        if (connectivityManager != null && connectivityManager.isActiveNetworkMetered()) {
+            return PROFILE_METERED;
+        }
+        return PROFILE_UNMETERED;
+    }
+
+    /*
+       Gets the value of the data per refresh preference of the given fetch
+       profile in Settings, and returns it in bytes
+       Returns ByteBudget.NO_LIMIT if the user chose no limit
      */
-    private long getTimeUntilMidnight() {
-        Calendar c = Calendar.getInstance();
-        c.add(Calendar.DATE, 1);
-        c.set(Calendar.HOUR_OF_DAY, 0);
-        c.set(Calendar.MINUTE, 0);
-        c.set(Calendar.SECOND, 0);
-        return c.getTimeInMillis() - System.currentTimeMillis();
+    public long getByteBudget(String fetchProfile) {
+        SharedPreferences preferences =
+                PreferenceManager.getDefaultSharedPreferences(this);
+        String budgetMegabytes;
+        if (PROFILE_METERED.equals(fetchProfile)) {
+            budgetMegabytes = preferences.getString(
+                    getString(R.string.pref_metered_budget_key),
+                    getString(R.string.pref_metered_budget_default));
+        } else {
+            budgetMegabytes = preferences.getString(
+                    getString(R.string.pref_unmetered_budget_key),
+                    getString(R.string.pref_unmetered_budget_default));
+        }
+        try {
+            return Long.parseLong(budgetMegabytes) * BYTES_IN_MEGABYTE;
+        } catch (NumberFormatException e) {
+            return ByteBudget.NO_LIMIT;
+        }
+    }
+
+    /*
+       Gets the value of the ranking depth preference in Settings, which is
+       how many players of each tour are updated in every refresh
+       Players below the depth are only updated while they are selected
+     */
+    public int getRankingDepth() {
+        SharedPreferences preferences =
+                PreferenceManager.getDefaultSharedPreferences(this);
+        String rankingDepth = preferences.getString(
+                getString(R.string.pref_ranking_depth_key),
+                getString(R.string.pref_ranking_depth_default));
+        try {
+            return Integer.parseInt(rankingDepth);
+        } catch (NumberFormatException e) {
+            return PlayerStatsFetcher.DEFAULT_RANKING_DEPTH;
+        }
     }
 
 }
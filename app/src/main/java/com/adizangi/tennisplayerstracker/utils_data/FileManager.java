@@ -8,11 +8,19 @@ import android.content.Context;
 import android.content.ContextWrapper;
 import android.widget.Toast;
 
+import com.adizangi.tennisplayerstracker.network_calls.RankingsTable;
+import com.adizangi.tennisplayerstracker.network_calls.TournamentIndex;
+
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -22,6 +30,20 @@ public class FileManager extends ContextWrapper {
     private static final String TOTAL_PLAYERS_FILENAME = "total_players";
     private static final String STATS_FILENAME = "player_stats";
     private static final String NOTIFICATION_FILENAME = "notification_text";
+    private static final String SCHEDULE_SNAPSHOT_FILENAME = "schedule_snapshot";
+    private static final String RANKINGS_TABLES_FILENAME = "rankings_tables";
+    private static final String RUN_METRICS_FILENAME = "run_metrics";
+    private static final String TOURNAMENT_INDEX_FILENAME = "tournament_index";
+    private static final String TREND_AGGREGATES_FILENAME = "trend_aggregates";
+    private static final String WIDGET_SNAPSHOT_FILENAME = "widget_snapshot";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String SNAPSHOTS_DIRECTORY = "snapshots";
+    private static final String MATCHES_DIRECTORY = "matches";
+
+    /* The player stats map is written by the workers and by StatsLoader,
+       which run on different threads of the same process, so reading,
+       merging and writing it is done under this lock */
+    private static final Object STATS_LOCK = new Object();
 
     /*
        Constructs a FileManager with the given application context
@@ -77,20 +99,31 @@ public class FileManager extends ContextWrapper {
      */
     @SuppressWarnings("unchecked")
     public Map<String, PlayerStats> readPlayerStats() {
-        try {
-            FileInputStream in = openFileInput(STATS_FILENAME);
-            ObjectInputStream oin = new ObjectInputStream(in);
-            Map<String, PlayerStats> stats =
-                    (Map<String, PlayerStats>) oin.readObject();
-            oin.close();
-            in.close();
-            return stats;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
+        synchronized (STATS_LOCK) {
+            try {
+                FileInputStream in = openFileInput(STATS_FILENAME);
+                ObjectInputStream oin = new ObjectInputStream(in);
+                Map<String, PlayerStats> stats =
+                        (Map<String, PlayerStats>) oin.readObject();
+                oin.close();
+                in.close();
+                return stats;
+            } catch (Exception e) {
+                e.printStackTrace();
+                return null;
+            }
         }
     }
 
+    /*
+       Returns the time in milliseconds when the player stats map was last
+       stored
+       Returns 0 if the map was never stored
+     */
+    public long getPlayerStatsTime() {
+        return getFileStreamPath(STATS_FILENAME).lastModified();
+    }
+
     /*
        Reads the notification text from the file and returns it
        Returns an empty string if there is an error
@@ -109,6 +142,136 @@ public class FileManager extends ContextWrapper {
         }
     }
 
+    /*
+       Reads the snapshot of the latest fetched match schedule from the file
+       and returns it
+       Returns null if there is an error
+     */
+    public ScheduleSnapshot readScheduleSnapshot() {
+        try {
+            FileInputStream in = openFileInput(SCHEDULE_SNAPSHOT_FILENAME);
+            ObjectInputStream oin = new ObjectInputStream(in);
+            ScheduleSnapshot snapshot = (ScheduleSnapshot) oin.readObject();
+            oin.close();
+            in.close();
+            return snapshot;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /*
+       Reads the men's and women's rankings tables from the file and returns
+       them in an array, in that order
+       Returns null if there is an error
+     */
+    public RankingsTable[] readRankingsTables() {
+        try {
+            FileInputStream in = openFileInput(RANKINGS_TABLES_FILENAME);
+            ObjectInputStream oin = new ObjectInputStream(in);
+            RankingsTable[] rankingsTables = (RankingsTable[]) oin.readObject();
+            oin.close();
+            in.close();
+            return rankingsTables;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /*
+       Reads the tournament index that FetchNotificationDataWorker saved
+       from the file and returns it
+       Returns null if there is an error
+     */
+    public TournamentIndex readTournamentIndex() {
+        try {
+            FileInputStream in = openFileInput(TOURNAMENT_INDEX_FILENAME);
+            ObjectInputStream oin = new ObjectInputStream(in);
+            TournamentIndex tournamentIndex = (TournamentIndex) oin.readObject();
+            oin.close();
+            in.close();
+            return tournamentIndex;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /*
+       Returns the time in milliseconds when the tournament index was last
+       stored
+       Returns 0 if the index was never stored
+     */
+    public long getTournamentIndexTime() {
+        return getFileStreamPath(TOURNAMENT_INDEX_FILENAME).lastModified();
+    }
+
+    /*
+       Reads the list of the measurements of the latest runs from the file
+       and returns it, from the oldest run to the newest
+       Returns null if there is an error
+     */
+    @SuppressWarnings("unchecked")
+    public List<RunMetrics> readRunMetrics() {
+        try {
+            FileInputStream in = openFileInput(RUN_METRICS_FILENAME);
+            ObjectInputStream oin = new ObjectInputStream(in);
+            List<RunMetrics> runs = (List<RunMetrics>) oin.readObject();
+            oin.close();
+            in.close();
+            return runs;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /*
+       Reads the trends of the players from the file and returns them
+       Returns null if there is an error
+     */
+    public TrendAggregates readTrendAggregates() {
+        try {
+            FileInputStream in = openFileInput(TREND_AGGREGATES_FILENAME);
+            ObjectInputStream oin = new ObjectInputStream(in);
+            TrendAggregates trends = (TrendAggregates) oin.readObject();
+            oin.close();
+            in.close();
+            return trends;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /*
+       Reads the widget snapshot from the file and returns it
+       The file is small and is read as it is, so this is fast enough for a
+       widget update
+       Returns null if there is an error
+     */
+    public WidgetSnapshot readWidgetSnapshot() {
+        try {
+            FileInputStream in = openFileInput(WIDGET_SNAPSHOT_FILENAME);
+            byte[] data = new byte[in.available()];
+            int length = 0;
+            while (length < data.length) {
+                int read = in.read(data, length, data.length - length);
+                if (read == -1) {
+                    break;
+                }
+                length += read;
+            }
+            in.close();
+            return new WidgetSnapshot(data);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     /*
        Stores the given list of the user's players in a file
      */
@@ -146,13 +309,73 @@ public class FileManager extends ContextWrapper {
 
     /*
        Stores the given player stats map in a file
+       The file is replaced in one step, so a read never sees a file that is
+       being written
      */
     public void storePlayerStats(Map<String, PlayerStats> stats) {
+        synchronized (STATS_LOCK) {
+            try {
+                FileOutputStream out = openFileOutput(STATS_FILENAME + TEMP_SUFFIX,
+                        Context.MODE_PRIVATE);
+                ObjectOutputStream oout = new ObjectOutputStream(out);
+                oout.writeObject(stats);
+                oout.close();
+                out.close();
+                File tempFile = getFileStreamPath(STATS_FILENAME + TEMP_SUFFIX);
+                if (!tempFile.renameTo(getFileStreamPath(STATS_FILENAME))) {
+                    tempFile.delete();
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /*
+       Merges the given stats, which started to be fetched at the given time
+       in milliseconds, into the saved player stats map, and returns the
+       merged map
+       If the map was saved after that time, it is at least as new as the
+       given stats, so only the players who aren't in it are added
+       A player whose ranking changed replaces the entry of the old ranking
+       If there is a saved map that can't be read, nothing is written and
+       null is returned, so a read error never replaces the whole map with
+       the given players
+       The map is read and written under one lock, so a refresh that stores
+       the map at the same time isn't overwritten with an older map
+     */
+    public Map<String, PlayerStats> mergePlayerStats(Map<String, PlayerStats> newStats,
+                                                     long fetchStartTime) {
+        synchronized (STATS_LOCK) {
+            Map<String, PlayerStats> stats;
+            if (getFileStreamPath(STATS_FILENAME).exists()) {
+                stats = readPlayerStats();
+                if (stats == null) {
+                    return null;
+                }
+            } else {
+                stats = new HashMap<>();
+            }
+            boolean isSavedMapNewer = getPlayerStatsTime() > fetchStartTime;
+            for (Map.Entry<String, PlayerStats> entry : newStats.entrySet()) {
+                if (!isSavedMapNewer || PlayerStats.find(stats, entry.getKey()) == null) {
+                    PlayerStats.put(stats, entry.getKey(), entry.getValue());
+                }
+            }
+            storePlayerStats(stats);
+            return stats;
+        }
+    }
+
+    /*
+       Stores the given notification text in a file
+     */
+    public void storeNotificationText(String notifText) {
         try {
-            FileOutputStream out = openFileOutput(STATS_FILENAME,
+            FileOutputStream out = openFileOutput(NOTIFICATION_FILENAME,
                     Context.MODE_PRIVATE);
             ObjectOutputStream oout = new ObjectOutputStream(out);
-            oout.writeObject(stats);
+            oout.writeObject(notifText);
             oout.close();
             out.close();
         } catch (Exception e) {
@@ -161,14 +384,62 @@ public class FileManager extends ContextWrapper {
     }
 
     /*
-       Stores the given notification text in a file
+       Stores the given snapshot of a match schedule in a file
      */
-    public void storeNotificationText(String notifText) {
+    public void storeScheduleSnapshot(ScheduleSnapshot snapshot) {
         try {
-            FileOutputStream out = openFileOutput(NOTIFICATION_FILENAME,
+            FileOutputStream out = openFileOutput(SCHEDULE_SNAPSHOT_FILENAME,
                     Context.MODE_PRIVATE);
             ObjectOutputStream oout = new ObjectOutputStream(out);
-            oout.writeObject(notifText);
+            oout.writeObject(snapshot);
+            oout.close();
+            out.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+       Stores the given men's and women's rankings tables in a file
+     */
+    public void storeRankingsTables(RankingsTable mRankings, RankingsTable wRankings) {
+        try {
+            FileOutputStream out = openFileOutput(RANKINGS_TABLES_FILENAME,
+                    Context.MODE_PRIVATE);
+            ObjectOutputStream oout = new ObjectOutputStream(out);
+            oout.writeObject(new RankingsTable[]{mRankings, wRankings});
+            oout.close();
+            out.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+       Stores the given list of the measurements of the latest runs in a file
+     */
+    public void storeRunMetrics(List<RunMetrics> runs) {
+        try {
+            FileOutputStream out = openFileOutput(RUN_METRICS_FILENAME,
+                    Context.MODE_PRIVATE);
+            ObjectOutputStream oout = new ObjectOutputStream(out);
+            oout.writeObject(runs);
+            oout.close();
+            out.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+       Stores the given tournament index in a file
+     */
+    public void storeTournamentIndex(TournamentIndex tournamentIndex) {
+        try {
+            FileOutputStream out = openFileOutput(TOURNAMENT_INDEX_FILENAME,
+                    Context.MODE_PRIVATE);
+            ObjectOutputStream oout = new ObjectOutputStream(out);
+            oout.writeObject(tournamentIndex);
             oout.close();
             out.close();
         } catch (Exception e) {
@@ -176,4 +447,108 @@ public class FileManager extends ContextWrapper {
         }
     }
 
+    /*
+       Stores the given trends of the players in a file
+     */
+    public void storeTrendAggregates(TrendAggregates trends) {
+        try {
+            FileOutputStream out = openFileOutput(TREND_AGGREGATES_FILENAME,
+                    Context.MODE_PRIVATE);
+            ObjectOutputStream oout = new ObjectOutputStream(out);
+            oout.writeObject(trends);
+            oout.close();
+            out.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+       Stores the widget snapshot of the given selected players, with their
+       stats from the given player stats map, in the order of the Stats tab
+       Selected players who have no stats are left out
+       The file is replaced in one step, so the widget never reads a file
+       that is being written
+     */
+    public void storeWidgetSnapshot(List<String> selectedPlayers,
+                                    Map<String, PlayerStats> stats) {
+        List<PlayerStats> rows = new ArrayList<>();
+        for (String player : selectedPlayers) {
+            PlayerStats playerStats = PlayerStats.find(stats, player);
+            if (playerStats != null) {
+                rows.add(playerStats);
+            }
+        }
+        Collections.sort(rows, Collections.reverseOrder());
+        try {
+            FileOutputStream out = openFileOutput(WIDGET_SNAPSHOT_FILENAME + TEMP_SUFFIX,
+                    Context.MODE_PRIVATE);
+            out.write(WidgetSnapshot.build(rows, System.currentTimeMillis()));
+            out.close();
+            File tempFile = getFileStreamPath(WIDGET_SNAPSHOT_FILENAME + TEMP_SUFFIX);
+            if (!tempFile.renameTo(getFileStreamPath(WIDGET_SNAPSHOT_FILENAME))) {
+                tempFile.delete();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+       Returns the SnapshotStore that keeps the daily history of the player
+       stats
+     */
+    public SnapshotStore getSnapshotStore() {
+        File directory = new File(getFilesDir(), SNAPSHOTS_DIRECTORY);
+        directory.mkdirs();
+        return SnapshotStore.open(directory);
+    }
+
+    /*
+       Appends the given player stats map to the history of the player stats
+       as today's snapshot, updates the trends of the players with it, and
+       compacts the history if it's due
+       If there are no saved trends, they are built from the whole history
+     */
+    public void appendStatsSnapshot(Map<String, PlayerStats> stats) {
+        try {
+            SnapshotStore snapshotStore = getSnapshotStore();
+            int today = SnapshotStore.getEpochDay(Calendar.getInstance());
+            snapshotStore.appendSnapshot(today, stats.values());
+            TrendAggregates trends = readTrendAggregates();
+            if (trends == null) {
+                trends = new TrendAggregates();
+                for (int day : snapshotStore.getDays()) {
+                    trends.update(day, snapshotStore.getSnapshot(day).values());
+                }
+            } else {
+                trends.update(today, stats.values());
+            }
+            storeTrendAggregates(trends);
+            snapshotStore.compactIfNeeded(today);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+       Returns the MatchStore that keeps the matches that were seen
+     */
+    public MatchStore getMatchStore() {
+        File directory = new File(getFilesDir(), MATCHES_DIRECTORY);
+        directory.mkdirs();
+        return MatchStore.open(directory);
+    }
+
+    /*
+       Adds the given matches to the MatchStore
+     */
+    public void addMatches(Collection<MatchRecord> matches) {
+        try {
+            getMatchStore().addMatches(matches);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
 }
@@ -0,0 +1,264 @@
+/*
+   Loads the players' headshots and flags into ImageViews
+   Images are kept at two levels: decoded bitmaps in a memory LRU cache that
+   takes a fraction of the heap, and the downloaded bytes in an ImageCache
+   on the disk, so an image is downloaded once and decoded again only after
+   its bitmap was evicted
+   Bitmaps are decoded with a sample size that fits the size of the view, so
+   a large headshot doesn't take the memory of the full picture
+   Downloading and decoding run on background threads, and only setting the
+   bitmap runs on the main thread, so binding a row never waits for an image
+   Views are recycled while scrolling, so each view remembers the image it
+   should show, and a bitmap that arrives after its view moved on to another
+   row is not set on it
+   There is one ImageLoader for the whole process, so every list shares the
+   caches
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.adizangi.tennisplayerstracker.network_calls.ImageCache;
+import com.adizangi.tennisplayerstracker.network_calls.PageFetcher;
+
+import org.jsoup.HttpStatusException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+public class ImageLoader {
+
+    /* The memory cache takes up to this part of the heap */
+    private static final int MEMORY_CACHE_FRACTION = 8;
+
+    private static final String DISK_CACHE_DIRECTORY = "images";
+    private static final long MAX_DISK_CACHE_BYTES = 20 * 1024 * 1024;
+
+    /* Images are decoded by a few threads, so the rows of one screen load
+       together without taking the CPU from the main thread */
+    private static final int NUM_OF_THREADS = 2;
+
+    /* A client error other than 429 (too many requests) means the image
+       won't be found by trying again */
+    private static final int MIN_CLIENT_ERROR_STATUS = 400;
+    private static final int MAX_CLIENT_ERROR_STATUS = 499;
+    private static final int STATUS_TOO_MANY_REQUESTS = 429;
+
+    private static ImageLoader imageLoader;
+
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ImageCache diskCache;
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+
+    /* Used only on the main thread */
+    private final Map<String, List<ImageView>> waitingViews;
+    private final Set<String> failedURLs;
+
+    /*
+       Returns the ImageLoader of the process, creating it with the cache
+       directory of the given context if there is none
+     */
+    public static synchronized ImageLoader getInstance(Context context) {
+        if (imageLoader == null) {
+            imageLoader = new ImageLoader(new File(context.getCacheDir(), DISK_CACHE_DIRECTORY));
+        }
+        return imageLoader;
+    }
+
+    /*
+       Constructs an ImageLoader that keeps the downloaded images in the given
+       directory
+     */
+    private ImageLoader(File diskCacheDirectory) {
+        int maxKilobytes = (int) (Runtime.getRuntime().maxMemory() / 1024 / MEMORY_CACHE_FRACTION);
+        memoryCache = new LruCache<String, Bitmap>(maxKilobytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount() / 1024;
+            }
+        };
+        diskCache = new ImageCache(diskCacheDirectory, MAX_DISK_CACHE_BYTES);
+        executor = Executors.newFixedThreadPool(NUM_OF_THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                });
+            }
+        });
+        mainHandler = new Handler(Looper.getMainLooper());
+        waitingViews = new HashMap<>();
+        failedURLs = new HashSet<>();
+    }
+
+    /*
+       Shows the image with the given URL in the given view, decoded for the
+       given size in pixels
+       If the bitmap is in the memory cache it is set right away, and
+       otherwise the view is cleared until the bitmap is loaded
+       An empty or null URL clears the view
+       Must be called on the main thread
+     */
+    public void load(final String url, ImageView view, final int width, final int height) {
+        if (url == null || url.isEmpty() || failedURLs.contains(url)) {
+            view.setTag(null);
+            view.setImageDrawable(null);
+            return;
+        }
+        final String key = url + " " + width + "x" + height;
+        view.setTag(key);
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap != null) {
+            view.setImageBitmap(bitmap);
+            return;
+        }
+        view.setImageDrawable(null);
+        List<ImageView> views = waitingViews.get(key);
+        if (views != null) {
+            /* The bitmap is already being loaded for another view */
+            views.add(view);
+            return;
+        }
+        views = new ArrayList<>();
+        views.add(view);
+        waitingViews.put(key, views);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap bitmap = null;
+                boolean isBroken;
+                try {
+                    bitmap = loadBitmap(url, width, height);
+                    isBroken = bitmap == null;
+                } catch (IOException e) {
+                    /* The image may load when it is shown again */
+                    e.printStackTrace();
+                    isBroken = false;
+                }
+                final Bitmap loadedBitmap = bitmap;
+                final boolean isLoadedBroken = isBroken;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(url, key, loadedBitmap, isLoadedBroken);
+                    }
+                });
+            }
+        });
+    }
+
+    /*
+       Sets the given bitmap that was loaded with the given key and URL on the
+       views that still show that key, and keeps it in the memory cache
+       A null bitmap means the image couldn't be loaded, and if the given
+       boolean is true the image is broken, so its URL isn't tried again
+       until the app restarts
+     */
+    private void deliver(String url, String key, Bitmap bitmap, boolean isBroken) {
+        List<ImageView> views = waitingViews.remove(key);
+        if (bitmap == null) {
+            if (isBroken) {
+                failedURLs.add(url);
+            }
+            return;
+        }
+        memoryCache.put(key, bitmap);
+        if (views == null) {
+            return;
+        }
+        for (ImageView view : views) {
+            if (key.equals(view.getTag())) {
+                view.setImageBitmap(bitmap);
+            }
+        }
+    }
+
+    /*
+       Returns the bitmap of the image with the given URL, decoded for the
+       given size, taking the image from the disk cache or downloading it
+       Only an image that was decoded is saved in the disk cache, and a
+       cached image that can't be decoded is deleted and downloaded again
+       Returns null if the image is broken: it can't be decoded, or the
+       server answered that it can't be found
+       Throws IOException if the image can't be downloaded for another
+       reason, which may not happen again
+       Runs on a background thread
+     */
+    private Bitmap loadBitmap(String url, int width, int height) throws IOException {
+        byte[] data = diskCache.get(url);
+        if (data != null) {
+            Bitmap bitmap = decode(data, width, height);
+            if (bitmap != null) {
+                return bitmap;
+            }
+            diskCache.remove(url);
+        }
+        try {
+            data = new PageFetcher().fetchImage(url);
+        } catch (HttpStatusException e) {
+            int statusCode = e.getStatusCode();
+            if (statusCode < MIN_CLIENT_ERROR_STATUS || statusCode > MAX_CLIENT_ERROR_STATUS ||
+                    statusCode == STATUS_TOO_MANY_REQUESTS) {
+                throw e;
+            }
+            e.printStackTrace();
+            return null;
+        }
+        Bitmap bitmap = decode(data, width, height);
+        if (bitmap != null) {
+            diskCache.put(url, data);
+        }
+        return bitmap;
+    }
+
+    /*
+       Returns the bitmap of the image with the given bytes, decoded for the
+       given size, or null if the bytes can't be decoded
+     */
+    private static Bitmap decode(byte[] data, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, width, height);
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    /*
+       Returns the largest power of two to divide the given size of an image
+       by, such that the image is still at least as large as the given size
+       of the view
+     */
+    private static int getSampleSize(int imageWidth, int imageHeight,
+                                     int viewWidth, int viewHeight) {
+        int sampleSize = 1;
+        while (imageWidth / (sampleSize * 2) >= viewWidth &&
+                imageHeight / (sampleSize * 2) >= viewHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+}
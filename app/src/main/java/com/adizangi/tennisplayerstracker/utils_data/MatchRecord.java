@@ -0,0 +1,127 @@
+/*
+   Represents a singles match that was played, as it was seen on the ESPN
+   website
+   Players are identified by name, without the seeds and other details in
+   parentheses that the website adds to some names
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+import java.io.Serializable;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+public class MatchRecord implements Serializable {
+
+    private static final long serialVersionUID = 3306125580921746172L;
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private int day;
+    private String tournament;
+    private String round;
+    private String winner;
+    private String loser;
+    private String score;
+
+    /*
+       Constructs a MatchRecord of the match that was played on the given
+       day, which is a number of days since January 1, 1970
+     */
+    public MatchRecord(int day,
+                       String tournament,
+                       String round,
+                       String winner,
+                       String loser,
+                       String score) {
+        this.day = day;
+        this.tournament = tournament;
+        this.round = round;
+        this.winner = normalizeName(winner);
+        this.loser = normalizeName(loser);
+        this.score = score;
+    }
+
+    /*
+       Returns the day of the match, as a number of days since January 1,
+       1970
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /*
+       Returns the name of the tournament of the match
+     */
+    public String getTournament() {
+        return tournament;
+    }
+
+    /*
+       Returns the round of the match
+     */
+    public String getRound() {
+        return round;
+    }
+
+    /*
+       Returns the name of the player who won the match
+     */
+    public String getWinner() {
+        return winner;
+    }
+
+    /*
+       Returns the name of the player who lost the match
+     */
+    public String getLoser() {
+        return loser;
+    }
+
+    /*
+       Returns the score of the match
+     */
+    public String getScore() {
+        return score;
+    }
+
+    /*
+       Returns the key of the two players of this match, which is the same
+       whichever of them won
+     */
+    public String getPairKey() {
+        return getPairKey(winner, loser);
+    }
+
+    /*
+       Returns a key that identifies this match, so that a match that is
+       seen again, even on another day, is kept once
+       A tournament is played once a year, so the year of the match tells it
+       apart from the same round of the tournament in other years
+     */
+    public String getMatchId() {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(day * DAY_MILLIS);
+        return getPairKey() + "\n" + tournament + "\n" + round + "\n" +
+                calendar.get(Calendar.YEAR);
+    }
+
+    /*
+       Returns the key of the two players with the given names, which is the
+       same in both orders
+     */
+    public static String getPairKey(String player, String opponent) {
+        String first = normalizeName(player);
+        String second = normalizeName(opponent);
+        return first.compareTo(second) <= 0 ? first + "\n" + second : second + "\n" + first;
+    }
+
+    /*
+       Returns the given name without the parts in parentheses and the
+       extra spaces
+     */
+    public static String normalizeName(String name) {
+        return name.replaceAll("\\([^)]*\\)", " ").replaceAll("\\s+", " ").trim();
+    }
+
+}
@@ -0,0 +1,284 @@
+/*
+   Keeps every match that was seen on the ESPN website, so that the head to
+   head record of any two players is known without fetching anything
+   The matches are appended to a log file, and an index in memory maps each
+   pair of players to their matches, so a head to head record is one lookup
+   The log is read once per process, the first time the store is used
+   A match that is seen again, from another player's page or on another day,
+   is kept once
+   A match that was cut while it was written (for example, when the task was
+   stopped) is dropped the next time the log is read
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class MatchStore {
+
+    private static final String LOG_FILENAME = "matches.log";
+
+    /* One store per directory, so that every user in the process sees the
+       same index */
+    private static final Map<String, MatchStore> STORES = new HashMap<>();
+
+    private final File logFile;
+    private boolean isLoaded;
+    private Map<String, List<MatchRecord>> matchesByPair;
+    private Set<String> matchIds;
+    private int numOfMatches;
+
+    /*
+       Constructs a MatchStore that keeps the matches in the given file
+     */
+    private MatchStore(File logFile) {
+        this.logFile = logFile;
+    }
+
+    /*
+       Returns the MatchStore that keeps the matches in the given directory
+       The log is read the first time the store is used
+     */
+    public static synchronized MatchStore open(File directory) {
+        String path = directory.getAbsolutePath();
+        MatchStore store = STORES.get(path);
+        if (store == null) {
+            store = new MatchStore(new File(directory, LOG_FILENAME));
+            STORES.put(path, store);
+        }
+        return store;
+    }
+
+    /*
+       Adds the given matches to the store, leaving out the matches that it
+       already has
+       Returns the number of matches that were added
+       May throw IOException
+     */
+    public synchronized int addMatches(Collection<MatchRecord> matches) throws IOException {
+        load();
+        List<MatchRecord> newMatches = new ArrayList<>();
+        Set<String> newMatchIds = new HashSet<>();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(records);
+        for (MatchRecord match : matches) {
+            String matchId = match.getMatchId();
+            if (match.getWinner().isEmpty() || match.getLoser().isEmpty() ||
+                    matchIds.contains(matchId) || !newMatchIds.add(matchId)) {
+                continue;
+            }
+            out.writeInt(match.getDay());
+            out.writeUTF(match.getTournament());
+            out.writeUTF(match.getRound());
+            out.writeUTF(match.getWinner());
+            out.writeUTF(match.getLoser());
+            out.writeUTF(match.getScore());
+            newMatches.add(match);
+        }
+        if (newMatches.isEmpty()) {
+            return 0;
+        }
+        try (FileOutputStream logOut = new FileOutputStream(logFile, true)) {
+            records.writeTo(logOut);
+            logOut.getFD().sync();
+        }
+        for (MatchRecord match : newMatches) {
+            index(match);
+        }
+        return newMatches.size();
+    }
+
+    /*
+       Returns the matches between the two players with the given names, from
+       the oldest to the latest
+       May throw IOException
+     */
+    public synchronized List<MatchRecord> getMatches(String player, String opponent)
+            throws IOException {
+        load();
+        List<MatchRecord> matches =
+                matchesByPair.get(MatchRecord.getPairKey(player, opponent));
+        return matches == null ? Collections.<MatchRecord>emptyList() : new ArrayList<>(matches);
+    }
+
+    /*
+       Returns the head to head record of the player with the given name
+       against the opponent with the given name
+       May throw IOException
+     */
+    public synchronized HeadToHead getHeadToHead(String player, String opponent)
+            throws IOException {
+        return new HeadToHead(player, opponent, getMatches(player, opponent));
+    }
+
+    /*
+       Returns the number of matches in the store
+       May throw IOException
+     */
+    public synchronized int size() throws IOException {
+        load();
+        return numOfMatches;
+    }
+
+    /*
+       Reads the log into the index, if it wasn't read yet
+       If the log ends with a match that was cut, the log is truncated before
+       it
+       May throw IOException
+     */
+    private void load() throws IOException {
+        if (isLoaded) {
+            return;
+        }
+        matchesByPair = new HashMap<>();
+        matchIds = new HashSet<>();
+        numOfMatches = 0;
+        if (logFile.exists()) {
+            byte[] data = readLog();
+            ByteArrayInputStream bytesIn = new ByteArrayInputStream(data);
+            DataInputStream in = new DataInputStream(bytesIn);
+            int validLength = 0;
+            try {
+                while (bytesIn.available() > 0) {
+                    MatchRecord match = new MatchRecord(in.readInt(), in.readUTF(),
+                            in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+                    if (matchIds.add(match.getMatchId())) {
+                        addToIndex(match);
+                    }
+                    validLength = data.length - bytesIn.available();
+                }
+            } catch (EOFException e) {
+                e.printStackTrace();
+                try (RandomAccessFile out = new RandomAccessFile(logFile, "rw")) {
+                    out.setLength(validLength);
+                }
+            }
+        }
+        isLoaded = true;
+    }
+
+    /*
+       Adds the given match, which was just written to the log, to the index
+     */
+    private void index(MatchRecord match) {
+        matchIds.add(match.getMatchId());
+        addToIndex(match);
+    }
+
+    /*
+       Adds the given match to the matches of its pair of players
+     */
+    private void addToIndex(MatchRecord match) {
+        String pairKey = match.getPairKey();
+        List<MatchRecord> matches = matchesByPair.get(pairKey);
+        if (matches == null) {
+            matches = new ArrayList<>();
+            matchesByPair.put(pairKey, matches);
+        }
+        matches.add(match);
+        numOfMatches++;
+    }
+
+    /*
+       Reads the whole log and returns its bytes
+       May throw IOException
+     */
+    private byte[] readLog() throws IOException {
+        byte[] data = new byte[(int) logFile.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(logFile))) {
+            in.readFully(data);
+        }
+        return data;
+    }
+
+    /*
+       Represents the head to head record of a player against an opponent
+     */
+    public static class HeadToHead {
+
+        private String player;
+        private String opponent;
+        private int wins;
+        private int losses;
+        private List<MatchRecord> matches;
+
+        /*
+           Constructs a HeadToHead of the given player against the given
+           opponent, from the given matches between them
+         */
+        HeadToHead(String player, String opponent, List<MatchRecord> matches) {
+            this.player = MatchRecord.normalizeName(player);
+            this.opponent = MatchRecord.normalizeName(opponent);
+            this.matches = matches;
+            for (MatchRecord match : matches) {
+                if (match.getWinner().equals(this.player)) {
+                    wins++;
+                } else {
+                    losses++;
+                }
+            }
+        }
+
+        /*
+           Returns the name of the player
+         */
+        public String getPlayer() {
+            return player;
+        }
+
+        /*
+           Returns the name of the opponent
+         */
+        public String getOpponent() {
+            return opponent;
+        }
+
+        /*
+           Returns the number of matches the player won against the opponent
+         */
+        public int getWins() {
+            return wins;
+        }
+
+        /*
+           Returns the number of matches the player lost to the opponent
+         */
+        public int getLosses() {
+            return losses;
+        }
+
+        /*
+           Returns the matches between the player and the opponent, from the
+           oldest to the latest
+         */
+        public List<MatchRecord> getMatches() {
+            return matches;
+        }
+
+        /*
+           Returns a String containing the summary of this record, in the
+           format 'Head to head vs [opponent]: [wins]-[losses]'
+         */
+        public String getSummary() {
+            return "Head to head vs " + opponent + ": " + wins + "-" + losses;
+        }
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+   Summarizes the measurements of the saved runs, so they can be shown on
+   the diagnostics screen
+   Durations and sizes are summarized by their median (p50) and their 95th
+   percentile (p95), and the latencies of each page kind are also counted
+   in a histogram
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class MetricsSummary {
+
+    /* Upper bounds in milliseconds of the buckets of the latency histogram,
+       the last bucket has no upper bound */
+    private static final long[] LATENCY_BUCKETS = {250, 500, 1000, 2000};
+
+    private static final int HISTOGRAM_BAR_LENGTH = 20;
+
+    /* A revalidated page that didn't change, which isn't an error */
+    private static final int STATUS_NOT_MODIFIED = 304;
+
+    private List<RunMetrics> runs;
+
+    /*
+       Constructs a MetricsSummary of the given runs
+     */
+    public MetricsSummary(List<RunMetrics> runs) {
+        this.runs = runs;
+    }
+
+    /*
+       Returns the value at the given percentile of the given values, using
+       the nearest rank
+       Returns RequestMetric.UNKNOWN if there are no values
+     */
+    public static long getPercentile(List<Long> values, int percentile) {
+        if (values.isEmpty()) {
+            return RequestMetric.UNKNOWN;
+        }
+        List<Long> sortedValues = new ArrayList<>(values);
+        Collections.sort(sortedValues);
+        int rank = (int) Math.ceil(percentile / 100.0 * sortedValues.size());
+        return sortedValues.get(Math.max(rank, 1) - 1);
+    }
+
+    /*
+       Returns the counts of the given latencies in each bucket of
+       LATENCY_BUCKETS, where the last count is of the latencies that are
+       above the last bound
+     */
+    public static int[] getLatencyHistogram(List<Long> latencies) {
+        int[] counts = new int[LATENCY_BUCKETS.length + 1];
+        for (long latency : latencies) {
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS.length && latency >= LATENCY_BUCKETS[bucket]) {
+                bucket++;
+            }
+            counts[bucket]++;
+        }
+        return counts;
+    }
+
+    /*
+       Returns a report of the runs as text
+       The report has a section for each task, with the p50 and p95 of the
+       duration of the runs and of each stage and of the data the runs of
+       each fetch profile downloaded, and a section for each page
+       kind, with the number of retried requests, the p50 and p95 of the
+       latency, size and parse time of the requests and a histogram of the
+       latencies
+     */
+    public String getReport() {
+        if (runs.isEmpty()) {
+            return "No runs were recorded yet";
+        }
+        StringBuilder report = new StringBuilder();
+        Map<String, List<RunMetrics>> runsByName = new LinkedHashMap<>();
+        Map<String, List<RequestMetric>> requestsByKind = new LinkedHashMap<>();
+        for (RunMetrics run : runs) {
+            getOrCreate(runsByName, run.getRunName()).add(run);
+            for (RequestMetric request : run.getRequests()) {
+                getOrCreate(requestsByKind, request.getPageKind()).add(request);
+            }
+        }
+        for (Map.Entry<String, List<RunMetrics>> entry : runsByName.entrySet()) {
+            appendRunsSection(report, entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, List<RequestMetric>> entry : requestsByKind.entrySet()) {
+            appendRequestsSection(report, entry.getKey(), entry.getValue());
+        }
+        return report.toString().trim();
+    }
+
+    /*
+       Appends the section of the given runs of the task with the given name
+       to the given report
+     */
+    private void appendRunsSection(StringBuilder report,
+                                   String runName,
+                                   List<RunMetrics> taskRuns) {
+        int numOfRetries = 0;
+        int numOfFailures = 0;
+        int numOfOverBudget = 0;
+        int numOfDeferred = 0;
+        List<Long> durations = new ArrayList<>();
+        Map<String, List<Long>> stageDurations = new LinkedHashMap<>();
+        Map<String, List<Long>> profileKilobytes = new LinkedHashMap<>();
+        for (RunMetrics run : taskRuns) {
+            if (RunMetrics.RESULT_RETRY.equals(run.getResult())) {
+                numOfRetries++;
+            } else if (RunMetrics.RESULT_FAILURE.equals(run.getResult())) {
+                numOfFailures++;
+            } else if (RunMetrics.RESULT_OVER_BUDGET.equals(run.getResult())) {
+                numOfOverBudget++;
+            } else if (RunMetrics.RESULT_DEFERRED.equals(run.getResult())) {
+                numOfDeferred++;
+            }
+            if (run.getFetchProfile() != null && run.getBytesUsed() != RequestMetric.UNKNOWN) {
+                getOrCreate(profileKilobytes, run.getFetchProfile())
+                        .add(run.getBytesUsed() / 1024);
+            }
+            durations.add(run.getDurationMillis());
+            for (Map.Entry<String, Long> stage : run.getStageMillis().entrySet()) {
+                getOrCreate(stageDurations, stage.getKey()).add(stage.getValue());
+            }
+        }
+        report.append(runName).append('\n');
+        report.append(String.format(Locale.US,
+                "  runs: %d, retries: %d, failures: %d, over budget: %d, deferred: %d%n",
+                taskRuns.size(), numOfRetries, numOfFailures, numOfOverBudget,
+                numOfDeferred));
+        appendPercentiles(report, "duration", durations, "ms");
+        for (Map.Entry<String, List<Long>> stage : stageDurations.entrySet()) {
+            appendPercentiles(report, stage.getKey(), stage.getValue(), "ms");
+        }
+        for (Map.Entry<String, List<Long>> profile : profileKilobytes.entrySet()) {
+            appendPercentiles(report, profile.getKey() + " data", profile.getValue(), "KB");
+        }
+        report.append('\n');
+    }
+
+    /*
+       Appends the section of the given requests of the given page kind to
+       the given report
+       Sizes and parse times that weren't measured are left out
+       Pages that were revalidated and didn't change are counted apart from
+       the errors, and the attempts that retried a failed request are
+       counted too
+     */
+    private void appendRequestsSection(StringBuilder report,
+                                       String pageKind,
+                                       List<RequestMetric> requests) {
+        int numOfErrors = 0;
+        int numOfNotModified = 0;
+        int numOfRetries = 0;
+        List<Long> latencies = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        List<Long> parseTimes = new ArrayList<>();
+        for (RequestMetric request : requests) {
+            if (request.getStatus() == STATUS_NOT_MODIFIED) {
+                numOfNotModified++;
+            } else if (request.getStatus() < 200 || request.getStatus() >= 300) {
+                numOfErrors++;
+            }
+            if (request.getAttempt() > 0) {
+                numOfRetries++;
+            }
+            latencies.add(request.getLatencyMillis());
+            if (request.getBytes() != RequestMetric.UNKNOWN) {
+                sizes.add(request.getBytes() / 1024);
+            }
+            if (request.getParseMillis() != RequestMetric.UNKNOWN) {
+                parseTimes.add(request.getParseMillis());
+            }
+        }
+        report.append(pageKind).append(" pages\n");
+        report.append(String.format(Locale.US,
+                "  requests: %d, errors: %d, not modified: %d, retries: %d%n",
+                requests.size(), numOfErrors, numOfNotModified, numOfRetries));
+        appendPercentiles(report, "latency", latencies, "ms");
+        appendPercentiles(report, "size", sizes, "KB");
+        appendPercentiles(report, "parse", parseTimes, "ms");
+        int[] histogram = getLatencyHistogram(latencies);
+        for (int bucket = 0; bucket < histogram.length; bucket++) {
+            String label = bucket < LATENCY_BUCKETS.length ?
+                    "<" + LATENCY_BUCKETS[bucket] : ">=" + LATENCY_BUCKETS[bucket - 1];
+            int barLength = histogram[bucket] * HISTOGRAM_BAR_LENGTH / requests.size();
+            report.append(String.format(Locale.US, "  %6s ms |%s %d%n", label,
+                    repeat('#', barLength), histogram[bucket]));
+        }
+        report.append('\n');
+    }
+
+    /*
+       Appends a line with the p50 and p95 of the given values to the given
+       report, with the given label and unit
+       If there are no values, appends nothing
+     */
+    private void appendPercentiles(StringBuilder report,
+                                   String label,
+                                   List<Long> values,
+                                   String unit) {
+        if (values.isEmpty()) {
+            return;
+        }
+        report.append(String.format(Locale.US, "  %s: p50 %d %s, p95 %d %s%n", label,
+                getPercentile(values, 50), unit, getPercentile(values, 95), unit));
+    }
+
+    /*
+       Returns the list in the given map under the given key, and puts an
+       empty list there first if there is none
+     */
+    private <T> List<T> getOrCreate(Map<String, List<T>> map, String key) {
+        List<T> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            map.put(key, list);
+        }
+        return list;
+    }
+
+    /*
+       Returns a string of the given character repeated the given number of
+       times
+     */
+    private String repeat(char c, int times) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            repeated.append(c);
+        }
+        return repeated.toString();
+    }
+
+}
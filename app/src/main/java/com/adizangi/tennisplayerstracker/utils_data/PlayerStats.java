@@ -4,7 +4,11 @@
 
 package com.adizangi.tennisplayerstracker.utils_data;
 
+import com.adizangi.tennisplayerstracker.network_calls.RankingsTable;
+
 import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Map;
 
 public class PlayerStats implements Comparable<PlayerStats>, Serializable {
 
@@ -17,9 +21,11 @@ public class PlayerStats implements Comparable<PlayerStats>, Serializable {
     private String currentTournament;
     private String latestMatchResult;
     private String upcomingMatch;
+    private String headshotURL;
+    private String flagURL;
 
     /*
-       Constructs a PlayerStats object
+       Constructs a PlayerStats object without images
      */
     public PlayerStats(String name,
                 String ranking,
@@ -28,6 +34,24 @@ public class PlayerStats implements Comparable<PlayerStats>, Serializable {
                 String currentTournament,
                 String latestMatchResult,
                 String upcomingMatch) {
+        this(name, ranking, titles, tournamentStanding, currentTournament,
+                latestMatchResult, upcomingMatch, null, null);
+    }
+
+    /*
+       Constructs a PlayerStats object with the URLs of the player's headshot
+       and flag, which are empty if the player's page has no image, and null
+       if the page wasn't looked at
+     */
+    public PlayerStats(String name,
+                String ranking,
+                String titles,
+                String tournamentStanding,
+                String currentTournament,
+                String latestMatchResult,
+                String upcomingMatch,
+                String headshotURL,
+                String flagURL) {
         this.name = name;
         this.ranking = ranking;
         this.titles = titles;
@@ -35,6 +59,8 @@ public class PlayerStats implements Comparable<PlayerStats>, Serializable {
         this.currentTournament = currentTournament;
         this.latestMatchResult = latestMatchResult;
         this.upcomingMatch = upcomingMatch;
+        this.headshotURL = headshotURL;
+        this.flagURL = flagURL;
     }
 
     /*
@@ -52,6 +78,13 @@ public class PlayerStats implements Comparable<PlayerStats>, Serializable {
         return ranking;
     }
 
+    /*
+       Returns the number in the player's ranking, or -1 if it is unknown
+     */
+    public int getRankingNumber() {
+        return parseNumber(ranking);
+    }
+
     /*
        Returns the number of singles titles the player won in the current year
        The format is
@@ -61,6 +94,13 @@ public class PlayerStats implements Comparable<PlayerStats>, Serializable {
         return titles;
     }
 
+    /*
+       Returns the number in the player's titles, or -1 if it is unknown
+     */
+    public int getTitlesNumber() {
+        return parseNumber(titles);
+    }
+
     /*
        Returns the player's tournament standing which may be
        'advanced to [tournament round]',
@@ -97,6 +137,24 @@ public class PlayerStats implements Comparable<PlayerStats>, Serializable {
         return upcomingMatch;
     }
 
+    /*
+       Returns the URL of the player's headshot
+       Returns an empty string if the player's page has no headshot, and null
+       if it is unknown, as in stats that were saved before images were added
+     */
+    public String getHeadshotURL() {
+        return headshotURL;
+    }
+
+    /*
+       Returns the URL of the flag of the player's country
+       Returns an empty string if the player's page has no flag, and null if
+       it is unknown
+     */
+    public String getFlagURL() {
+        return flagURL;
+    }
+
     /*
        Returns a String containing the summary of this PlayerStats
        The summary contains the ranking, titles, current tournament, and latest
@@ -109,6 +167,63 @@ public class PlayerStats implements Comparable<PlayerStats>, Serializable {
                 "\n" + getLatestMatchResult();
     }
 
+    /*
+       Returns the PlayerStats object of the given player in the given player
+       stats map, or null if the player isn't in it
+       The player is represented by name followed by ranking in parenthesis,
+       and is matched by name, since the ranking in a selected player may be
+       older than the map
+     */
+    public static PlayerStats find(Map<String, PlayerStats> stats, String player) {
+        PlayerStats playerStats = stats.get(player);
+        if (playerStats != null) {
+            return playerStats;
+        }
+        String name = RankingsTable.getPlayerName(player);
+        for (PlayerStats otherStats : stats.values()) {
+            if (otherStats.getName().equals(name)) {
+                return otherStats;
+            }
+        }
+        return null;
+    }
+
+    /*
+       Puts the given PlayerStats object of the given player into the given
+       player stats map, and removes the player's stats under another
+       ranking, so the map has one entry for each player
+     */
+    public static void put(Map<String, PlayerStats> stats,
+                           String player,
+                           PlayerStats playerStats) {
+        Iterator<Map.Entry<String, PlayerStats>> iterator = stats.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PlayerStats> entry = iterator.next();
+            if (entry.getValue().getName().equals(playerStats.getName()) &&
+                    !entry.getKey().equals(player)) {
+                iterator.remove();
+            }
+        }
+        stats.put(player, playerStats);
+    }
+
+    /*
+       Returns the number in the given stats string, which is the part after
+       the last ': ', as in the ranking and the titles
+       Returns -1 if there is no number
+     */
+    private static int parseNumber(String text) {
+        if (text == null) {
+            return -1;
+        }
+        int numberStart = text.lastIndexOf(": ");
+        try {
+            return Integer.parseInt(text.substring(numberStart + 2).trim());
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
     /*
         Returns -1, 0, or 1 if this PlayerStats is less than, equal to, or
         greater than the given other PlayerStats, respectively
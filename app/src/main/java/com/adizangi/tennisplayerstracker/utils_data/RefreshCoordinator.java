@@ -0,0 +1,141 @@
+/*
+   Coordinates the triggers that ask to reschedule the background refresh,
+   such as a time zone change or a change in the network preference
+   A trigger that arrives while a refresh is in progress doesn't cancel it-
+   it is merged into the running refresh, and the next refresh is scheduled
+   with the new settings once the running refresh finishes
+   A trigger that arrives while a refresh is only waiting for its scheduled
+   time replaces that refresh right away, since no work is lost
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+
+import com.adizangi.tennisplayerstracker.R;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+public class RefreshCoordinator extends ContextWrapper {
+
+    /*
+       Runs the given Runnable on the thread that calls execute()
+     */
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private SharedPreferences prefs;
+
+    /*
+       Constructs a RefreshCoordinator with the given application context
+     */
+    public RefreshCoordinator(Context base) {
+        super(base);
+        prefs = getSharedPreferences(
+                getString(R.string.shared_prefs_filename), Context.MODE_PRIVATE);
+    }
+
+    /*
+       Asks for the next refresh to be rescheduled with the current settings
+       If a refresh is in progress, marks a reschedule as pending so that
+       it will be applied when the refresh finishes
+       Several triggers that arrive during the same refresh are merged into
+       one reschedule
+       Otherwise, reschedules the next refresh immediately
+       The state of the refresh is checked asynchronously, so this method
+       can be called from the main thread
+     */
+    public void requestReschedule() {
+        final ListenableFuture<List<WorkInfo>> workInfos = WorkManager.getInstance(this)
+                .getWorkInfosForUniqueWork(BackgroundManager.DOWNLOAD_CONTENT_WORK_NAME);
+        workInfos.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (isRefreshInProgress(workInfos)) {
+                    setReschedulePending(true);
+                } else {
+                    new RefreshScheduler(RefreshCoordinator.this).scheduleNextRefresh();
+                }
+            }
+        }, DIRECT_EXECUTOR);
+    }
+
+    /*
+       Returns true if a refresh has started and not finished yet
+       Waits for the state of the refresh, so this method must not be called
+       from the main thread
+     */
+    public boolean isRefreshRunning() {
+        return isRefreshInProgress(WorkManager.getInstance(this)
+                .getWorkInfosForUniqueWork(BackgroundManager.DOWNLOAD_CONTENT_WORK_NAME));
+    }
+
+    /*
+       Called by the last worker of a refresh when the refresh finishes
+       Schedules the next refresh if the finished refresh was a scheduled one
+       or if a reschedule was requested while it was running
+       The given refresh kind is the value of RefreshScheduler.REFRESH_KIND_KEY
+       in the worker's input data, which is null for work that was enqueued by
+       an older version of the app
+     */
+    public void onRefreshFinished(String refreshKind) {
+        boolean isReschedulePending = prefs.getBoolean(
+                getString(R.string.is_reschedule_pending_key), false);
+        setReschedulePending(false);
+        if (isReschedulePending || !RefreshScheduler.KIND_ONE_TIME.equals(refreshKind)) {
+            new RefreshScheduler(this).scheduleNextRefresh();
+        }
+    }
+
+    /*
+       Returns true if the refresh whose WorkInfos are given has started and
+       not finished yet
+       A refresh has started if one of its workers is running, has
+       succeeded, or has run before, like a worker that is waiting for its
+       backoff after it asked to be retried, and it has finished if all of
+       its workers are finished
+       Returns false if the WorkInfos can't be retrieved
+     */
+    private boolean isRefreshInProgress(ListenableFuture<List<WorkInfo>> workInfos) {
+        try {
+            boolean hasStarted = false;
+            boolean hasUnfinishedWork = false;
+            for (WorkInfo workInfo : workInfos.get()) {
+                WorkInfo.State state = workInfo.getState();
+                if (state == WorkInfo.State.RUNNING ||
+                        state == WorkInfo.State.SUCCEEDED ||
+                        workInfo.getRunAttemptCount() > 0) {
+                    hasStarted = true;
+                }
+                if (!state.isFinished()) {
+                    hasUnfinishedWork = true;
+                }
+            }
+            return hasStarted && hasUnfinishedWork;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /*
+       Saves the given value in shared preferences to indicate whether a
+       reschedule is waiting for the running refresh to finish
+     */
+    private void setReschedulePending(boolean value) {
+        prefs.edit().putBoolean(
+                getString(R.string.is_reschedule_pending_key), value).apply();
+    }
+
+}
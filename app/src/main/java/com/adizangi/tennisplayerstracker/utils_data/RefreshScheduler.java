@@ -0,0 +1,273 @@
+/*
+   Schedules the background data refreshes based on the tennis activity that
+   was observed in the latest refresh
+   When there are no tournaments, the app refreshes only the rankings once a
+   week
+   When there are tournaments, the app refreshes all of its data every day at
+   midnight
+   When a final is played today, the app refreshes all of its data again in
+   the evening
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+
+import com.adizangi.tennisplayerstracker.R;
+import com.adizangi.tennisplayerstracker.network_calls.PageFetcher;
+import com.adizangi.tennisplayerstracker.workers.FetchDataWorker;
+import com.adizangi.tennisplayerstracker.workers.FetchNotificationDataWorker;
+import com.adizangi.tennisplayerstracker.workers.NotificationWorker;
+import com.adizangi.tennisplayerstracker.workers.PrefetchWorker;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+
+public class RefreshScheduler extends ContextWrapper {
+
+    public static final String CRAWL_SCOPE_KEY = "crawlScope";
+    public static final String REFRESH_KIND_KEY = "refreshKind";
+
+    /* Crawl scopes- which data a refresh fetches */
+    public static final String SCOPE_FULL = "full";
+    public static final String SCOPE_RANKINGS_ONLY = "rankingsOnly";
+
+    /* Refresh kinds- why a refresh was started */
+    public static final String KIND_ONE_TIME = "oneTime";
+    public static final String KIND_DAILY = "daily";
+    public static final String KIND_WEEKLY = "weekly";
+    public static final String KIND_EVENING = "evening";
+    public static final String KIND_DEFERRED = "deferred";
+
+    private static final int UNKNOWN_ACTIVITY = -1;
+    private static final int EVENING_REFRESH_HOUR = 20;
+    private static final int DAYS_BETWEEN_WEEKLY_REFRESHES = 7;
+    private static final int HOURS_BETWEEN_PREFETCHES = 12;
+
+    /* A worker that returned Result.retry() because the circuit breaker of
+       the ESPN website is open runs again only after the breaker is half
+       open, so the retry isn't refused right away */
+    private static final long RETRY_BACKOFF_MILLIS =
+            Math.max(OneTimeWorkRequest.MIN_BACKOFF_MILLIS, PageFetcher.BREAKER_OPEN_MILLIS);
+
+    private SharedPreferences prefs;
+
+    /*
+       Constructs a RefreshScheduler with the given application context
+     */
+    public RefreshScheduler(Context base) {
+        super(base);
+        prefs = getSharedPreferences(
+                getString(R.string.shared_prefs_filename), Context.MODE_PRIVATE);
+    }
+
+    /*
+       Saves the tennis activity that was observed in a refresh, which is the
+       given number of tournaments played today and whether a final is
+       played today
+       The next refresh will be scheduled based on this activity
+     */
+    public void recordActivity(int activeTournaments, boolean isFinalToday) {
+        SharedPreferences.Editor editor = prefs.edit();
+        editor.putInt(getString(R.string.active_tournaments_key), activeTournaments);
+        if (isFinalToday) {
+            editor.putString(getString(R.string.final_date_key), getToday());
+        }
+        editor.apply();
+    }
+
+    /*
+       Schedules the next refresh based on the latest observed activity
+       If no tournaments are played, schedules a refresh of the rankings only
+       for midnight a week from now
+       If a final is played today and the evening hasn't started yet,
+       schedules a full refresh for this evening
+       Otherwise, schedules a full refresh for midnight
+       If the device is on doze mode at the scheduled time, the refresh will
+       be delayed until the device exits doze mode
+       The refresh also requires network connection to start
+       Replaces any refresh that is already scheduled, so it should only be
+       called through RefreshCoordinator or by the last worker of a refresh
+     */
+    public void scheduleNextRefresh() {
+        int activeTournaments = prefs.getInt(
+                getString(R.string.active_tournaments_key), UNKNOWN_ACTIVITY);
+        long timeUntilEvening = getTimeUntilEvening();
+        if (activeTournaments == 0) {
+            long delay = getTimeUntilMidnight() +
+                    TimeUnit.DAYS.toMillis(DAYS_BETWEEN_WEEKLY_REFRESHES - 1);
+            enqueueRefresh(KIND_WEEKLY, SCOPE_RANKINGS_ONLY, delay);
+        } else if (isFinalToday() && timeUntilEvening > 0) {
+            enqueueRefresh(KIND_EVENING, SCOPE_FULL, timeUntilEvening);
+        } else {
+            enqueueRefresh(KIND_DAILY, SCOPE_FULL, getTimeUntilMidnight());
+        }
+    }
+
+    /*
+       Enqueues a chain of work that refreshes the app's data after the given
+       delay in milliseconds, replacing any refresh that is already enqueued
+       The chain consists of a worker that fetches the notification data,
+       followed by a worker that sends the notification, followed by a worker
+       that fetches the rest of the data in the given crawl scope
+       This way the notification doesn't wait for the statistics of all the
+       players to be fetched
+       The workers that use the network require the permitted network type,
+       and if the network disconnects, they will be retried as soon as
+       possible
+       Returns an array of the UUIDs of the work requests in the chain's order
+     */
+    public UUID[] enqueueRefresh(String refreshKind, String crawlScope, long delay) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(
+                        new BackgroundManager(this).getPermittedNetwork())
+                .build();
+        Data inputData = new Data.Builder()
+                .putString(CRAWL_SCOPE_KEY, crawlScope)
+                .putString(REFRESH_KIND_KEY, refreshKind)
+                .build();
+        OneTimeWorkRequest notificationDataReq = new OneTimeWorkRequest.Builder
+                (FetchNotificationDataWorker.class)
+                .setConstraints(constraints)
+                .setInitialDelay(delay, TimeUnit.MILLISECONDS)
+                .setBackoffCriteria(
+                        BackoffPolicy.LINEAR,
+                        RETRY_BACKOFF_MILLIS,
+                        TimeUnit.MILLISECONDS)
+                .setInputData(inputData)
+                .build();
+        OneTimeWorkRequest notificationReq = new OneTimeWorkRequest.Builder
+                (NotificationWorker.class)
+                .setInputData(inputData)
+                .build();
+        OneTimeWorkRequest fetchDataReq = new OneTimeWorkRequest.Builder
+                (FetchDataWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(
+                        BackoffPolicy.LINEAR,
+                        RETRY_BACKOFF_MILLIS,
+                        TimeUnit.MILLISECONDS)
+                .setInputData(inputData)
+                .build();
+        WorkManager.getInstance(this)
+                .beginUniqueWork(BackgroundManager.DOWNLOAD_CONTENT_WORK_NAME,
+                        ExistingWorkPolicy.REPLACE,
+                        notificationDataReq)
+                .then(notificationReq)
+                .then(fetchDataReq)
+                .enqueue();
+        return new UUID[]{notificationDataReq.getId(),
+                notificationReq.getId(),
+                fetchDataReq.getId()};
+    }
+
+    /*
+       Enqueues a FetchDataWorker that fetches the data in the given crawl
+       scope once the device is on an unmetered network
+       Used when a scheduled refresh ran on a metered network, so the heavy
+       part of the refresh waits for the next unmetered window
+       Replaces a deferred crawl that is still waiting, since the new one
+       fetches the same data
+     */
+    public void enqueueDeferredCrawl(String crawlScope) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .build();
+        Data inputData = new Data.Builder()
+                .putString(CRAWL_SCOPE_KEY, crawlScope)
+                .putString(REFRESH_KIND_KEY, KIND_DEFERRED)
+                .build();
+        OneTimeWorkRequest fetchDataReq = new OneTimeWorkRequest.Builder
+                (FetchDataWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(
+                        BackoffPolicy.LINEAR,
+                        RETRY_BACKOFF_MILLIS,
+                        TimeUnit.MILLISECONDS)
+                .setInputData(inputData)
+                .build();
+        WorkManager.getInstance(this).enqueueUniqueWork(
+                BackgroundManager.DEFERRED_CRAWL_WORK_NAME,
+                ExistingWorkPolicy.REPLACE,
+                fetchDataReq);
+    }
+
+    /*
+       Schedules a PrefetchWorker to run every HOURS_BETWEEN_PREFETCHES
+       hours while the device is charging on an unmetered network
+       The prefetch is independent of the refreshes, so a prefetch that is
+       already scheduled is kept
+     */
+    public void schedulePrefetch() {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresCharging(true)
+                .build();
+        PeriodicWorkRequest prefetchReq = new PeriodicWorkRequest.Builder
+                (PrefetchWorker.class, HOURS_BETWEEN_PREFETCHES, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(this).enqueueUniquePeriodicWork(
+                BackgroundManager.PREFETCH_WORK_NAME,
+                ExistingPeriodicWorkPolicy.KEEP,
+                prefetchReq);
+    }
+
+    /*
+       Returns true if the latest observed activity included a final that is
+       played today
+     */
+    private boolean isFinalToday() {
+        String finalDate = prefs.getString(getString(R.string.final_date_key), "");
+        return finalDate.equals(getToday());
+    }
+
+    /*
+       Returns today's date in the format yyyyMMdd
+     */
+    private String getToday() {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd", Locale.US);
+        return dateFormat.format(Calendar.getInstance().getTime());
+    }
+
+    /*
+       Returns the number of milliseconds between the current time and 12:00am
+     */
+    private long getTimeUntilMidnight() {
+        Calendar c = Calendar.getInstance();
+        c.add(Calendar.DATE, 1);
+        c.set(Calendar.HOUR_OF_DAY, 0);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        return c.getTimeInMillis() - System.currentTimeMillis();
+    }
+
+    /*
+       Returns the number of milliseconds between the current time and the
+       evening refresh hour today
+       Returns a negative number if the evening refresh hour has passed
+     */
+    private long getTimeUntilEvening() {
+        Calendar c = Calendar.getInstance();
+        c.set(Calendar.HOUR_OF_DAY, EVENING_REFRESH_HOUR);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        return c.getTimeInMillis() - System.currentTimeMillis();
+    }
+
+}
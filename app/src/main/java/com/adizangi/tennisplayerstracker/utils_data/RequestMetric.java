@@ -0,0 +1,136 @@
+/*
+   Represents the measurements of one request to the ESPN website: which
+   attempt of the request it was, how long it took until the response
+   arrived, how large the body was, the HTTP status, and how long parsing
+   the body took
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Serializable;
+
+public class RequestMetric implements Serializable {
+
+    private static final long serialVersionUID = 4619027385520374109L;
+
+    /* Status of a request that failed before there was a response */
+    public static final int STATUS_NO_RESPONSE = 0;
+
+    /* Value of a measurement that wasn't taken */
+    public static final long UNKNOWN = -1;
+
+    private String url;
+    private String pageKind;
+    private int attempt;
+    private long latencyMillis;
+    private int status;
+    private long bytes;
+    private long parseMillis;
+
+    /*
+       Constructs a RequestMetric of a request to the given URL, of the given
+       page kind from PageFetcher, that got the given status after the given
+       latency
+       The given attempt is the number of times the request was retried
+       before this attempt
+       The size of the body and the parse time are UNKNOWN until they are set
+     */
+    public RequestMetric(String url, String pageKind, int attempt,
+                         long latencyMillis, int status) {
+        this.url = url;
+        this.pageKind = pageKind;
+        this.attempt = attempt;
+        this.latencyMillis = latencyMillis;
+        this.status = status;
+        bytes = UNKNOWN;
+        parseMillis = UNKNOWN;
+    }
+
+    /*
+       Returns the URL of the request
+     */
+    public String getURL() {
+        return url;
+    }
+
+    /*
+       Returns the kind of page that was requested, which is one of the page
+       kinds of PageFetcher
+     */
+    public String getPageKind() {
+        return pageKind;
+    }
+
+    /*
+       Returns the number of times the request was retried before this
+       attempt, which is 0 for the first attempt
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /*
+       Returns the time in milliseconds from sending the request until the
+       response arrived
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /*
+       Returns the HTTP status of the response, or STATUS_NO_RESPONSE if the
+       request failed before there was a response
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /*
+       Returns the number of bytes of the body that were read, or UNKNOWN
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /*
+       Sets the number of bytes of the body that were read
+     */
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    /*
+       Returns the time in milliseconds that parsing the body took, or
+       UNKNOWN if the body wasn't parsed
+     */
+    public long getParseMillis() {
+        return parseMillis;
+    }
+
+    /*
+       Sets the time in milliseconds that parsing the body took
+     */
+    public void setParseMillis(long parseMillis) {
+        this.parseMillis = parseMillis;
+    }
+
+    /*
+       Returns this RequestMetric as a JSON object
+       May throw JSONException
+     */
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("url", url);
+        json.put("pageKind", pageKind);
+        json.put("attempt", attempt);
+        json.put("latencyMillis", latencyMillis);
+        json.put("status", status);
+        json.put("bytes", bytes);
+        json.put("parseMillis", parseMillis);
+        return json;
+    }
+
+}
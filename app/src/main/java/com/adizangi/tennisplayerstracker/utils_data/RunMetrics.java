@@ -0,0 +1,187 @@
+/*
+   Represents the measurements of one run of a background task that fetches
+   data: the durations of its stages, the requests it sent, and how it ended
+   A run that fetched under a fetch profile also has the byte budget of the
+   profile and the number of bytes it downloaded
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+public class RunMetrics implements Serializable {
+
+    private static final long serialVersionUID = 8034417263951086452L;
+
+    /* Results- how a run ended */
+    public static final String RESULT_SUCCESS = "success";
+    public static final String RESULT_RETRY = "retry";
+    public static final String RESULT_FAILURE = "failure";
+    public static final String RESULT_OVER_BUDGET = "overBudget";
+    public static final String RESULT_DEFERRED = "deferred";
+
+    private String runName;
+    private long startTime;
+    private long durationMillis;
+    private int attempt;
+    private String result;
+    private Map<String, Long> stageMillis;
+    private List<RequestMetric> requests;
+    private String fetchProfile;
+    private long byteBudget;
+    private long bytesUsed = RequestMetric.UNKNOWN;
+
+    /*
+       Constructs a RunMetrics of a run of the task with the given name
+       The given attempt is 0 for the first attempt of the work, and grows by
+       one with every retry
+       The given map holds the duration in milliseconds of each stage, in
+       the order the stages ran
+     */
+    public RunMetrics(String runName,
+                      long startTime,
+                      long durationMillis,
+                      int attempt,
+                      String result,
+                      Map<String, Long> stageMillis,
+                      List<RequestMetric> requests) {
+        this.runName = runName;
+        this.startTime = startTime;
+        this.durationMillis = durationMillis;
+        this.attempt = attempt;
+        this.result = result;
+        this.stageMillis = stageMillis;
+        this.requests = requests;
+    }
+
+    /*
+       Returns the name of the task that ran
+     */
+    public String getRunName() {
+        return runName;
+    }
+
+    /*
+       Returns the time in milliseconds when the run started
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /*
+       Returns the time in milliseconds that the whole run took
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /*
+       Returns the number of times the work was retried before this run
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /*
+       Returns how the run ended, which is one of the RESULT constants
+     */
+    public String getResult() {
+        return result;
+    }
+
+    /*
+       Returns a map from the name of each stage of the run to its duration
+       in milliseconds, in the order the stages ran
+     */
+    public Map<String, Long> getStageMillis() {
+        return stageMillis;
+    }
+
+    /*
+       Returns the requests that were sent during the run
+     */
+    public List<RequestMetric> getRequests() {
+        return requests;
+    }
+
+    /*
+       Returns the fetch profile from BackgroundManager that the run fetched
+       under, or null if the run had no byte budget
+     */
+    public String getFetchProfile() {
+        return fetchProfile;
+    }
+
+    /*
+       Sets the fetch profile that the run fetched under to the given profile
+     */
+    public void setFetchProfile(String fetchProfile) {
+        this.fetchProfile = fetchProfile;
+    }
+
+    /*
+       Returns the byte budget of the run, which is ByteBudget.NO_LIMIT if
+       the bytes were only counted
+     */
+    public long getByteBudget() {
+        return byteBudget;
+    }
+
+    /*
+       Sets the byte budget of the run to the given number of bytes
+     */
+    public void setByteBudget(long byteBudget) {
+        this.byteBudget = byteBudget;
+    }
+
+    /*
+       Returns the number of bytes that the run downloaded, or
+       RequestMetric.UNKNOWN if the run had no byte budget
+     */
+    public long getBytesUsed() {
+        return bytesUsed;
+    }
+
+    /*
+       Sets the number of bytes that the run downloaded to the given number
+     */
+    public void setBytesUsed(long bytesUsed) {
+        this.bytesUsed = bytesUsed;
+    }
+
+    /*
+       Returns this RunMetrics as a JSON object
+       May throw JSONException
+     */
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("runName", runName);
+        json.put("startTime", startTime);
+        json.put("durationMillis", durationMillis);
+        json.put("attempt", attempt);
+        json.put("result", result);
+        JSONObject stages = new JSONObject();
+        for (Map.Entry<String, Long> stage : stageMillis.entrySet()) {
+            stages.put(stage.getKey(), stage.getValue().longValue());
+        }
+        json.put("stageMillis", stages);
+        JSONArray requestsJSON = new JSONArray();
+        for (RequestMetric request : requests) {
+            requestsJSON.put(request.toJSON());
+        }
+        json.put("requests", requestsJSON);
+        if (fetchProfile != null) {
+            json.put("fetchProfile", fetchProfile);
+            json.put("byteBudget", byteBudget);
+            json.put("bytesUsed", bytesUsed);
+        }
+        return json;
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+   Records the measurements of one run of a background task that fetches
+   data, and saves them when the run finishes
+   The runs are saved in a bounded list, so only the latest MAX_RUNS runs
+   are kept and the file doesn't grow
+   Since every run that fetches pages is recorded, the state that
+   PageFetcher shares between runs is also set up when the first run of the
+   process starts: the limits that its RateLimiter learned are restored,
+   and its PageCache is opened
+   The limits are saved again when each run finishes
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+
+import com.adizangi.tennisplayerstracker.R;
+import com.adizangi.tennisplayerstracker.network_calls.ByteBudget;
+import com.adizangi.tennisplayerstracker.network_calls.FetchMetrics;
+import com.adizangi.tennisplayerstracker.network_calls.PageCache;
+import com.adizangi.tennisplayerstracker.network_calls.PageFetcher;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RunRecorder extends ContextWrapper {
+
+    private static final int MAX_RUNS = 50;
+    private static final String PAGE_CACHE_DIRECTORY = "pages";
+    private static final long MAX_PAGE_CACHE_BYTES = 50 * 1024 * 1024;
+
+    /* Runs of different tasks may finish at the same time */
+    private static final Object FILE_LOCK = new Object();
+
+    private static boolean isFetchStateReady;
+
+    private String runName;
+    private int attempt;
+    private long startTime;
+    private long startNanos;
+    private long stageStartNanos;
+    private Map<String, Long> stageMillis;
+    private int requestsMark;
+    private String fetchProfile;
+    private long byteBudget;
+    private ByteBudget budget;
+
+    /*
+       Constructs a RunRecorder with the given application context, and
+       starts recording a run of the task with the given name
+       Sets up the state that PageFetcher shares between runs if this is the
+       first run of the process
+       The given attempt is the number of times the work was retried before
+       this run
+     */
+    public RunRecorder(Context base, String runName, int attempt) {
+        super(base);
+        this.runName = runName;
+        this.attempt = attempt;
+        startTime = System.currentTimeMillis();
+        startNanos = System.nanoTime();
+        stageStartNanos = startNanos;
+        stageMillis = new LinkedHashMap<>();
+        requestsMark = FetchMetrics.startRun();
+        setUpFetchState();
+    }
+
+    /*
+       Records that the stage with the given name ended now
+       The stage started when the previous stage ended, or when the run
+       started if this is the first stage
+     */
+    public void endStage(String stageName) {
+        long now = System.nanoTime();
+        stageMillis.put(stageName, (now - stageStartNanos) / 1000000);
+        stageStartNanos = now;
+    }
+
+    /*
+       Starts the ByteBudget of the given fetch profile from
+       BackgroundManager for the rest of the run, with the given number of
+       bytes
+       The budget is active on the thread that calls this method, which
+       must be the thread that runs the task
+       The profile, the budget and the bytes that were downloaded are saved
+       with the run
+     */
+    public void startByteBudget(String fetchProfile, long byteBudget) {
+        this.fetchProfile = fetchProfile;
+        this.byteBudget = byteBudget;
+        budget = ByteBudget.start(byteBudget);
+    }
+
+    /*
+       Stops recording the run, which ended with the given result from
+       RunMetrics, and saves its measurements and the limits of the
+       RateLimiter
+       If more than MAX_RUNS runs are saved, the oldest runs are dropped
+     */
+    public void finish(String result) {
+        List<RequestMetric> requests = FetchMetrics.finishRun(requestsMark);
+        RunMetrics run = new RunMetrics(runName, startTime,
+                (System.nanoTime() - startNanos) / 1000000, attempt, result,
+                stageMillis, requests);
+        if (fetchProfile != null) {
+            run.setFetchProfile(fetchProfile);
+            run.setByteBudget(byteBudget);
+            run.setBytesUsed(budget.finish());
+        }
+        synchronized (FILE_LOCK) {
+            FileManager fileManager = new FileManager(this);
+            List<RunMetrics> runs = fileManager.readRunMetrics();
+            if (runs == null) {
+                runs = new ArrayList<>();
+            }
+            runs.add(run);
+            while (runs.size() > MAX_RUNS) {
+                runs.remove(0);
+            }
+            fileManager.storeRunMetrics(runs);
+        }
+        getPreferences().edit().putString(getString(R.string.rate_limiter_state_key),
+                PageFetcher.getRateLimiter().saveState()).apply();
+    }
+
+    /*
+       Restores the limits of the RateLimiter that were saved by an earlier
+       process and opens the PageCache in the cache directory of the app, if
+       this wasn't done yet in this process
+     */
+    private void setUpFetchState() {
+        synchronized (FILE_LOCK) {
+            if (isFetchStateReady) {
+                return;
+            }
+            isFetchStateReady = true;
+        }
+        String savedState = getPreferences().getString(
+                getString(R.string.rate_limiter_state_key), null);
+        if (savedState != null) {
+            PageFetcher.getRateLimiter().restoreState(savedState);
+        }
+        PageFetcher.setPageCache(new PageCache(
+                new File(getCacheDir(), PAGE_CACHE_DIRECTORY), MAX_PAGE_CACHE_BYTES));
+    }
+
+    /*
+       Returns the shared preferences file of the app
+     */
+    private SharedPreferences getPreferences() {
+        return getSharedPreferences(
+                getString(R.string.shared_prefs_filename), Context.MODE_PRIVATE);
+    }
+
+}
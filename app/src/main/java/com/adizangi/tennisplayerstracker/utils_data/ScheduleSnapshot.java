@@ -0,0 +1,56 @@
+/*
+   Represents the tournaments of one day's match schedule, as they were
+   fetched in a previous run
+   The next day's run uses it instead of fetching yesterday's schedule again
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+public class ScheduleSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 7530158221419034786L;
+
+    private String date;
+    private List<String> tournamentURLs;
+    private Map<String, TournamentSummary> tournaments;
+
+    /*
+       Constructs a ScheduleSnapshot of the schedule of the given date
+       The date is in the format yyyyMMdd
+     */
+    public ScheduleSnapshot(String date,
+                            List<String> tournamentURLs,
+                            Map<String, TournamentSummary> tournaments) {
+        this.date = date;
+        this.tournamentURLs = tournamentURLs;
+        this.tournaments = tournaments;
+    }
+
+    /*
+       Returns the date of the schedule in the format yyyyMMdd
+     */
+    public String getDate() {
+        return date;
+    }
+
+    /*
+       Returns the URLs of the tournament pages in the order they appear in
+       the schedule
+     */
+    public List<String> getTournamentURLs() {
+        return tournamentURLs;
+    }
+
+    /*
+       Returns a map from the URL of each tournament page to a summary of
+       that page
+     */
+    public Map<String, TournamentSummary> getTournaments() {
+        return tournaments;
+    }
+
+}
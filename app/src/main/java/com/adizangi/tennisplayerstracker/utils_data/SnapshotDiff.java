@@ -0,0 +1,111 @@
+/*
+   Finds what changed in the players' stats between two snapshots, and
+   returns it as StatsEvent objects
+   The snapshots are compared in one pass over the newer snapshot, with each
+   player looked up by name in the older one, and a player whose stats are
+   the same in both is skipped without looking at them further, except for
+   the player's match today
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class SnapshotDiff {
+
+    /* A ranking that moved less than this many places is not news */
+    public static final int DEFAULT_RANK_THRESHOLD = 5;
+
+    private int rankThreshold;
+
+    /*
+       Constructs a SnapshotDiff that reports ranking changes of at least the
+       given number of places
+     */
+    public SnapshotDiff(int rankThreshold) {
+        this.rankThreshold = rankThreshold;
+    }
+
+    /*
+       Returns the events between the given previous and current snapshots,
+       which are maps from the name of each player to the player's stats
+       The events of each player are in the order: title, elimination or
+       advancing, ranking change, and then the new scheduled match
+       A player who isn't in the previous snapshot can only have a scheduled
+       match, since there is nothing to compare the rest to
+       A match that is scheduled today is always an event, even if the
+       previous snapshot has the same upcoming match, since the upcoming
+       match has only the player's name and the time, which may be the same
+       on two days in a row
+     */
+    public List<StatsEvent> diff(Map<String, PlayerStats> previous,
+                                 Map<String, PlayerStats> current) {
+        List<StatsEvent> events = new ArrayList<>();
+        for (Map.Entry<String, PlayerStats> entry : current.entrySet()) {
+            PlayerStats previousStats = previous.get(entry.getKey());
+            PlayerStats currentStats = entry.getValue();
+            if (previousStats != null && !isSame(previousStats, currentStats)) {
+                addEvents(events, entry.getKey(), previousStats, currentStats);
+            }
+            String upcomingMatch = currentStats.getUpcomingMatch();
+            if (!upcomingMatch.isEmpty()) {
+                events.add(new StatsEvent(StatsEvent.TYPE_MATCH_SCHEDULED,
+                        entry.getKey(), upcomingMatch));
+            }
+        }
+        return events;
+    }
+
+    /*
+       Adds the events of the player with the given name, other than the
+       scheduled match, from the given previous stats to the given current
+       stats, to the given list
+     */
+    private void addEvents(List<StatsEvent> events,
+                           String name,
+                           PlayerStats previous,
+                           PlayerStats current) {
+        boolean isNewResult = !current.getLatestMatchResult().isEmpty() &&
+                !current.getLatestMatchResult().equals(previous.getLatestMatchResult());
+        String standing = current.getTournamentStanding();
+        boolean isNewStanding = !standing.equals(previous.getTournamentStanding());
+        boolean hasMoreTitles = previous.getTitlesNumber() != -1 &&
+                current.getTitlesNumber() > previous.getTitlesNumber();
+        if ((standing.equals("winner") && (isNewStanding || isNewResult)) ||
+                hasMoreTitles) {
+            String tournament = current.getCurrentTournament().isEmpty() ?
+                    "a title" : current.getCurrentTournament();
+            events.add(new StatsEvent(StatsEvent.TYPE_WON_TITLE, name,
+                    name + " won " + tournament));
+        } else if (standing.equals("out") && (isNewStanding || isNewResult)) {
+            events.add(new StatsEvent(StatsEvent.TYPE_ELIMINATED, name,
+                    name + " is out: " + current.getLatestMatchResult()));
+        } else if (standing.contains("advanced") && isNewResult) {
+            events.add(new StatsEvent(StatsEvent.TYPE_ADVANCED, name,
+                    name + " " + standing + ": " + current.getLatestMatchResult()));
+        }
+        int previousRanking = previous.getRankingNumber();
+        int currentRanking = current.getRankingNumber();
+        if (previousRanking != -1 && currentRanking != -1 &&
+                Math.abs(previousRanking - currentRanking) >= rankThreshold) {
+            events.add(new StatsEvent(StatsEvent.TYPE_RANK_CHANGE, name,
+                    name + (currentRanking < previousRanking ? " moved up" : " moved down") +
+                            " to No. " + currentRanking + " (from " + previousRanking + ")"));
+        }
+    }
+
+    /*
+       Returns true if the given stats are the same
+     */
+    private boolean isSame(PlayerStats previous, PlayerStats current) {
+        return previous.getRanking().equals(current.getRanking()) &&
+                previous.getTitles().equals(current.getTitles()) &&
+                previous.getTournamentStanding().equals(current.getTournamentStanding()) &&
+                previous.getCurrentTournament().equals(current.getCurrentTournament()) &&
+                previous.getLatestMatchResult().equals(current.getLatestMatchResult()) &&
+                previous.getUpcomingMatch().equals(current.getUpcomingMatch());
+    }
+
+}
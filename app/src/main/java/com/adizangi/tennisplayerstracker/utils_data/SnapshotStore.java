@@ -0,0 +1,792 @@
+/*
+   Keeps the history of the player stats, one snapshot per day, so that the
+   stats of any player can be read as they were on any day
+   The history is an append-only segment file- each snapshot is appended as
+   a delta that holds only the players whose stats changed since the
+   previous snapshot, or who were removed
+   Every string is written once into a dictionary in the segment, and the
+   stats refer to it by number, so a delta takes a few bytes per player
+   An index in memory holds the days and positions of each player's
+   entries, so a player's stats on any day are read with a binary search
+   and one seek
+   Compaction rewrites the segment with the state on the oldest day that is
+   kept as the base, and drops the deltas and strings before it
+   A snapshot that was cut while it was written (for example, when the task
+   was stopped) is dropped the next time the segment is opened
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+public class SnapshotStore {
+
+    /* How many days of history are kept, which is a full season */
+    public static final int MAX_HISTORY_DAYS = 366;
+
+    /* Compaction runs when this many days of history beyond MAX_HISTORY_DAYS
+       were collected, so it runs about once a month */
+    private static final int COMPACTION_SLACK_DAYS = 30;
+
+    private static final String SEGMENT_FILENAME = "history.seg";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x534e4150;
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = 5;
+
+    /* Record tags */
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_DAY = 2;
+
+    /* Entry kinds- what a day record says about a player */
+    private static final byte ENTRY_STATS = 0;
+    private static final byte ENTRY_REMOVED = 1;
+
+    /* The position of a removed entry in the index */
+    private static final long REMOVED = -1;
+
+    /* The name, ranking, titles, tournament standing, current tournament,
+       latest match result and upcoming match */
+    private static final int NUM_OF_FIELDS = 7;
+    private static final int MAX_VARINT_BYTES = 5;
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /* One store per directory, so that every user in the process sees the
+       same index */
+    private static final Map<String, SnapshotStore> STORES = new HashMap<>();
+
+    private final File segmentFile;
+    private boolean isLoaded;
+    private List<String> strings;
+    private Map<String, Integer> stringIds;
+    private Map<String, PlayerHistory> histories;
+    private List<Integer> days;
+
+    /*
+       Constructs a SnapshotStore that keeps the history in the given file
+     */
+    private SnapshotStore(File segmentFile) {
+        this.segmentFile = segmentFile;
+    }
+
+    /*
+       Returns the SnapshotStore that keeps the history in the given
+       directory
+       The segment is read the first time the store is used
+     */
+    public static synchronized SnapshotStore open(File directory) {
+        String path = directory.getAbsolutePath();
+        SnapshotStore store = STORES.get(path);
+        if (store == null) {
+            store = new SnapshotStore(new File(directory, SEGMENT_FILENAME));
+            STORES.put(path, store);
+        }
+        return store;
+    }
+
+    /*
+       Returns the day of the given calendar as a number of days since
+       January 1, 1970, in the calendar's time zone
+     */
+    public static int getEpochDay(Calendar calendar) {
+        long localMillis = calendar.getTimeInMillis() +
+                calendar.get(Calendar.ZONE_OFFSET) + calendar.get(Calendar.DST_OFFSET);
+        return (int) Math.floor((double) localMillis / DAY_MILLIS);
+    }
+
+    /*
+       Appends the given stats as the snapshot of the given day, which is a
+       number of days since January 1, 1970
+       Only the players whose stats changed since the latest snapshot, and the
+       players who are no longer in the stats, are written
+       A second snapshot of the same day replaces the first one for reads
+       Throws IllegalArgumentException if the given day is before the latest
+       snapshot, and may throw IOException
+     */
+    public synchronized void appendSnapshot(int day, Collection<PlayerStats> stats)
+            throws IOException {
+        load();
+        if (!days.isEmpty() && day < getLatestDay()) {
+            throw new IllegalArgumentException("The day " + day +
+                    " is before the latest snapshot");
+        }
+        SegmentWriter writer = new SegmentWriter(strings, stringIds);
+        List<String> names = new ArrayList<>();
+        List<int[]> entries = new ArrayList<>();
+        Map<String, Boolean> isInSnapshot = new HashMap<>();
+        try (RandomAccessFile in = openForReading()) {
+            for (PlayerStats playerStats : stats) {
+                isInSnapshot.put(playerStats.getName(), true);
+                int[] ids = writer.getIds(playerStats);
+                long position = getLatestPosition(playerStats.getName(), day);
+                if (position == REMOVED || !Arrays.equals(ids, readIds(in, position))) {
+                    names.add(playerStats.getName());
+                    entries.add(ids);
+                }
+            }
+        }
+        for (Map.Entry<String, PlayerHistory> history : histories.entrySet()) {
+            if (!isInSnapshot.containsKey(history.getKey()) &&
+                    getLatestPosition(history.getKey(), day) != REMOVED) {
+                names.add(history.getKey());
+                entries.add(null);
+            }
+        }
+        if (names.isEmpty() && !days.isEmpty() && day == getLatestDay()) {
+            return;
+        }
+        ByteArrayOutputStream dayRecord = new ByteArrayOutputStream();
+        long[] relativePositions = writeDayRecord(dayRecord, writer, day, names, entries);
+        long segmentLength = segmentFile.exists() ? segmentFile.length() : 0;
+        long recordStart = Math.max(segmentLength, HEADER_BYTES) + writer.getRecords().size();
+        try (FileOutputStream out = new FileOutputStream(segmentFile, true)) {
+            if (segmentLength == 0) {
+                out.write(getHeader());
+            }
+            writer.getRecords().writeTo(out);
+            dayRecord.writeTo(out);
+            out.getFD().sync();
+        }
+        writer.commit();
+        for (int i = 0; i < names.size(); i++) {
+            getOrCreateHistory(names.get(i)).add(day, relativePositions[i] == REMOVED ?
+                    REMOVED : recordStart + relativePositions[i]);
+        }
+        addDay(day);
+    }
+
+    /*
+       Returns the stats of the player with the given name on the given day,
+       which are the stats from the latest snapshot on or before that day
+       Returns null if the player wasn't in that snapshot
+       May throw IOException
+     */
+    public synchronized PlayerStats getPlayerStats(String name, int day) throws IOException {
+        load();
+        long position = getLatestPosition(name, day);
+        if (position == REMOVED) {
+            return null;
+        }
+        try (RandomAccessFile in = openForReading()) {
+            return toPlayerStats(readIds(in, position));
+        }
+    }
+
+    /*
+       Returns a map from the name of each player to their stats on the given
+       day, which are the stats from the latest snapshot on or before that day
+       May throw IOException
+     */
+    public synchronized Map<String, PlayerStats> getSnapshot(int day) throws IOException {
+        load();
+        Map<String, PlayerStats> snapshot = new HashMap<>();
+        try (RandomAccessFile in = openForReading()) {
+            for (Map.Entry<String, PlayerHistory> history : histories.entrySet()) {
+                long position = history.getValue().getPosition(day);
+                if (position != REMOVED) {
+                    snapshot.put(history.getKey(), toPlayerStats(readIds(in, position)));
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /*
+       Returns the days of the snapshots in the history, in ascending order
+       May throw IOException
+     */
+    public synchronized List<Integer> getDays() throws IOException {
+        load();
+        return new ArrayList<>(days);
+    }
+
+    /*
+       Returns the days on which the stats of the player with the given name
+       changed, in ascending order
+       May throw IOException
+     */
+    public synchronized List<Integer> getChangeDays(String name) throws IOException {
+        load();
+        List<Integer> changeDays = new ArrayList<>();
+        PlayerHistory history = histories.get(name);
+        if (history != null) {
+            for (int i = 0; i < history.size; i++) {
+                if (changeDays.isEmpty() ||
+                        changeDays.get(changeDays.size() - 1) != history.days[i]) {
+                    changeDays.add(history.days[i]);
+                }
+            }
+        }
+        return changeDays;
+    }
+
+    /*
+       Returns the size of the segment in bytes
+     */
+    public synchronized long getSizeBytes() {
+        return segmentFile.length();
+    }
+
+    /*
+       Compacts the history if it holds more than MAX_HISTORY_DAYS days plus
+       COMPACTION_SLACK_DAYS days before the given day
+       May throw IOException
+     */
+    public synchronized void compactIfNeeded(int today) throws IOException {
+        load();
+        if (!days.isEmpty() &&
+                days.get(0) < today - MAX_HISTORY_DAYS - COMPACTION_SLACK_DAYS) {
+            compact(today - MAX_HISTORY_DAYS);
+        }
+    }
+
+    /*
+       Rewrites the segment so that it starts with the state on the given
+       day as the base snapshot, followed by the deltas after it
+       The snapshots before the given day, and the strings that only they
+       used, are dropped
+       The new segment replaces the old one in one step, so a compaction that
+       is stopped leaves the old segment as it was
+       May throw IOException
+     */
+    public synchronized void compact(int oldestDayToKeep) throws IOException {
+        load();
+        if (days.isEmpty() || days.get(0) >= oldestDayToKeep) {
+            return;
+        }
+        /* The entries of each kept day, taken from the index */
+        TreeMap<Integer, List<String>> namesByDay = new TreeMap<>();
+        TreeMap<Integer, List<Long>> positionsByDay = new TreeMap<>();
+        for (Map.Entry<String, PlayerHistory> history : histories.entrySet()) {
+            PlayerHistory playerHistory = history.getValue();
+            long basePosition = playerHistory.getPosition(oldestDayToKeep);
+            if (basePosition != REMOVED) {
+                addEntry(namesByDay, positionsByDay, oldestDayToKeep,
+                        history.getKey(), basePosition);
+            }
+            for (int i = 0; i < playerHistory.size; i++) {
+                if (playerHistory.days[i] > oldestDayToKeep) {
+                    addEntry(namesByDay, positionsByDay, playerHistory.days[i],
+                            history.getKey(), playerHistory.positions[i]);
+                }
+            }
+        }
+        if (!namesByDay.containsKey(oldestDayToKeep)) {
+            namesByDay.put(oldestDayToKeep, new ArrayList<String>());
+            positionsByDay.put(oldestDayToKeep, new ArrayList<Long>());
+        }
+        for (int day : days) {
+            if (day > oldestDayToKeep && !namesByDay.containsKey(day)) {
+                namesByDay.put(day, new ArrayList<String>());
+                positionsByDay.put(day, new ArrayList<Long>());
+            }
+        }
+        SegmentWriter writer = new SegmentWriter(
+                new ArrayList<String>(), new HashMap<String, Integer>());
+        ByteArrayOutputStream dayRecords = new ByteArrayOutputStream();
+        try (RandomAccessFile in = openForReading()) {
+            for (Map.Entry<Integer, List<String>> dayEntries : namesByDay.entrySet()) {
+                List<Long> positions = positionsByDay.get(dayEntries.getKey());
+                List<int[]> entries = new ArrayList<>();
+                for (long position : positions) {
+                    entries.add(position == REMOVED ? null :
+                            writer.getIds(toPlayerStats(readIds(in, position))));
+                }
+                writeDayRecord(dayRecords, writer, dayEntries.getKey(),
+                        dayEntries.getValue(), entries);
+            }
+        }
+        File tempFile = new File(segmentFile.getPath() + TEMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            out.write(getHeader());
+            writer.getRecords().writeTo(out);
+            dayRecords.writeTo(out);
+            out.getFD().sync();
+        }
+        if (!tempFile.renameTo(segmentFile)) {
+            tempFile.delete();
+            throw new IOException("Couldn't replace the segment with the compacted one");
+        }
+        isLoaded = false;
+        load();
+    }
+
+    /*
+       Reads the segment into the dictionary and the index, if it wasn't
+       read yet
+       If the segment ends with a record that was cut, the segment is
+       truncated before it
+       May throw IOException
+     */
+    private void load() throws IOException {
+        if (isLoaded) {
+            return;
+        }
+        strings = new ArrayList<>();
+        stringIds = new HashMap<>();
+        histories = new HashMap<>();
+        days = new ArrayList<>();
+        if (segmentFile.exists() && segmentFile.length() > 0) {
+            byte[] data = readSegment();
+            Reader reader = new Reader(data, data.length);
+            if (reader.readInt() != MAGIC || reader.readByte() != VERSION) {
+                throw new IOException("The file is not a snapshot segment");
+            }
+            int validLength = reader.position;
+            try {
+                while (reader.position < data.length) {
+                    byte tag = reader.readByte();
+                    if (tag == TAG_STRING) {
+                        addString(reader.readString());
+                    } else if (tag == TAG_DAY) {
+                        readDayRecord(reader);
+                    } else {
+                        throw new EOFException("Unknown record tag " + tag);
+                    }
+                    validLength = reader.position;
+                }
+            } catch (EOFException e) {
+                e.printStackTrace();
+                try (RandomAccessFile out = new RandomAccessFile(segmentFile, "rw")) {
+                    out.setLength(validLength);
+                }
+            }
+        }
+        isLoaded = true;
+    }
+
+    /*
+       Reads a day record from the given reader into the index
+       The record is added only once it was read completely
+       Throws EOFException if the record was cut
+     */
+    private void readDayRecord(Reader reader) throws EOFException {
+        int day = reader.readInt();
+        int numOfEntries = reader.readVarint();
+        String[] names = new String[numOfEntries];
+        long[] positions = new long[numOfEntries];
+        for (int i = 0; i < numOfEntries; i++) {
+            names[i] = getString(reader.readVarint());
+            if (reader.readByte() == ENTRY_STATS) {
+                positions[i] = reader.position;
+                for (int field = 0; field < NUM_OF_FIELDS; field++) {
+                    reader.readVarint();
+                }
+            } else {
+                positions[i] = REMOVED;
+            }
+        }
+        for (int i = 0; i < numOfEntries; i++) {
+            getOrCreateHistory(names[i]).add(day, positions[i]);
+        }
+        addDay(day);
+    }
+
+    /*
+       Writes a day record of the given day to the given stream, with an
+       entry for each of the given names
+       An entry whose ids are null says that the player was removed
+       The strings of the names are added to the given writer
+       Returns the position of the ids of each entry relative to the start
+       of the record, or REMOVED for removed entries
+     */
+    private long[] writeDayRecord(ByteArrayOutputStream out,
+                                  SegmentWriter writer,
+                                  int day,
+                                  List<String> names,
+                                  List<int[]> entries) {
+        long recordStart = out.size();
+        long[] positions = new long[names.size()];
+        out.write(TAG_DAY);
+        writeInt(out, day);
+        writeVarint(out, names.size());
+        for (int i = 0; i < names.size(); i++) {
+            writeVarint(out, writer.getId(names.get(i)));
+            int[] ids = entries.get(i);
+            if (ids == null) {
+                out.write(ENTRY_REMOVED);
+                positions[i] = REMOVED;
+            } else {
+                out.write(ENTRY_STATS);
+                positions[i] = out.size() - recordStart;
+                for (int id : ids) {
+                    writeVarint(out, id);
+                }
+            }
+        }
+        return positions;
+    }
+
+    /*
+       Returns the position of the latest entry of the player with the given
+       name on or before the given day, or REMOVED if the player had no stats
+       on that day
+     */
+    private long getLatestPosition(String name, int day) {
+        PlayerHistory history = histories.get(name);
+        return history == null ? REMOVED : history.getPosition(day);
+    }
+
+    /*
+       Reads the string ids of the stats at the given position of the segment
+       May throw IOException
+     */
+    private int[] readIds(RandomAccessFile in, long position) throws IOException {
+        byte[] buffer = new byte[NUM_OF_FIELDS * MAX_VARINT_BYTES];
+        in.seek(position);
+        int length = 0;
+        while (length < buffer.length) {
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
+        }
+        Reader reader = new Reader(buffer, length);
+        int[] ids = new int[NUM_OF_FIELDS];
+        for (int field = 0; field < NUM_OF_FIELDS; field++) {
+            ids[field] = reader.readVarint();
+        }
+        return ids;
+    }
+
+    /*
+       Returns a PlayerStats object of the stats with the given string ids
+     */
+    private PlayerStats toPlayerStats(int[] ids) {
+        return new PlayerStats(getString(ids[0]), getString(ids[1]), getString(ids[2]),
+                getString(ids[3]), getString(ids[4]), getString(ids[5]),
+                getString(ids[6]));
+    }
+
+    /*
+       Returns the string with the given id in the dictionary, where 0 is
+       null
+     */
+    private String getString(int id) {
+        return id == 0 ? null : strings.get(id - 1);
+    }
+
+    /*
+       Adds the given string to the end of the dictionary
+     */
+    private void addString(String value) {
+        strings.add(value);
+        stringIds.put(value, strings.size());
+    }
+
+    /*
+       Adds the given day to the days of the snapshots, unless it is already
+       the latest day
+     */
+    private void addDay(int day) {
+        if (days.isEmpty() || getLatestDay() != day) {
+            days.add(day);
+        }
+    }
+
+    /*
+       Returns the day of the latest snapshot
+     */
+    private int getLatestDay() {
+        return days.get(days.size() - 1);
+    }
+
+    /*
+       Returns the history of the player with the given name, and creates an
+       empty one if there is none
+     */
+    private PlayerHistory getOrCreateHistory(String name) {
+        PlayerHistory history = histories.get(name);
+        if (history == null) {
+            history = new PlayerHistory();
+            histories.put(name, history);
+        }
+        return history;
+    }
+
+    /*
+       Adds the entry of the player with the given name at the given
+       position to the entries of the given day in the given maps
+     */
+    private void addEntry(TreeMap<Integer, List<String>> namesByDay,
+                          TreeMap<Integer, List<Long>> positionsByDay,
+                          int day,
+                          String name,
+                          long position) {
+        if (!namesByDay.containsKey(day)) {
+            namesByDay.put(day, new ArrayList<String>());
+            positionsByDay.put(day, new ArrayList<Long>());
+        }
+        namesByDay.get(day).add(name);
+        positionsByDay.get(day).add(position);
+    }
+
+    /*
+       Opens the segment for reading, or returns null if it doesn't exist
+       yet, in which case the index is empty and nothing is read from it
+       May throw IOException
+     */
+    private RandomAccessFile openForReading() throws IOException {
+        return segmentFile.exists() ? new RandomAccessFile(segmentFile, "r") : null;
+    }
+
+    /*
+       Reads the whole segment and returns its bytes
+       May throw IOException
+     */
+    private byte[] readSegment() throws IOException {
+        byte[] data = new byte[(int) segmentFile.length()];
+        try (FileInputStream in = new FileInputStream(segmentFile)) {
+            int length = 0;
+            while (length < data.length) {
+                int read = in.read(data, length, data.length - length);
+                if (read == -1) {
+                    break;
+                }
+                length += read;
+            }
+            return length == data.length ? data : Arrays.copyOf(data, length);
+        }
+    }
+
+    /*
+       Returns the header that every segment starts with
+     */
+    private static byte[] getHeader() {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        writeInt(header, MAGIC);
+        header.write(VERSION);
+        return header.toByteArray();
+    }
+
+    /*
+       Writes the given int to the given stream in 4 bytes, high byte first
+     */
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /*
+       Writes the given non negative int to the given stream in as few bytes
+       as possible, 7 bits in each byte, with the high bit set on every byte
+       but the last
+     */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /*
+       Holds the days and segment positions of the entries of one player, in
+       the order they were appended
+     */
+    private static class PlayerHistory {
+
+        int size;
+        int[] days = new int[4];
+        long[] positions = new long[4];
+
+        /*
+           Adds an entry of the given day at the given position
+         */
+        void add(int day, long position) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            days[size] = day;
+            positions[size] = position;
+            size++;
+        }
+
+        /*
+           Returns the position of the latest entry on or before the given
+           day, or REMOVED if there is none
+           When there are several entries of the same day, the latest one is
+           used
+         */
+        long getPosition(int day) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (days[middle] <= day) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low == 0 ? REMOVED : positions[low - 1];
+        }
+    }
+
+    /*
+       Assigns ids to strings for records that are about to be written, and
+       writes a string record for every string that isn't in the dictionary
+       yet
+       The new strings are added to the dictionary only when commit() is
+       called, after the records were written
+     */
+    private static class SegmentWriter {
+
+        private final List<String> strings;
+        private final Map<String, Integer> stringIds;
+        private final List<String> newStrings = new ArrayList<>();
+        private final Map<String, Integer> newStringIds = new HashMap<>();
+        private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+
+        /*
+           Constructs a SegmentWriter that adds to the given dictionary
+         */
+        SegmentWriter(List<String> strings, Map<String, Integer> stringIds) {
+            this.strings = strings;
+            this.stringIds = stringIds;
+        }
+
+        /*
+           Returns the string ids of the fields of the given stats
+         */
+        int[] getIds(PlayerStats stats) {
+            return new int[]{getId(stats.getName()), getId(stats.getRanking()),
+                    getId(stats.getTitles()), getId(stats.getTournamentStanding()),
+                    getId(stats.getCurrentTournament()), getId(stats.getLatestMatchResult()),
+                    getId(stats.getUpcomingMatch())};
+        }
+
+        /*
+           Returns the id of the given string, where null is 0, and writes a
+           string record for it if it is new
+         */
+        int getId(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer id = stringIds.get(value);
+            if (id == null) {
+                id = newStringIds.get(value);
+            }
+            if (id == null) {
+                newStrings.add(value);
+                id = strings.size() + newStrings.size();
+                newStringIds.put(value, id);
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                records.write(TAG_STRING);
+                writeVarint(records, bytes.length);
+                records.write(bytes, 0, bytes.length);
+            }
+            return id;
+        }
+
+        /*
+           Returns the string records that were written
+         */
+        ByteArrayOutputStream getRecords() {
+            return records;
+        }
+
+        /*
+           Adds the new strings to the dictionary
+         */
+        void commit() {
+            for (String value : newStrings) {
+                strings.add(value);
+                stringIds.put(value, strings.size());
+            }
+        }
+    }
+
+    /*
+       Reads ints, varints and strings from a byte array
+       Throws EOFException when a value goes past the end of the data
+     */
+    private static class Reader {
+
+        private final byte[] data;
+        private final int length;
+        int position;
+
+        /*
+           Constructs a Reader of the first given number of bytes of the given
+           array
+         */
+        Reader(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+
+        /*
+           Reads one byte
+         */
+        byte readByte() throws EOFException {
+            if (position >= length) {
+                throw new EOFException();
+            }
+            return data[position++];
+        }
+
+        /*
+           Reads an int that was written in 4 bytes, high byte first
+         */
+        int readInt() throws EOFException {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (readByte() & 0xff);
+            }
+            return value;
+        }
+
+        /*
+           Reads an int that was written by writeVarint()
+         */
+        int readVarint() throws EOFException {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = readByte();
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        /*
+           Reads a string that was written as its length in bytes followed by
+           its UTF-8 bytes
+         */
+        String readString() throws EOFException {
+            int numOfBytes = readVarint();
+            if (position + numOfBytes > length) {
+                throw new EOFException();
+            }
+            String value = new String(data, position, numOfBytes, StandardCharsets.UTF_8);
+            position += numOfBytes;
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+   Represents something that changed in a player's stats between two
+   snapshots, as found by SnapshotDiff
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+public class StatsEvent {
+
+    /* Types of events */
+    public static final String TYPE_ADVANCED = "advanced";
+    public static final String TYPE_ELIMINATED = "eliminated";
+    public static final String TYPE_WON_TITLE = "wonTitle";
+    public static final String TYPE_RANK_CHANGE = "rankChange";
+    public static final String TYPE_MATCH_SCHEDULED = "matchScheduled";
+
+    private String type;
+    private String player;
+    private String text;
+
+    /*
+       Constructs a StatsEvent of the given type about the player with the
+       given name, that is described by the given text
+     */
+    public StatsEvent(String type, String player, String text) {
+        this.type = type;
+        this.player = player;
+        this.text = text;
+    }
+
+    /*
+       Returns the type of the event, which is one of the TYPE constants
+     */
+    public String getType() {
+        return type;
+    }
+
+    /*
+       Returns the name of the player
+     */
+    public String getPlayer() {
+        return player;
+    }
+
+    /*
+       Returns the text that describes the event in a notification
+     */
+    public String getText() {
+        return text;
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+   Represents the information taken from the daily match schedule page of a
+   tournament
+   It is saved between runs so that a page whose results are already known
+   doesn't have to be fetched again
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+import java.io.Serializable;
+
+public class TournamentSummary implements Serializable {
+
+    private static final long serialVersionUID = 3264061158307472912L;
+
+    private String name;
+    private String round;
+    private String finalResults;
+
+    /*
+       Constructs a TournamentSummary
+     */
+    public TournamentSummary(String name, String round, String finalResults) {
+        this.name = name;
+        this.round = round;
+        this.finalResults = finalResults;
+    }
+
+    /*
+       Returns the tournament's name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /*
+       Returns the tournament's round on that day, as it appears on the page
+     */
+    public String getRound() {
+        return round;
+    }
+
+    /*
+       Returns the results of the tournament's singles finals
+       Each result is in the format
+       '[winner] won the [tournament name] against [opponent] [score]'
+       followed by a new line
+       Returns an empty string if the round is not a singles final
+       Returns null if the round is a singles final that wasn't finished when
+       the page was fetched
+     */
+    public String getFinalResults() {
+        return finalResults;
+    }
+
+    /*
+       Returns true if the round is a singles final that wasn't finished when
+       the page was fetched, so the page must be fetched again to get the
+       results
+     */
+    public boolean isFinalPending() {
+        return finalResults == null;
+    }
+
+}
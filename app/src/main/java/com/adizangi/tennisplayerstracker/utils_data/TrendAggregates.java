@@ -0,0 +1,311 @@
+/*
+   Holds the trends of the players over the snapshots in the SnapshotStore:
+   their ranking trajectory, their recent wins and losses, and the
+   progression of their titles in the season
+   The trends are updated with each snapshot as it is written, so showing
+   them doesn't read the history
+   A win or a loss is counted when a player's latest match result changes,
+   and the tournament standing tells which it was- a player who advanced
+   won the match and a player who is out lost it
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TrendAggregates implements Serializable {
+
+    private static final long serialVersionUID = 2931640917754316520L;
+
+    private static final int WEEK_DAYS = 7;
+
+    /* How many ranking changes, results and titles changes each player
+       keeps */
+    private static final int MAX_RANKING_POINTS = 12;
+    private static final int MAX_FORM_RESULTS = 10;
+    private static final int MAX_TITLES_POINTS = 12;
+
+    /* How many of them are shown in a summary */
+    private static final int SHOWN_RANKING_POINTS = 4;
+    private static final int SHOWN_FORM_RESULTS = 5;
+
+    private static final char WIN = 'W';
+    private static final char LOSS = 'L';
+
+    private Map<String, PlayerTrend> trends = new HashMap<>();
+    private int latestDay = Integer.MIN_VALUE;
+
+    /*
+       Updates the trends with the given snapshot of the given day, which is
+       a number of days since January 1, 1970
+       A snapshot of the same day as the previous one updates the trends of
+       that day again, without counting the same match twice
+     */
+    public void update(int day, Collection<PlayerStats> snapshot) {
+        for (PlayerStats playerStats : snapshot) {
+            PlayerTrend trend = trends.get(playerStats.getName());
+            if (trend == null) {
+                trend = new PlayerTrend();
+                trends.put(playerStats.getName(), trend);
+            }
+            trend.update(day, playerStats);
+        }
+        latestDay = Math.max(latestDay, day);
+    }
+
+    /*
+       Returns the trend of the player with the given name, or null if the
+       player wasn't in any snapshot
+     */
+    public PlayerTrend getTrend(String name) {
+        return trends.get(name);
+    }
+
+    /*
+       Returns the day of the latest snapshot that updated the trends, or
+       Integer.MIN_VALUE if there was none
+     */
+    public int getLatestDay() {
+        return latestDay;
+    }
+
+    /*
+       Represents the trend of one player
+     */
+    public static class PlayerTrend implements Serializable {
+
+        private static final long serialVersionUID = 6120480375539148872L;
+
+        private List<Integer> rankingDays = new ArrayList<>();
+        private List<Integer> rankings = new ArrayList<>();
+        private int bestRanking = -1;
+        private String form = "";
+        private int streak;
+        private List<Integer> titlesDays = new ArrayList<>();
+        private List<Integer> titles = new ArrayList<>();
+        private String latestMatchResult = "";
+
+        /*
+           Updates the trend with the given stats of the given day
+         */
+        void update(int day, PlayerStats stats) {
+            updateRanking(day, stats.getRankingNumber());
+            updateTitles(day, stats.getTitlesNumber());
+            updateForm(stats.getLatestMatchResult(), stats.getTournamentStanding());
+        }
+
+        /*
+           Adds the given ranking of the given day if the ranking changed
+         */
+        private void updateRanking(int day, int ranking) {
+            if (ranking <= 0) {
+                return;
+            }
+            if (bestRanking == -1 || ranking < bestRanking) {
+                bestRanking = ranking;
+            }
+            addPoint(rankingDays, rankings, day, ranking, MAX_RANKING_POINTS);
+        }
+
+        /*
+           Adds the given number of titles of the given day if it changed
+           A number that is lower than the previous one starts a new season
+         */
+        private void updateTitles(int day, int numOfTitles) {
+            if (numOfTitles < 0) {
+                return;
+            }
+            if (!titles.isEmpty() && numOfTitles < titles.get(titles.size() - 1)) {
+                titlesDays.clear();
+                titles.clear();
+            }
+            addPoint(titlesDays, titles, day, numOfTitles, MAX_TITLES_POINTS);
+        }
+
+        /*
+           Counts a win or a loss if the given latest match result is a new
+           match, using the given tournament standing
+           A player who advanced or won the tournament won the match
+           Matches that the player advanced without playing are not counted
+         */
+        private void updateForm(String matchResult, String standing) {
+            if (matchResult == null || matchResult.isEmpty() ||
+                    matchResult.equals(latestMatchResult)) {
+                return;
+            }
+            latestMatchResult = matchResult;
+            if (matchResult.endsWith("automatically advanced") || standing == null) {
+                return;
+            }
+            char result;
+            if (standing.contains("advanced") || standing.equals("winner")) {
+                result = WIN;
+                streak = streak > 0 ? streak + 1 : 1;
+            } else if (standing.equals("out")) {
+                result = LOSS;
+                streak = streak < 0 ? streak - 1 : -1;
+            } else {
+                return;
+            }
+            form += result;
+            if (form.length() > MAX_FORM_RESULTS) {
+                form = form.substring(form.length() - MAX_FORM_RESULTS);
+            }
+        }
+
+        /*
+           Adds the given value of the given day to the given lists of days
+           and values if it is different from the latest value
+           A value of the same day as the latest one replaces it
+           Keeps at most the given number of values
+         */
+        private static void addPoint(List<Integer> days, List<Integer> values,
+                                     int day, int value, int maxPoints) {
+            int last = values.size() - 1;
+            if (last >= 0 && values.get(last) == value) {
+                return;
+            }
+            if (last >= 0 && days.get(last) == day) {
+                values.set(last, value);
+                return;
+            }
+            days.add(day);
+            values.add(value);
+            if (values.size() > maxPoints) {
+                days.remove(0);
+                values.remove(0);
+            }
+        }
+
+        /*
+           Returns the latest ranking of the player, or -1 if it is unknown
+         */
+        public int getRanking() {
+            return rankings.isEmpty() ? -1 : rankings.get(rankings.size() - 1);
+        }
+
+        /*
+           Returns the best ranking of the player, or -1 if it is unknown
+         */
+        public int getBestRanking() {
+            return bestRanking;
+        }
+
+        /*
+           Returns the rankings of the player, each time it changed, from the
+           oldest to the latest
+         */
+        public List<Integer> getRankings() {
+            return new ArrayList<>(rankings);
+        }
+
+        /*
+           Returns how many places the player climbed since the given day,
+           which is negative if the player dropped
+           Returns 0 if the ranking on that day is unknown
+         */
+        public int getRankingChangeSince(int day) {
+            int previousRanking = -1;
+            for (int i = 0; i < rankingDays.size() && rankingDays.get(i) <= day; i++) {
+                previousRanking = rankings.get(i);
+            }
+            return previousRanking == -1 ? 0 : previousRanking - getRanking();
+        }
+
+        /*
+           Returns the recent results of the player, from the oldest to the
+           latest, with W for a win and L for a loss
+         */
+        public String getForm() {
+            return form;
+        }
+
+        /*
+           Returns the number of matches the player won in a row, or minus the
+           number of matches the player lost in a row
+         */
+        public int getStreak() {
+            return streak;
+        }
+
+        /*
+           Returns the number of titles of the player in the season, each
+           time it changed, from the oldest to the latest
+         */
+        public List<Integer> getTitlesProgression() {
+            return new ArrayList<>(titles);
+        }
+
+        /*
+           Returns a String containing the summary of this trend on the given
+           day, which is the day of the latest snapshot
+           The summary contains the ranking trajectory, the recent form and
+           the titles progression, each on its own line, and leaves out what
+           isn't known yet
+         */
+        public String getSummary(int today) {
+            StringBuilder summary = new StringBuilder();
+            if (rankings.size() > 1) {
+                summary.append("Ranking trend: ")
+                        .append(joinLast(rankings, SHOWN_RANKING_POINTS));
+                int weekChange = getRankingChangeSince(today - WEEK_DAYS);
+                if (weekChange > 0) {
+                    summary.append(" (up ").append(weekChange).append(" this week)");
+                } else if (weekChange < 0) {
+                    summary.append(" (down ").append(-weekChange).append(" this week)");
+                }
+                summary.append(", best ").append(bestRanking);
+            }
+            if (!form.isEmpty()) {
+                appendLine(summary).append("Form: ");
+                String shownForm = form.substring(
+                        Math.max(0, form.length() - SHOWN_FORM_RESULTS));
+                for (int i = 0; i < shownForm.length(); i++) {
+                    summary.append(i == 0 ? "" : " ").append(shownForm.charAt(i));
+                }
+                if (streak > 1) {
+                    summary.append(" (won ").append(streak).append(" in a row)");
+                } else if (streak < -1) {
+                    summary.append(" (lost ").append(-streak).append(" in a row)");
+                }
+            }
+            if (titles.size() > 1) {
+                appendLine(summary).append("Titles this season: ")
+                        .append(joinLast(titles, titles.size()));
+            }
+            return summary.toString();
+        }
+
+        /*
+           Appends a new line to the given summary if it isn't empty, and
+           returns it
+         */
+        private static StringBuilder appendLine(StringBuilder summary) {
+            if (summary.length() > 0) {
+                summary.append("\n");
+            }
+            return summary;
+        }
+
+        /*
+           Returns the last given number of values in the given list, joined
+           with arrows
+         */
+        private static String joinLast(List<Integer> values, int count) {
+            StringBuilder joined = new StringBuilder();
+            for (int i = Math.max(0, values.size() - count); i < values.size(); i++) {
+                if (joined.length() > 0) {
+                    joined.append(" → ");
+                }
+                joined.append(values.get(i));
+            }
+            return joined.toString();
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+   The rows that the home screen widget shows, one for each of the user's
+   selected players, saved in a small flat binary file
+   The widget is updated by a BroadcastReceiver, which has little time, so
+   the file is read as it is, without deserializing any objects- each field
+   is read from its place in the file when the widget asks for it
+   The file starts with a header and a table of the positions of the rows,
+   followed by the rows
+   Header: magic number (int), version (byte), number of rows (byte),
+   creation time in milliseconds (long)
+   Row: ranking number (int), then the name, the tournament standing and the
+   upcoming match, each as its length in bytes (unsigned short) followed by
+   its UTF-8 bytes
+ */
+
+package com.adizangi.tennisplayerstracker.utils_data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class WidgetSnapshot {
+
+    /* The widget has room for this many players */
+    public static final int MAX_ROWS = 10;
+
+    private static final int MAGIC = 0x57444754;
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = 14;
+    private static final int MAX_STRING_BYTES = 0xffff;
+
+    /* The order of the strings in a row */
+    private static final int FIELD_NAME = 0;
+    private static final int FIELD_STANDING = 1;
+    private static final int FIELD_UPCOMING_MATCH = 2;
+
+    private final ByteBuffer buffer;
+    private final int numOfRows;
+
+    /*
+       Constructs a WidgetSnapshot that reads the rows from the given bytes of
+       a widget snapshot file
+       Throws IOException if the bytes aren't a widget snapshot
+     */
+    public WidgetSnapshot(byte[] data) throws IOException {
+        buffer = ByteBuffer.wrap(data);
+        if (data.length < HEADER_BYTES || buffer.getInt(0) != MAGIC ||
+                buffer.get(4) != VERSION) {
+            throw new IOException("The file is not a widget snapshot");
+        }
+        numOfRows = buffer.get(5);
+        if (data.length < HEADER_BYTES + numOfRows * 4) {
+            throw new IOException("The widget snapshot is cut");
+        }
+    }
+
+    /*
+       Returns the bytes of a widget snapshot file with a row for each of the
+       given stats, up to MAX_ROWS rows, that was created at the given time
+       in milliseconds
+     */
+    public static byte[] build(List<PlayerStats> stats, long createdTime) {
+        int numOfRows = Math.min(stats.size(), MAX_ROWS);
+        ByteArrayOutputStream rows = new ByteArrayOutputStream();
+        int[] rowPositions = new int[numOfRows];
+        int rowsStart = HEADER_BYTES + numOfRows * 4;
+        try {
+            DataOutputStream rowsOut = new DataOutputStream(rows);
+            for (int row = 0; row < numOfRows; row++) {
+                PlayerStats playerStats = stats.get(row);
+                rowPositions[row] = rowsStart + rows.size();
+                rowsOut.writeInt(playerStats.getRankingNumber());
+                writeString(rowsOut, playerStats.getName());
+                writeString(rowsOut, playerStats.getTournamentStanding());
+                writeString(rowsOut, playerStats.getUpcomingMatch());
+            }
+            ByteArrayOutputStream file = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(file);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(numOfRows);
+            out.writeLong(createdTime);
+            for (int rowPosition : rowPositions) {
+                out.writeInt(rowPosition);
+            }
+            rows.writeTo(out);
+            return file.toByteArray();
+        } catch (IOException e) {
+            /* Writing to a ByteArrayOutputStream doesn't throw */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+       Returns the number of rows
+     */
+    public int getNumOfRows() {
+        return numOfRows;
+    }
+
+    /*
+       Returns the time in milliseconds when the snapshot was created
+     */
+    public long getCreatedTime() {
+        return buffer.getLong(6);
+    }
+
+    /*
+       Returns the ranking number of the player in the given row, or -1 if it
+       is unknown
+     */
+    public int getRankingNumber(int row) {
+        return buffer.getInt(getRowPosition(row));
+    }
+
+    /*
+       Returns the name of the player in the given row
+     */
+    public String getName(int row) {
+        return getString(row, FIELD_NAME);
+    }
+
+    /*
+       Returns the tournament standing of the player in the given row, in the
+       format of PlayerStats.getTournamentStanding()
+     */
+    public String getTournamentStanding(int row) {
+        return getString(row, FIELD_STANDING);
+    }
+
+    /*
+       Returns the upcoming match of the player in the given row, in the
+       format of PlayerStats.getUpcomingMatch()
+     */
+    public String getUpcomingMatch(int row) {
+        return getString(row, FIELD_UPCOMING_MATCH);
+    }
+
+    /*
+       Returns the position of the given row in the file
+     */
+    private int getRowPosition(int row) {
+        return buffer.getInt(HEADER_BYTES + row * 4);
+    }
+
+    /*
+       Returns the string with the given field number in the given row
+       The strings before it are skipped by their lengths
+     */
+    private String getString(int row, int field) {
+        int position = getRowPosition(row) + 4;
+        for (int i = 0; i < field; i++) {
+            position += 2 + (buffer.getShort(position) & 0xffff);
+        }
+        int length = buffer.getShort(position) & 0xffff;
+        return new String(buffer.array(), position + 2, length, StandardCharsets.UTF_8);
+    }
+
+    /*
+       Writes the given string as its length in bytes followed by its UTF-8
+       bytes, cutting strings that are too long
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_STRING_BYTES);
+        out.writeShort(length);
+        out.write(bytes, 0, length);
+    }
+
+}
@@ -0,0 +1,301 @@
+/*
+   Loads the stats of single players on demand, when the Stats tab shows a
+   player whose stats are missing or stale
+   Requests that are made within a short window are grouped into one wave,
+   so a screen of rows that are bound together is loaded with one fetch of
+   the rankings and parallel fetches of the players' pages
+   The loaded stats are merged into the saved player stats map, so they are
+   kept when the app is closed
+   The players' pages are found in the rankings tables that were saved in
+   the latest refresh, so a wave only fetches the players' pages
+   The head to head records of the selected players are also read here,
+   so the Stats tab doesn't wait for the MatchStore to be read
+ */
+
+package com.adizangi.tennisplayerstracker.view_models;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.adizangi.tennisplayerstracker.R;
+import com.adizangi.tennisplayerstracker.network_calls.PageFetcher;
+import com.adizangi.tennisplayerstracker.network_calls.PlayerStatsFetcher;
+import com.adizangi.tennisplayerstracker.network_calls.RankingsTable;
+import com.adizangi.tennisplayerstracker.utils_data.FileManager;
+import com.adizangi.tennisplayerstracker.utils_data.MatchStore;
+import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+import com.adizangi.tennisplayerstracker.utils_data.RunMetrics;
+import com.adizangi.tennisplayerstracker.utils_data.RunRecorder;
+import com.adizangi.tennisplayerstracker.workers.FetchDataWorker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+class StatsLoader {
+
+    private static final long BATCH_WINDOW_MILLIS = 100;
+
+    /*
+       Receives the stats that a wave loaded, along with the requested
+       players whose stats the wave didn't find, and the head to head
+       records that were read, on the main thread
+     */
+    interface Callback {
+        void onStatsLoaded(Map<String, PlayerStats> loadedStats,
+                           Set<String> missingPlayers);
+        void onHeadToHeadsLoaded(Map<String, String> headToHeads);
+    }
+
+    private final Context context;
+    private final Callback callback;
+    private final Handler mainHandler;
+    private final ExecutorService executor;
+    private final Set<String> pendingPlayers;
+    private final Set<String> requestedPlayers;
+    private boolean isWaveScheduled;
+    private RankingsTable mRankings;  // Only used on the executor's thread
+    private RankingsTable wRankings;
+
+    private final Runnable startBatchedWave = new Runnable() {
+        /*
+           Sends the players that were requested in the batch window to be
+           loaded in one wave
+         */
+        @Override
+        public void run() {
+            isWaveScheduled = false;
+            Set<String> players = new LinkedHashSet<>(pendingPlayers);
+            pendingPlayers.clear();
+            startWave(players, null);
+        }
+    };
+
+    /*
+       Constructs a StatsLoader with the given context, that passes the
+       stats it loads to the given callback
+     */
+    StatsLoader(Context context, Callback callback) {
+        this.context = context.getApplicationContext();
+        this.callback = callback;
+        mainHandler = new Handler(Looper.getMainLooper());
+        executor = Executors.newSingleThreadExecutor();
+        pendingPlayers = new LinkedHashSet<>();
+        requestedPlayers = new HashSet<>();
+    }
+
+    /*
+       Requests the stats of the given player, represented by name followed
+       by ranking in parenthesis
+       The player is loaded with the other players that are requested within
+       the batch window
+       A player is loaded at most once, unless its wave failed or didn't
+       find the player
+       Must be called on the main thread
+     */
+    void request(String player) {
+        if (!requestedPlayers.add(player)) {
+            return;
+        }
+        pendingPlayers.add(player);
+        if (!isWaveScheduled) {
+            isWaveScheduled = true;
+            mainHandler.postDelayed(startBatchedWave, BATCH_WINDOW_MILLIS);
+        }
+    }
+
+    /*
+       Loads the stats of the given players right away, even if they were
+       loaded before, and runs the given Runnable on the main thread when
+       the wave finishes or fails
+       Must be called on the main thread
+     */
+    void refresh(Collection<String> players, Runnable onFinished) {
+        requestedPlayers.addAll(players);
+        startWave(new LinkedHashSet<>(players), onFinished);
+    }
+
+    /*
+       Reads the head to head records between each two of the players with
+       the given names, and passes a map from each name to the summaries of
+       the player's records, separated by new lines, to the callback
+       Only players who played another of the given players are in the map
+       Must be called on the main thread
+     */
+    void loadHeadToHeads(Collection<String> names) {
+        final List<String> playerNames = new ArrayList<>(names);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Map<String, String> headToHeads = readHeadToHeads(playerNames);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!executor.isShutdown()) {
+                            callback.onHeadToHeadsLoaded(headToHeads);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /*
+       Stops loading
+       Waves that already started are interrupted, and their stats are not
+       passed to the callback
+     */
+    void shutdown() {
+        mainHandler.removeCallbacks(startBatchedWave);
+        executor.shutdownNow();
+    }
+
+    /*
+       Sends the given players to be loaded in one wave on the executor's
+       thread, and runs the given Runnable on the main thread when the wave
+       finishes or fails
+       The Runnable may be null
+     */
+    private void startWave(final Set<String> players, final Runnable onFinished) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadWave(players, onFinished);
+            }
+        });
+    }
+
+    /*
+       Fetches the stats of the given players, merges them into the saved
+       player stats map, and passes them to the callback on the main thread,
+       along with the players whose stats weren't found
+       The matches on the players' pages are added to the MatchStore
+       Runs the given Runnable on the main thread after that, if it isn't null
+       The wave is recorded like a run of a background task
+       If the wave fails, the players can be requested again, and so can the
+       players that it didn't find
+     */
+    private void loadWave(final Set<String> players, final Runnable onFinished) {
+        Map<String, PlayerStats> stats = null;
+        RunRecorder runRecorder = new RunRecorder(context, "StatsLoader", 0);
+        long fetchStartTime = System.currentTimeMillis();
+        try {
+            loadRankingsTables();
+            runRecorder.endStage("rankings");
+            PlayerStatsFetcher statsFetcher = new PlayerStatsFetcher(mRankings, wRankings);
+            stats = statsFetcher.getPlayerStatsMap(players);
+            runRecorder.endStage("player stats");
+            FileManager fileManager = new FileManager(context);
+            fileManager.mergePlayerStats(stats, fetchStartTime);
+            fileManager.addMatches(statsFetcher.getObservedMatches());
+            runRecorder.finish(RunMetrics.RESULT_SUCCESS);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            Log.i(context.getString(R.string.fetching_data_log),
+                    "StatsLoader wave failed: " + e);
+            runRecorder.finish(RunMetrics.RESULT_FAILURE);
+        }
+        final Map<String, PlayerStats> loadedStats = stats;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (executor.isShutdown()) {
+                    return;
+                }
+                if (loadedStats == null) {
+                    requestedPlayers.removeAll(players);
+                } else {
+                    Set<String> missingPlayers = getMissingPlayers(players, loadedStats);
+                    requestedPlayers.removeAll(missingPlayers);
+                    callback.onStatsLoaded(loadedStats, missingPlayers);
+                }
+                if (onFinished != null) {
+                    onFinished.run();
+                }
+            }
+        });
+    }
+
+    /*
+       Returns the given players whose stats aren't in the given stats that
+       a wave loaded
+       Players are matched by name, since the stats are keyed by the
+       players' current rankings
+     */
+    private static Set<String> getMissingPlayers(Set<String> players,
+                                                 Map<String, PlayerStats> loadedStats) {
+        Set<String> missingPlayers = new LinkedHashSet<>();
+        for (String player : players) {
+            if (PlayerStats.find(loadedStats, player) == null) {
+                missingPlayers.add(player);
+            }
+        }
+        return missingPlayers;
+    }
+
+    /*
+       Reads the rankings tables that were saved in the latest refresh, or
+       fetches them if none were saved
+       The tables are kept for the next waves
+     */
+    private void loadRankingsTables() throws IOException {
+        if (mRankings != null) {
+            return;
+        }
+        RankingsTable[] savedTables = new FileManager(context).readRankingsTables();
+        if (savedTables != null) {
+            mRankings = savedTables[0];
+            wRankings = savedTables[1];
+            return;
+        }
+        PageFetcher pageFetcher = new PageFetcher();
+        mRankings = new RankingsTable(pageFetcher.fetch(
+                FetchDataWorker.MEN_RANKINGS_URL, PageFetcher.PAGE_RANKINGS));
+        wRankings = new RankingsTable(pageFetcher.fetch(
+                FetchDataWorker.WOMEN_RANKINGS_URL, PageFetcher.PAGE_RANKINGS));
+    }
+
+    /*
+       Returns a map from each of the given names to the summaries of the
+       player's head to head records against the other given players,
+       separated by new lines
+       Returns an empty map if the MatchStore can't be read
+     */
+    private Map<String, String> readHeadToHeads(List<String> names) {
+        Map<String, String> headToHeads = new HashMap<>();
+        try {
+            MatchStore matchStore = new FileManager(context).getMatchStore();
+            for (String name : names) {
+                StringBuilder summaries = new StringBuilder();
+                for (String opponent : names) {
+                    if (opponent.equals(name)) {
+                        continue;
+                    }
+                    MatchStore.HeadToHead headToHead =
+                            matchStore.getHeadToHead(name, opponent);
+                    if (!headToHead.getMatches().isEmpty()) {
+                        summaries.append(summaries.length() == 0 ? "" : "\n")
+                                .append(headToHead.getSummary());
+                    }
+                }
+                if (summaries.length() > 0) {
+                    headToHeads.put(name, summaries.toString());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return headToHeads;
+    }
+
+}
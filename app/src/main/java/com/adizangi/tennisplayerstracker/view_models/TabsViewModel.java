@@ -6,13 +6,19 @@ package com.adizangi.tennisplayerstracker.view_models;
 
 import android.app.Application;
 
+import com.adizangi.tennisplayerstracker.network_calls.RankingsTable;
+import com.adizangi.tennisplayerstracker.receivers.StatsWidgetProvider;
 import com.adizangi.tennisplayerstracker.utils_data.FileManager;
 import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+import com.adizangi.tennisplayerstracker.utils_data.TrendAggregates;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
@@ -20,35 +26,106 @@ import androidx.lifecycle.MutableLiveData;
 
 public class TabsViewModel extends AndroidViewModel {
 
+    /* A day, with some time for a refresh that was delayed */
+    private static final long STATS_STALE_MILLIS = 26 * 60 * 60 * 1000;
+
+    private static final String STANDING_LOADING = "loading";
+    private static final String STANDING_UNAVAILABLE = "unavailable";
+
     private final List<String> totalPlayers;
     private final Map<String, PlayerStats> statsMap;
+    private final TrendAggregates trendAggregates;
     private List<String> selectedPlayers;
     private List<PlayerStats> selectedPlayersStats;
     private MutableLiveData<String> addedPlayer;
     private MutableLiveData<String> removedPlayer;
+    private MutableLiveData<RowUpdate> updatedRow;
+    private MutableLiveData<Boolean> isRefreshing;
+    private MutableLiveData<Map<String, String>> headToHeads;
     private FileManager fileManager;
+    private StatsLoader statsLoader;
+    private boolean areStatsStale;
+    private Set<String> unavailablePlayers;  // Names
+
+    /*
+       Represents a row in the PlayerStats list whose stats were loaded, and
+       which may have moved to keep the list sorted
+     */
+    public static class RowUpdate {
+
+        private int oldPosition;
+        private int newPosition;
+
+        /*
+           Constructs a RowUpdate of the row that moved from the given old
+           position to the given new position
+         */
+        RowUpdate(int oldPosition, int newPosition) {
+            this.oldPosition = oldPosition;
+            this.newPosition = newPosition;
+        }
+
+        /*
+           Returns the position of the row before it was updated
+         */
+        public int getOldPosition() {
+            return oldPosition;
+        }
+
+        /*
+           Returns the position of the row after it was updated
+         */
+        public int getNewPosition() {
+            return newPosition;
+        }
+    }
 
     /*
        Constructs a TabsViewModel with the given Application reference
        Retrieves saved data and initializes the data for the views
+       Selected players who have no saved stats get a placeholder, which is
+       replaced when the Stats tab shows the player and the stats are loaded
+       The players' trends are read as they were saved by the latest refresh,
+       so the history isn't read
+       The head to head records of the selected players are read in the
+       background
        Initializes the observable data to empty values
      */
     public TabsViewModel(@NonNull Application application) {
         super(application);
         fileManager = new FileManager(application);
         totalPlayers = fileManager.readTotalPlayers();
-        statsMap = fileManager.readPlayerStats();
+        Map<String, PlayerStats> savedStats = fileManager.readPlayerStats();
+        statsMap = savedStats == null ? new HashMap<String, PlayerStats>() : savedStats;
+        TrendAggregates savedTrends = fileManager.readTrendAggregates();
+        trendAggregates = savedTrends == null ? new TrendAggregates() : savedTrends;
+        areStatsStale = System.currentTimeMillis() - fileManager.getPlayerStatsTime() >
+                STATS_STALE_MILLIS;
         selectedPlayers = fileManager.readSelectedPlayers();
         selectedPlayersStats = new ArrayList<>();
-        if (!statsMap.isEmpty()) {
-            for (String player : selectedPlayers) {
-                PlayerStats playerStats = statsMap.get(player);
-                selectedPlayersStats.add(playerStats);
-            }
+        unavailablePlayers = new HashSet<>();
+        for (String player : selectedPlayers) {
+            selectedPlayersStats.add(getStatsOrPlaceholder(player));
         }
         Collections.sort(selectedPlayersStats, Collections.reverseOrder());
         addedPlayer = new MutableLiveData<>();
         removedPlayer = new MutableLiveData<>();
+        updatedRow = new MutableLiveData<>();
+        isRefreshing = new MutableLiveData<>(false);
+        headToHeads = new MutableLiveData<>();
+        statsLoader = new StatsLoader(application, new StatsLoader.Callback() {
+            @Override
+            public void onStatsLoaded(Map<String, PlayerStats> loadedStats,
+                                      Set<String> missingPlayers) {
+                updatePlayersStats(loadedStats, missingPlayers);
+            }
+
+            @Override
+            public void onHeadToHeadsLoaded(Map<String, String> loadedHeadToHeads) {
+                headToHeads.setValue(loadedHeadToHeads);
+            }
+        });
+        loadHeadToHeads();
     }
 
     /*
@@ -74,6 +151,13 @@ public class TabsViewModel extends AndroidViewModel {
         return selectedPlayersStats;
     }
 
+    /*
+       Returns the trends of the players, from the latest refresh
+     */
+    public TrendAggregates getTrendAggregates() {
+        return trendAggregates;
+    }
+
     /*
        Returns a MutableLiveData containing the player that was added
      */
@@ -88,6 +172,31 @@ public class TabsViewModel extends AndroidViewModel {
         return removedPlayer;
     }
 
+    /*
+       Returns a MutableLiveData containing the latest row of the PlayerStats
+       list whose stats were loaded
+     */
+    public MutableLiveData<RowUpdate> getUpdatedRow() {
+        return updatedRow;
+    }
+
+    /*
+       Returns a MutableLiveData containing true while the selected players
+       are refreshed
+     */
+    public MutableLiveData<Boolean> getIsRefreshing() {
+        return isRefreshing;
+    }
+
+    /*
+       Returns a MutableLiveData containing a map from the name of each
+       selected player to the summaries of the player's head to head records
+       against the other selected players
+     */
+    public MutableLiveData<Map<String, String>> getHeadToHeads() {
+        return headToHeads;
+    }
+
     /*
        Adds the given player to the list of the user's players and saves the
        list
@@ -98,28 +207,75 @@ public class TabsViewModel extends AndroidViewModel {
         addedPlayer.setValue(player);
         selectedPlayers.add(player);
         fileManager.storeSelectedPlayers(selectedPlayers);
+        loadHeadToHeads();
+        updateWidget();
     }
 
     /*
        Adds a PlayerStats object that corresponds to the given player into the
        PlayerStats list
+       If the player has no saved stats, adds a placeholder
        The list remains sorted
      */
     public void addPlayerStats(String player) {
-        PlayerStats playerStats = statsMap.get(player);
-        selectedPlayersStats.add(playerStats);
+        selectedPlayersStats.add(getStatsOrPlaceholder(player));
         Collections.sort(selectedPlayersStats, Collections.reverseOrder());
     }
 
+    /*
+       Called when the Stats tab shows the given PlayerStats object
+       If the object is a placeholder or the saved stats are stale, requests
+       the player's stats from the StatsLoader
+       Players whose stats weren't found are not requested again, unless the
+       selected players are refreshed
+     */
+    public void onPlayerStatsShown(PlayerStats playerStats) {
+        if (unavailablePlayers.contains(playerStats.getName())) {
+            return;
+        }
+        if (areStatsStale || STANDING_LOADING.equals(playerStats.getTournamentStanding())) {
+            statsLoader.request(getPlayerKey(playerStats));
+        }
+    }
+
+    /*
+       Fetches the stats of all the user's selected players right away, and
+       updates their rows when they are loaded
+       Only the selected players' pages are fetched, so the refresh doesn't
+       depend on the refresh of all the data
+       Sets the value of isRefreshing to true until the stats are loaded
+     */
+    public void refreshSelectedPlayers() {
+        if (Boolean.TRUE.equals(isRefreshing.getValue())) {
+            return;
+        }
+        if (selectedPlayers.isEmpty()) {
+            isRefreshing.setValue(false);
+            return;
+        }
+        isRefreshing.setValue(true);
+        statsLoader.refresh(selectedPlayers, new Runnable() {
+            @Override
+            public void run() {
+                isRefreshing.setValue(false);
+            }
+        });
+    }
+
     /*
        Removes the given player from the list of the user's players
        Sets the value of removedPlayer to the player so the change will be
        observed
+       If the player's stats weren't found, they are requested again when
+       the player is added back
      */
     public void removePlayer(String player) {
         removedPlayer.setValue(player);
+        unavailablePlayers.remove(RankingsTable.getPlayerName(player));
         selectedPlayers.remove(player);
         fileManager.storeSelectedPlayers(selectedPlayers);
+        loadHeadToHeads();
+        updateWidget();
     }
 
     /*
@@ -128,18 +284,134 @@ public class TabsViewModel extends AndroidViewModel {
        The list remains sorted
      */
     public void removePlayerStats(String player) {
+        int index = indexOfPlayer(player);
+        if (index != -1) {
+            selectedPlayersStats.remove(index);
+        }
+    }
+
+    /*
+       Stops the StatsLoader when the ViewModel is no longer used
+     */
+    @Override
+    protected void onCleared() {
+        statsLoader.shutdown();
+    }
+
+    /*
+       Puts the given loaded stats into the stats map, and replaces the rows
+       of those players in the PlayerStats list
+       The placeholders of the given missing players, whose stats weren't
+       found, are replaced with rows that say the stats are unavailable, and
+       rows with saved stats keep them
+       Sets the value of updatedRow for each replaced row so the change will
+       be observed
+       The list remains sorted, and the widget shows the new stats
+     */
+    private void updatePlayersStats(Map<String, PlayerStats> loadedStats,
+                                    Set<String> missingPlayers) {
+        for (Map.Entry<String, PlayerStats> entry : loadedStats.entrySet()) {
+            PlayerStats.put(statsMap, entry.getKey(), entry.getValue());
+            unavailablePlayers.remove(entry.getValue().getName());
+            replaceRow(entry.getKey(), entry.getValue());
+        }
+        for (String player : missingPlayers) {
+            String name = RankingsTable.getPlayerName(player);
+            unavailablePlayers.add(name);
+            int position = indexOfPlayer(player);
+            if (position != -1 && STANDING_LOADING.equals(
+                    selectedPlayersStats.get(position).getTournamentStanding())) {
+                replaceRow(player, new PlayerStats(name,
+                        selectedPlayersStats.get(position).getRanking(),
+                        "Stats unavailable", STANDING_UNAVAILABLE, "", "", ""));
+            }
+        }
+        updateWidget();
+    }
+
+    /*
+       Replaces the row of the given player in the PlayerStats list with the
+       given PlayerStats object, and moves it so the list remains sorted
+       Sets the value of updatedRow so the change will be observed
+       Does nothing if the player was removed while loading
+     */
+    private void replaceRow(String player, PlayerStats playerStats) {
+        int oldPosition = indexOfPlayer(player);
+        if (oldPosition == -1) {
+            return;
+        }
+        selectedPlayersStats.remove(oldPosition);
+        int newPosition = Collections.binarySearch(selectedPlayersStats,
+                playerStats, Collections.<PlayerStats>reverseOrder());
+        if (newPosition < 0) {
+            newPosition = -(newPosition + 1);
+        }
+        selectedPlayersStats.add(newPosition, playerStats);
+        updatedRow.setValue(new RowUpdate(oldPosition, newPosition));
+    }
+
+    /*
+       Saves the widget snapshot of the selected players and updates the
+       widget, after the selected players or their stats changed
+     */
+    private void updateWidget() {
+        fileManager.storeWidgetSnapshot(selectedPlayers, statsMap);
+        StatsWidgetProvider.updateWidgets(getApplication());
+    }
+
+    /*
+       Reads the head to head records between the selected players in the
+       background, and sets the value of headToHeads to them when they are
+       read
+     */
+    private void loadHeadToHeads() {
+        List<String> names = new ArrayList<>();
+        for (String player : selectedPlayers) {
+            names.add(RankingsTable.getPlayerName(player));
+        }
+        statsLoader.loadHeadToHeads(names);
+    }
+
+    /*
+       Returns the saved PlayerStats object of the given player
+       If there is none, returns a placeholder with the player's name and
+       ranking, whose standing is STANDING_LOADING
+     */
+    private PlayerStats getStatsOrPlaceholder(String player) {
+        PlayerStats playerStats = PlayerStats.find(statsMap, player);
+        if (playerStats != null) {
+            return playerStats;
+        }
+        String name = RankingsTable.getPlayerName(player);
+        String ranking = player.substring(name.length() + 2, player.length() - 1);
+        return new PlayerStats(name, "Current ranking: " + ranking,
+                "Loading stats…", STANDING_LOADING, "", "", "");
+    }
+
+    /*
+       Returns the index in the PlayerStats list of the given player, who is
+       matched by name since the row may have another ranking
+       Returns -1 if the player isn't in the list
+     */
+    private int indexOfPlayer(String player) {
+        String name = RankingsTable.getPlayerName(player);
         int size = selectedPlayersStats.size();
         for (int i = 0; i < size; i++) {
-            PlayerStats playerStats = selectedPlayersStats.get(i);
-            String name = playerStats.getName();
-            String fullRanking = playerStats.getRanking();
-            String ranking = fullRanking.substring(fullRanking.indexOf(":") + 2);
-            String playerAtIndex = name + " (" + ranking + ")";
-            if (playerAtIndex.equals(player)) {
-                selectedPlayersStats.remove(i);
-                break;
+            if (selectedPlayersStats.get(i).getName().equals(name)) {
+                return i;
             }
         }
+        return -1;
+    }
+
+    /*
+       Returns the player that the given PlayerStats object belongs to,
+       represented by name followed by ranking in parenthesis
+     */
+    private String getPlayerKey(PlayerStats playerStats) {
+        String fullRanking = playerStats.getRanking();
+        String ranking = fullRanking.substring(fullRanking.indexOf(":") + 2);
+        return playerStats.getName() + " (" + ranking + ")";
     }
 
 }
@@ -10,27 +10,38 @@ import android.content.SharedPreferences;
 import android.util.Log;
 
 import com.adizangi.tennisplayerstracker.R;
-import com.adizangi.tennisplayerstracker.network_calls.NotificationFetcher;
+import com.adizangi.tennisplayerstracker.network_calls.ByteBudget;
+import com.adizangi.tennisplayerstracker.network_calls.ByteBudgetExceededException;
+import com.adizangi.tennisplayerstracker.network_calls.CircuitBreakerOpenException;
+import com.adizangi.tennisplayerstracker.network_calls.PageFetcher;
 import com.adizangi.tennisplayerstracker.network_calls.PlayerStatsFetcher;
+import com.adizangi.tennisplayerstracker.network_calls.RankingsTable;
 import com.adizangi.tennisplayerstracker.network_calls.TotalPlayersFetcher;
+import com.adizangi.tennisplayerstracker.network_calls.TournamentIndex;
+import com.adizangi.tennisplayerstracker.network_calls.TournamentPageFetcher;
+import com.adizangi.tennisplayerstracker.receivers.StatsWidgetProvider;
+import com.adizangi.tennisplayerstracker.utils_data.BackgroundManager;
 import com.adizangi.tennisplayerstracker.utils_data.FileManager;
 import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+import com.adizangi.tennisplayerstracker.utils_data.RefreshCoordinator;
+import com.adizangi.tennisplayerstracker.utils_data.RefreshScheduler;
+import com.adizangi.tennisplayerstracker.utils_data.RunMetrics;
+import com.adizangi.tennisplayerstracker.utils_data.RunRecorder;
+import com.adizangi.tennisplayerstracker.utils_data.SnapshotStore;
 
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
 import java.io.IOException;
-import java.net.SocketException;
-import java.net.SocketTimeoutException;
-import java.net.UnknownHostException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.NonNull;
 import androidx.work.Data;
+import androidx.work.WorkManager;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
@@ -38,10 +49,19 @@ public class FetchDataWorker extends Worker {
 
     public static final String PROGRESS_KEY = "progress";
 
-    private Document mRankings;
-    private Document wRankings;
-    private Document tSchedule;
-    private Document ySchedule;
+    public static final String MEN_RANKINGS_URL =
+            "https://www.espn.com/tennis/rankings/_/season/2020";
+    public static final String WOMEN_RANKINGS_URL =
+            "https://www.espn.com/tennis/rankings/_/type/wta/season/2020";
+    public static final String SCHEDULE_URL =
+            "http://www.espn.com/tennis/dailyResults";
+
+    /* The tournament index that FetchNotificationDataWorker saved is used
+       only if it is newer than this, so a crawl that was retried or
+       deferred fetches the pages again */
+    private static final long MAX_SAVED_INDEX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private RunRecorder runRecorder;
 
     /*
        Constructs a FetchDataWorker with the given context and worker params
@@ -53,78 +73,222 @@ public class FetchDataWorker extends Worker {
 
     /*
        Fetches the data in the background and saves it in files
-       Updates the observable progress while the work is running
-       After the data is saved, schedules another worker that sends a
-       notification
-       Returns Result.success() if the work was successful, Result.retry() if
-       the work failed due to a problem with the network, and Result.failure()
-       if the work failed for another reason
+       The input data contains RefreshScheduler.CRAWL_SCOPE_KEY, which tells
+       whether to fetch all the data or only the rankings
+       On a metered network, a scheduled refresh doesn't fetch the data here-
+       it defers the crawl until the device is on an unmetered network
+       Otherwise the crawl runs within the byte budget of the network's fetch
+       profile, except for a refresh the user started, which is only counted
+       Updates the observable progress while the work is running, and
+       records the durations of the stages and the requests of the run
+       Since this is the last worker of a refresh, lets RefreshCoordinator
+       schedule the next refresh when the work succeeds or fails
+       Returns Result.success() if the work was successful or deferred,
+       Result.retry() if the ESPN website can't be reached or keeps failing,
+       and Result.failure() if the budget was used up or the work failed for
+       another reason
+       A single request that fails is retried by PageFetcher, so it doesn't
+       make the whole work run again
      */
     @NonNull
     @Override
     public Result doWork() {
+        runRecorder = new RunRecorder(getApplicationContext(),
+                "FetchDataWorker", getRunAttemptCount());
+        String refreshKind = getInputData().getString(RefreshScheduler.REFRESH_KIND_KEY);
+        String crawlScope = getInputData().getString(RefreshScheduler.CRAWL_SCOPE_KEY);
         try {
             setProgress(0); log("FetchDataWorker starting work");
-            saveTime(); // method for debugging
-            getHTMLDocuments();
-            setProgress(10);
-            TotalPlayersFetcher playersFetcher =
-                    new TotalPlayersFetcher(mRankings, wRankings);
-            PlayerStatsFetcher statsFetcher =
-                    new PlayerStatsFetcher(mRankings, wRankings);
-            NotificationFetcher notifFetcher =
-                    new NotificationFetcher(tSchedule, ySchedule);
-            List<String> totalPlayers = playersFetcher.getTotalPlayersList();
-            setProgress(40); log("Got total players list");
-            Map<String, PlayerStats> stats = statsFetcher.getPlayerStatsMap();
-            setProgress(70); log("Got player stats map");
-            String notificationText = notifFetcher.getNotificationText();
-            setProgress(99); log("Got notification text");
-            FileManager fileManager = new FileManager(getApplicationContext());
-            fileManager.storeTotalPlayers(totalPlayers);
-            fileManager.storePlayerStats(stats);
-            fileManager.storeNotificationText(notificationText);
-            log("Stored data in files");
+            BackgroundManager backgroundManager =
+                    new BackgroundManager(getApplicationContext());
+            String fetchProfile = backgroundManager.getFetchProfile();
+            boolean isStartedByUser = RefreshScheduler.KIND_ONE_TIME.equals(refreshKind);
+            if (BackgroundManager.PROFILE_METERED.equals(fetchProfile) && !isStartedByUser) {
+                new RefreshScheduler(getApplicationContext()).enqueueDeferredCrawl(crawlScope);
+                setProgress(100);
+                setIsRetrying(false);
+                log("FetchDataWorker deferred the crawl");
+                runRecorder.finish(RunMetrics.RESULT_DEFERRED);
+                finishRefresh(refreshKind);
+                return Result.success();
+            }
+            runRecorder.startByteBudget(fetchProfile, isStartedByUser ?
+                    ByteBudget.NO_LIMIT : backgroundManager.getByteBudget(fetchProfile));
+            if (!RefreshScheduler.KIND_DEFERRED.equals(refreshKind)) {
+                /* This crawl fetches the data that a deferred crawl would */
+                WorkManager.getInstance(getApplicationContext()).cancelUniqueWork(
+                        BackgroundManager.DEFERRED_CRAWL_WORK_NAME);
+            }
+            if (RefreshScheduler.SCOPE_RANKINGS_ONLY.equals(crawlScope)) {
+                fetchRankingsOnly();
+            } else {
+                fetchAllData();
+            }
             setProgress(100);
             setIsRetrying(false);
             log("FetchDataWorker done");
+            runRecorder.finish(RunMetrics.RESULT_SUCCESS);
+            finishRefresh(refreshKind);
             return Result.success();
-        } catch (UnknownHostException | SocketException | SocketTimeoutException e) {
+        } catch (CircuitBreakerOpenException e) {
             e.printStackTrace();
             setIsRetrying(true);
+            runRecorder.finish(RunMetrics.RESULT_RETRY);
             return Result.retry();
+        } catch (ByteBudgetExceededException e) {
+            e.printStackTrace();
+            setIsRetrying(false);
+            runRecorder.finish(RunMetrics.RESULT_OVER_BUDGET);
+            finishRefresh(refreshKind);
+            return Result.failure();
         } catch (Exception e) {
             e.printStackTrace();
             setIsRetrying(false);
+            runRecorder.finish(RunMetrics.RESULT_FAILURE);
+            finishRefresh(refreshKind);
             return Result.failure();
         }
     }
 
     /*
-       Gets HTML Documents that the data will be taken from
-       The Documents include men's tennis rankings, women's tennis rankings,
-       today's match schedule, and yesterday's match schedule from the ESPN
-       website
+       Lets RefreshCoordinator schedule the next refresh after the refresh of
+       the given kind finished
+       A deferred crawl is not a refresh of its own- the refresh that
+       deferred it already did this
+     */
+    private void finishRefresh(String refreshKind) {
+        if (!RefreshScheduler.KIND_DEFERRED.equals(refreshKind)) {
+            new RefreshCoordinator(getApplicationContext()).onRefreshFinished(refreshKind);
+        }
+    }
+
+    /*
+       Fetches the total players list and the player stats map, and saves
+       them in files along with the rankings tables and the matches that
+       were seen
+       Saves the widget snapshot of the selected players next to the stats,
+       and updates the widget
+       The player stats are taken from the pages of the tournaments that are
+       played when possible, so that only a few players' pages are fetched
+       Only the players down to the ranking depth in Settings and the
+       selected players are in the stats map, so that players below the depth
+       are updated only while they are selected
+     */
+    private void fetchAllData() throws IOException {
+        RankingsTable mRankings = getRankingsTable(MEN_RANKINGS_URL);
+        RankingsTable wRankings = getRankingsTable(WOMEN_RANKINGS_URL);
+        setProgress(10); log("Got rankings tables");
+        runRecorder.endStage("rankings");
+        FileManager fileManager = new FileManager(getApplicationContext());
+        TournamentIndex tournamentIndex = getTournamentIndex(fileManager);
+        setProgress(20); log("Got tournament index");
+        runRecorder.endStage("tournament index");
+        TotalPlayersFetcher playersFetcher =
+                new TotalPlayersFetcher(mRankings, wRankings);
+        PlayerStatsFetcher statsFetcher = new PlayerStatsFetcher(mRankings,
+                wRankings, tournamentIndex, fileManager.readPlayerStats());
+        List<String> totalPlayers = playersFetcher.getTotalPlayersList();
+        setProgress(40); log("Got total players list");
+        int rankingDepth = new BackgroundManager(getApplicationContext()).getRankingDepth();
+        List<String> selectedPlayers = fileManager.readSelectedPlayers();
+        Map<String, PlayerStats> stats = statsFetcher.getPlayerStatsMap(
+                rankingDepth, selectedPlayers);
+        setProgress(99); log("Got player stats map");
+        runRecorder.endStage("player stats");
+        fileManager.storeTotalPlayers(totalPlayers);
+        fileManager.storePlayerStats(stats);
+        fileManager.storeWidgetSnapshot(selectedPlayers, stats);
+        StatsWidgetProvider.updateWidgets(getApplicationContext());
+        fileManager.appendStatsSnapshot(stats);
+        fileManager.addMatches(tournamentIndex.getObservedMatches());
+        fileManager.addMatches(statsFetcher.getObservedMatches());
+        fileManager.storeRankingsTables(mRankings, wRankings);
+        log("Stored data in files");
+        runRecorder.endStage("store");
+    }
+
+    /*
+       Fetches only the total players list and saves it in a file, along
+       with the rankings tables
+       The player stats are left as they are
      */
-    private void getHTMLDocuments() throws IOException {
+    private void fetchRankingsOnly() throws IOException {
+        RankingsTable mRankings = getRankingsTable(MEN_RANKINGS_URL);
+        RankingsTable wRankings = getRankingsTable(WOMEN_RANKINGS_URL);
+        setProgress(10); log("Got rankings tables");
+        runRecorder.endStage("rankings");
+        TotalPlayersFetcher playersFetcher =
+                new TotalPlayersFetcher(mRankings, wRankings);
+        List<String> totalPlayers = playersFetcher.getTotalPlayersList();
+        setProgress(99); log("Got total players list");
+        FileManager fileManager = new FileManager(getApplicationContext());
+        fileManager.storeTotalPlayers(totalPlayers);
+        fileManager.storeRankingsTables(mRankings, wRankings);
+        log("Stored data in files");
+        runRecorder.endStage("store");
+    }
+
+    /*
+       Fetches the rankings page with the given URL and returns its table
+       The HTML Document is parsed into a RankingsTable right away, so it is
+       released before the players' pages are fetched
+     */
+    private RankingsTable getRankingsTable(String rankingsURL) throws IOException {
+        return new RankingsTable(
+                new PageFetcher().fetch(rankingsURL, PageFetcher.PAGE_RANKINGS));
+    }
+
+    /*
+       Returns a TournamentIndex of the pages of yesterday's and today's
+       tournaments
+       If FetchNotificationDataWorker saved an index of today a short while
+       ago, as it does earlier in the same refresh, that index is used
+       Otherwise fetches the match schedules and the pages of their
+       tournaments
+       Each schedule is reduced to its tournament URLs right away, and the
+       pages of each day are released once they were added to the index
+     */
+    private TournamentIndex getTournamentIndex(FileManager fileManager) throws IOException {
+        long indexAge = System.currentTimeMillis() - fileManager.getTournamentIndexTime();
+        if (indexAge < MAX_SAVED_INDEX_AGE_MILLIS) {
+            TournamentIndex savedIndex = fileManager.readTournamentIndex();
+            if (savedIndex != null &&
+                    savedIndex.getDay() == SnapshotStore.getEpochDay(Calendar.getInstance())) {
+                return savedIndex;
+            }
+        }
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.DATE, -1);
-        SimpleDateFormat dateFormat =
-                new SimpleDateFormat("yyyyMMdd", Locale.US);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd", Locale.US);
         String dateOfYesterday = dateFormat.format(calendar.getTime());
-        mRankings = Jsoup.connect
-                ("https://www.espn.com/tennis/rankings/_/season/2020").get();
-        log("Got men's rankings document");
-        wRankings = Jsoup.connect
-                ("https://www.espn.com/tennis/rankings/_/type/wta/season/2020").get();
-        log("Got women's rankings document");
-        tSchedule = Jsoup.connect
-                ("http://www.espn.com/tennis/dailyResults").get();
-        log("Got today's schedule document");
-        ySchedule = Jsoup.connect
-                ("http://www.espn.com/tennis/dailyResults?date=" +
-                        dateOfYesterday).get();
-        log("Got yesterday's schedule document");
+        PageFetcher pageFetcher = new PageFetcher();
+        TournamentPageFetcher tournamentFetcher = new TournamentPageFetcher();
+        List<String> yesterdayURLs = tournamentFetcher.getTournamentURLs(
+                pageFetcher.fetch(SCHEDULE_URL + "?date=" + dateOfYesterday,
+                        PageFetcher.PAGE_SCHEDULE));
+        List<String> todayURLs = tournamentFetcher.getTournamentURLs(
+                pageFetcher.fetch(SCHEDULE_URL, PageFetcher.PAGE_SCHEDULE));
+        TournamentIndex tournamentIndex = new TournamentIndex();
+        addTournamentPages(tournamentIndex, tournamentFetcher, yesterdayURLs, false);
+        addTournamentPages(tournamentIndex, tournamentFetcher, todayURLs, true);
+        return tournamentIndex;
+    }
+
+    /*
+       Fetches the pages of the tournaments with the given URLs with the
+       given TournamentPageFetcher and adds them to the given index
+       The given boolean tells whether the pages are of today's matches
+     */
+    private void addTournamentPages(TournamentIndex tournamentIndex,
+                                    TournamentPageFetcher tournamentFetcher,
+                                    List<String> tournamentURLs,
+                                    boolean isToday) throws IOException {
+        Map<String, Document> tournamentPages =
+                tournamentFetcher.getTournamentPages(tournamentURLs);
+        for (String tournamentURL : tournamentURLs) {
+            tournamentIndex.addTournamentPage(
+                    tournamentPages.get(tournamentURL), isToday);
+        }
     }
 
     /*
@@ -156,12 +320,4 @@ public class FetchDataWorker extends Worker {
                 context.getString(R.string.is_worker_retrying_key), value).apply();
     }
 
-    private void saveTime() {
-        SharedPreferences sharedPrefs = getApplicationContext()
-                .getSharedPreferences("Time file", Context.MODE_PRIVATE);
-        Calendar calendar = Calendar.getInstance();
-        sharedPrefs.edit().putInt("Hour", calendar.get(Calendar.HOUR_OF_DAY)).apply();
-        sharedPrefs.edit().putInt("Minute", calendar.get(Calendar.MINUTE)).apply();
-    }
-
 }
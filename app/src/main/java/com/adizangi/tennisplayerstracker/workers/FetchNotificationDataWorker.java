@@ -0,0 +1,231 @@
+/*
+   A background task that fetches the data for today's notification, which is
+   the match schedules and the statistics of the user's selected players
+   Runs before the rest of the data is fetched, so that the notification can
+   be sent without waiting for the statistics of all the players
+ */
+
+package com.adizangi.tennisplayerstracker.workers;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.adizangi.tennisplayerstracker.R;
+import com.adizangi.tennisplayerstracker.network_calls.ByteBudget;
+import com.adizangi.tennisplayerstracker.network_calls.ByteBudgetExceededException;
+import com.adizangi.tennisplayerstracker.network_calls.CircuitBreakerOpenException;
+import com.adizangi.tennisplayerstracker.network_calls.NotificationFetcher;
+import com.adizangi.tennisplayerstracker.network_calls.PageFetcher;
+import com.adizangi.tennisplayerstracker.network_calls.PlayerStatsFetcher;
+import com.adizangi.tennisplayerstracker.network_calls.RankingsTable;
+import com.adizangi.tennisplayerstracker.network_calls.TournamentIndex;
+import com.adizangi.tennisplayerstracker.receivers.StatsWidgetProvider;
+import com.adizangi.tennisplayerstracker.utils_data.BackgroundManager;
+import com.adizangi.tennisplayerstracker.utils_data.FileManager;
+import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+import com.adizangi.tennisplayerstracker.utils_data.RefreshCoordinator;
+import com.adizangi.tennisplayerstracker.utils_data.RefreshScheduler;
+import com.adizangi.tennisplayerstracker.utils_data.RunMetrics;
+import com.adizangi.tennisplayerstracker.utils_data.RunRecorder;
+import com.adizangi.tennisplayerstracker.utils_data.ScheduleSnapshot;
+
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+public class FetchNotificationDataWorker extends Worker {
+
+    /*
+       Constructs a FetchNotificationDataWorker with the given context and
+       worker params
+     */
+    public FetchNotificationDataWorker(@NonNull Context context,
+                                       @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /*
+       Fetches the notification text and, if there are tournaments today, the
+       statistics of the user's selected players
+       Uses the snapshot of yesterday's schedule that was saved in the
+       previous run when there is one, and saves a snapshot of today's
+       schedule for the next run
+       Saves the notification text in a file and merges the selected players'
+       statistics into the saved player stats map
+       Saves the tennis activity that was observed so that RefreshScheduler
+       can schedule the next refresh
+       When a full crawl follows in this refresh, saves the tournament index
+       of the pages it fetched, so the crawl doesn't fetch them again
+       Records the durations of the stages and the requests of the run
+       This is the part of a refresh that runs on any network, so it runs
+       within the byte budget of the network's fetch profile, except for a
+       refresh the user started, which is only counted
+       Returns Result.success() if the work was successful, Result.retry() if
+       the ESPN website can't be reached or keeps failing, and Result.failure()
+       if the work failed for another reason
+       If the budget is used up after the notification text was saved,
+       returns Result.success() so that the notification is still sent
+       A single request that fails is retried by PageFetcher, so it doesn't
+       make the whole work run again
+       If the work fails, the next refresh is scheduled right away
+     */
+    @NonNull
+    @Override
+    public Result doWork() {
+        RunRecorder runRecorder = new RunRecorder(getApplicationContext(),
+                "FetchNotificationDataWorker", getRunAttemptCount());
+        boolean isNotificationTextSaved = false;
+        try {
+            log("FetchNotificationDataWorker starting work");
+            BackgroundManager backgroundManager =
+                    new BackgroundManager(getApplicationContext());
+            String fetchProfile = backgroundManager.getFetchProfile();
+            boolean isStartedByUser = RefreshScheduler.KIND_ONE_TIME.equals(
+                    getInputData().getString(RefreshScheduler.REFRESH_KIND_KEY));
+            runRecorder.startByteBudget(fetchProfile, isStartedByUser ?
+                    ByteBudget.NO_LIMIT : backgroundManager.getByteBudget(fetchProfile));
+            FileManager fileManager = new FileManager(getApplicationContext());
+            boolean isCrawlFollowing = RefreshScheduler.SCOPE_FULL.equals(
+                    getInputData().getString(RefreshScheduler.CRAWL_SCOPE_KEY)) &&
+                    (isStartedByUser ||
+                            !BackgroundManager.PROFILE_METERED.equals(fetchProfile));
+            int activeTournaments = fetchNotificationText(fileManager, isCrawlFollowing);
+            isNotificationTextSaved = true;
+            log("Got notification text");
+            runRecorder.endStage("notification");
+            List<String> selectedPlayers = fileManager.readSelectedPlayers();
+            if (activeTournaments > 0 && !selectedPlayers.isEmpty()) {
+                fetchSelectedPlayerStats(fileManager, selectedPlayers);
+                log("Got selected players' stats");
+                runRecorder.endStage("selected players");
+            }
+            log("FetchNotificationDataWorker done");
+            runRecorder.finish(RunMetrics.RESULT_SUCCESS);
+            return Result.success();
+        } catch (CircuitBreakerOpenException e) {
+            e.printStackTrace();
+            runRecorder.finish(RunMetrics.RESULT_RETRY);
+            return Result.retry();
+        } catch (ByteBudgetExceededException e) {
+            e.printStackTrace();
+            runRecorder.finish(RunMetrics.RESULT_OVER_BUDGET);
+            if (isNotificationTextSaved) {
+                return Result.success();
+            }
+            new RefreshCoordinator(getApplicationContext()).onRefreshFinished(
+                    getInputData().getString(RefreshScheduler.REFRESH_KIND_KEY));
+            return Result.failure();
+        } catch (Exception e) {
+            e.printStackTrace();
+            runRecorder.finish(RunMetrics.RESULT_FAILURE);
+            /* The rest of the refresh won't run, so the next refresh is
+               scheduled here */
+            new RefreshCoordinator(getApplicationContext()).onRefreshFinished(
+                    getInputData().getString(RefreshScheduler.REFRESH_KIND_KEY));
+            return Result.failure();
+        }
+    }
+
+    /*
+       Fetches the notification text and saves it in the given FileManager,
+       along with a snapshot of today's schedule
+       Saves the tennis activity that was observed so that RefreshScheduler
+       can schedule the next refresh
+       Returns the number of tournaments that are played today
+       If the given boolean is true, a full crawl follows in this refresh, so
+       the tournament pages are also added to a TournamentIndex that is
+       saved for it
+       The schedule documents are only used inside this method, so they are
+       released before the players' stats are fetched
+     */
+    private int fetchNotificationText(FileManager fileManager,
+                                      boolean isCrawlFollowing) throws IOException {
+        PageFetcher pageFetcher = new PageFetcher();
+        Calendar calendar = Calendar.getInstance();
+        SimpleDateFormat dateFormat =
+                new SimpleDateFormat("yyyyMMdd", Locale.US);
+        String dateOfToday = dateFormat.format(calendar.getTime());
+        calendar.add(Calendar.DATE, -1);
+        String dateOfYesterday = dateFormat.format(calendar.getTime());
+        Document tSchedule = pageFetcher.fetch(
+                FetchDataWorker.SCHEDULE_URL, PageFetcher.PAGE_SCHEDULE);
+        log("Got today's schedule document");
+        ScheduleSnapshot ySnapshot = fileManager.readScheduleSnapshot();
+        Document ySchedule = null;
+        if (ySnapshot == null || !ySnapshot.getDate().equals(dateOfYesterday)) {
+            /* The previous run wasn't yesterday, so its snapshot can't
+               be used */
+            ySnapshot = null;
+            ySchedule = pageFetcher.fetch(FetchDataWorker.SCHEDULE_URL +
+                    "?date=" + dateOfYesterday, PageFetcher.PAGE_SCHEDULE);
+            log("Got yesterday's schedule document");
+        }
+        NotificationFetcher notifFetcher =
+                new NotificationFetcher(tSchedule, ySchedule, ySnapshot);
+        TournamentIndex tournamentIndex = isCrawlFollowing ? new TournamentIndex() : null;
+        notifFetcher.setTournamentIndex(tournamentIndex);
+        String notificationText = notifFetcher.getNotificationText();
+        if (tournamentIndex != null) {
+            fileManager.storeTournamentIndex(tournamentIndex);
+        }
+        fileManager.storeNotificationText(notificationText);
+        fileManager.storeScheduleSnapshot(notifFetcher.getTodaySnapshot(dateOfToday));
+        int activeTournaments = notifFetcher.getActiveTournamentCount();
+        new RefreshScheduler(getApplicationContext()).recordActivity(
+                activeTournaments, notifFetcher.isFinalToday());
+        return activeTournaments;
+    }
+
+    /*
+       Fetches the statistics of the given selected players and merges them
+       into the player stats map that is saved in the given FileManager
+       The matches on the players' pages are added to the MatchStore, and the
+       widget shows the new stats
+       The players' pages are found in the rankings tables that the last
+       crawl saved, since the rankings pages are large and change once a
+       week, and are fetched only if no tables were saved
+     */
+    private void fetchSelectedPlayerStats(FileManager fileManager,
+                                          List<String> selectedPlayers)
+            throws IOException {
+        long fetchStartTime = System.currentTimeMillis();
+        RankingsTable mRankings;
+        RankingsTable wRankings;
+        RankingsTable[] savedTables = fileManager.readRankingsTables();
+        if (savedTables != null) {
+            mRankings = savedTables[0];
+            wRankings = savedTables[1];
+        } else {
+            PageFetcher pageFetcher = new PageFetcher();
+            mRankings = new RankingsTable(pageFetcher.fetch(
+                    FetchDataWorker.MEN_RANKINGS_URL, PageFetcher.PAGE_RANKINGS));
+            wRankings = new RankingsTable(pageFetcher.fetch(
+                    FetchDataWorker.WOMEN_RANKINGS_URL, PageFetcher.PAGE_RANKINGS));
+            fileManager.storeRankingsTables(mRankings, wRankings);
+        }
+        PlayerStatsFetcher statsFetcher = new PlayerStatsFetcher(mRankings, wRankings);
+        Map<String, PlayerStats> selectedStats =
+                statsFetcher.getPlayerStatsMap(selectedPlayers);
+        fileManager.mergePlayerStats(selectedStats, fetchStartTime);
+        fileManager.storeWidgetSnapshot(selectedPlayers, selectedStats);
+        StatsWidgetProvider.updateWidgets(getApplicationContext());
+        fileManager.addMatches(statsFetcher.getObservedMatches());
+    }
+
+    /*
+       Writes the given message to the logcat
+     */
+    private void log(String msg) {
+        Log.i(getApplicationContext().getString(R.string.fetching_data_log), msg);
+    }
+
+}
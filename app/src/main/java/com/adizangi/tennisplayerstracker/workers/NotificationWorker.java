@@ -13,7 +13,14 @@ import com.adizangi.tennisplayerstracker.activities.MainActivity;
 import com.adizangi.tennisplayerstracker.utils_data.BackgroundManager;
 import com.adizangi.tennisplayerstracker.utils_data.FileManager;
 import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+import com.adizangi.tennisplayerstracker.utils_data.RefreshScheduler;
+import com.adizangi.tennisplayerstracker.utils_data.SnapshotDiff;
+import com.adizangi.tennisplayerstracker.utils_data.SnapshotStore;
+import com.adizangi.tennisplayerstracker.utils_data.StatsEvent;
 
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,9 +48,11 @@ public class NotificationWorker extends Worker {
     /*
        If a notification should be sent today based on the selections in
        Settings, and if the notification text that was fetched in
-       FetchDataWorker is not empty, sends a notification containing that text
-       If the input data contains BackgroundManager.RESCHEDULE_KEY, schedules
-       the next data refresh
+       FetchNotificationDataWorker is not empty, sends a notification
+       containing that text, followed by the news about the user's selected
+       players since yesterday
+       No notification is sent after an evening refresh, since the morning
+       notification already covered the same day
     */
     @NonNull
     @Override
@@ -53,9 +62,13 @@ public class NotificationWorker extends Worker {
         String contentText = fileManager.readNotificationText();
         List<String> selectedPlayers = fileManager.readSelectedPlayers();
         Map<String, PlayerStats> stats = fileManager.readPlayerStats();
-        if (backgroundManager.isNotificationEnabled() &&
-                !contentText.isEmpty() && !stats.isEmpty()) {
-            contentText = addMatchesToContent(contentText, selectedPlayers, stats);
+        String refreshKind = getInputData().getString(RefreshScheduler.REFRESH_KIND_KEY);
+        boolean isEveningRefresh = RefreshScheduler.KIND_EVENING.equals(refreshKind);
+        if (!isEveningRefresh && backgroundManager.isNotificationEnabled() &&
+                !contentText.isEmpty()) {
+            if (stats != null) {
+                contentText = addEventsToContent(contentText, selectedPlayers, stats);
+            }
             Intent intent = new Intent(context, MainActivity.class);
             PendingIntent pendingIntent = PendingIntent
                     .getActivity(context, 0, intent, 0);
@@ -69,32 +82,59 @@ public class NotificationWorker extends Worker {
                     NotificationManagerCompat.from(context);
             notificationManager.notify(NOTIFICATION_ID, notificationBuilder.build());
         }
-        if (getInputData().getBoolean(BackgroundManager.RESCHEDULE_KEY, false)) {
-            backgroundManager.scheduleDailyUpdates();
-        }
         return Result.success();
     }
 
     /*
-      For each of the user's selected players that has an upcoming match today,
-      adds details about that match to the notification text
+      Adds the news about the user's selected players to the notification
+      text, which are the events between yesterday's snapshot in the
+      SnapshotStore and the current stats
+      Titles, results and ranking changes come first, and the matches that
+      were scheduled come after them
+      Players whose stats didn't change add only their match today, so
+      every match of the selected players today is listed
+      If the snapshot can't be read, only the scheduled matches are added
     */
-    private String addMatchesToContent(String currentContent,
-                                       List<String> selectedPlayers,
-                                       Map<String, PlayerStats> stats) {
-        StringBuilder upcomingMatches = new StringBuilder();
+    private String addEventsToContent(String currentContent,
+                                      List<String> selectedPlayers,
+                                      Map<String, PlayerStats> stats) {
+        Map<String, PlayerStats> previousStats = new HashMap<>();
+        Map<String, PlayerStats> currentStats = new HashMap<>();
+        SnapshotStore snapshotStore = fileManager.getSnapshotStore();
+        int yesterday = SnapshotStore.getEpochDay(Calendar.getInstance()) - 1;
         for (String player : selectedPlayers) {
-            PlayerStats playerStats = stats.get(player);
-            if (playerStats != null && !playerStats.getUpcomingMatch().isEmpty()) {
-                upcomingMatches.append(playerStats.getUpcomingMatch());
-                upcomingMatches.append("\n");
+            PlayerStats playerStats = PlayerStats.find(stats, player);
+            if (playerStats == null) {
+                continue;
+            }
+            currentStats.put(playerStats.getName(), playerStats);
+            try {
+                PlayerStats yesterdayStats =
+                        snapshotStore.getPlayerStats(playerStats.getName(), yesterday);
+                if (yesterdayStats != null) {
+                    previousStats.put(playerStats.getName(), yesterdayStats);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
+        List<StatsEvent> events = new SnapshotDiff(SnapshotDiff.DEFAULT_RANK_THRESHOLD)
+                .diff(previousStats, currentStats);
+        StringBuilder news = new StringBuilder();
+        StringBuilder upcomingMatches = new StringBuilder();
+        for (StatsEvent event : events) {
+            StringBuilder section = StatsEvent.TYPE_MATCH_SCHEDULED.equals(event.getType()) ?
+                    upcomingMatches : news;
+            section.append(event.getText());
+            section.append("\n");
+        }
+        if (news.length() > 0) {
+            news.insert(0, "News-\n");
+        }
         if (upcomingMatches.length() > 0) {
             upcomingMatches.insert(0, "Matches-\n");
-            return currentContent + upcomingMatches.toString();
         }
-        return currentContent;
+        return currentContent + news.toString() + upcomingMatches.toString();
     }
 
 }
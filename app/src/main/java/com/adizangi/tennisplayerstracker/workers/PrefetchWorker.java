@@ -0,0 +1,232 @@
+/*
+   A low priority background task that downloads pages into the PageCache
+   while the device is charging on an unmetered network, so that the next
+   refresh can mostly revalidate the pages instead of downloading them
+   Fetches the rankings, the match schedules with their tournament pages and
+   the pages of all the ranked players, one page at a time so that it takes
+   little of the RateLimiter
+   Yields to a refresh that starts while it is running, and every page is
+   saved as soon as it is fetched, so stopping it loses no pages
+ */
+
+package com.adizangi.tennisplayerstracker.workers;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.adizangi.tennisplayerstracker.R;
+import com.adizangi.tennisplayerstracker.network_calls.ByteBudgetExceededException;
+import com.adizangi.tennisplayerstracker.network_calls.CircuitBreakerOpenException;
+import com.adizangi.tennisplayerstracker.network_calls.PageCache;
+import com.adizangi.tennisplayerstracker.network_calls.PageFetcher;
+import com.adizangi.tennisplayerstracker.network_calls.PlayerPageExtractor;
+import com.adizangi.tennisplayerstracker.network_calls.RankingsTable;
+import com.adizangi.tennisplayerstracker.network_calls.TournamentPageFetcher;
+import com.adizangi.tennisplayerstracker.utils_data.BackgroundManager;
+import com.adizangi.tennisplayerstracker.utils_data.RefreshCoordinator;
+import com.adizangi.tennisplayerstracker.utils_data.RunMetrics;
+import com.adizangi.tennisplayerstracker.utils_data.RunRecorder;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+public class PrefetchWorker extends Worker {
+
+    /* A player's page that was downloaded more recently than this is not
+       fetched again, so a prefetch that was stopped continues where it
+       stopped */
+    private static final long FRESH_PAGE_MILLIS = TimeUnit.HOURS.toMillis(12);
+
+    /* Checking whether a refresh is running queries WorkManager, so it is
+       done once every few pages */
+    private static final int PAGES_BETWEEN_CHECKS = 10;
+
+    private RunRecorder runRecorder;
+    private PageFetcher pageFetcher;
+    private int pagesSinceCheck;
+
+    /*
+       Constructs a PrefetchWorker with the given application context and
+       worker params
+     */
+    public PrefetchWorker(@NonNull Context context,
+                          @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /*
+       Fetches the pages into the PageCache, within the byte budget of the
+       unmetered fetch profile
+       Stops early if a refresh starts, if the work is stopped, or if the
+       website doesn't send validators, since then its pages can't be
+       revalidated
+       Records the durations of the stages and the requests of the run
+       Returns Result.retry() if the ESPN website can't be reached or keeps
+       failing, and Result.success() otherwise, since the next prefetch
+       continues the work anyway
+     */
+    @NonNull
+    @Override
+    public Result doWork() {
+        runRecorder = new RunRecorder(getApplicationContext(),
+                "PrefetchWorker", getRunAttemptCount());
+        BackgroundManager backgroundManager = new BackgroundManager(getApplicationContext());
+        runRecorder.startByteBudget(BackgroundManager.PROFILE_UNMETERED,
+                backgroundManager.getByteBudget(BackgroundManager.PROFILE_UNMETERED));
+        try {
+            log("PrefetchWorker starting work");
+            pageFetcher = new PageFetcher();
+            boolean isDone = prefetchAll();
+            log(isDone ? "PrefetchWorker done" : "PrefetchWorker yielded");
+            runRecorder.finish(isDone ? RunMetrics.RESULT_SUCCESS : RunMetrics.RESULT_DEFERRED);
+            return Result.success();
+        } catch (CircuitBreakerOpenException e) {
+            e.printStackTrace();
+            runRecorder.finish(RunMetrics.RESULT_RETRY);
+            return Result.retry();
+        } catch (ByteBudgetExceededException e) {
+            e.printStackTrace();
+            runRecorder.finish(RunMetrics.RESULT_OVER_BUDGET);
+            return Result.success();
+        } catch (Exception e) {
+            e.printStackTrace();
+            runRecorder.finish(RunMetrics.RESULT_FAILURE);
+            return Result.failure();
+        }
+    }
+
+    /*
+       Fetches the rankings, the tournaments and the players' pages into the
+       PageCache
+       Returns true if all the pages were fetched, and false if the prefetch
+       stopped early
+       May throw IOException
+     */
+    private boolean prefetchAll() throws IOException {
+        PageCache pageCache = PageFetcher.getPageCache();
+        if (pageCache == null || shouldYield()) {
+            return false;
+        }
+        RankingsTable mRankings = new RankingsTable(pageFetcher.fetch(
+                FetchDataWorker.MEN_RANKINGS_URL, PageFetcher.PAGE_RANKINGS));
+        RankingsTable wRankings = new RankingsTable(pageFetcher.fetch(
+                FetchDataWorker.WOMEN_RANKINGS_URL, PageFetcher.PAGE_RANKINGS));
+        runRecorder.endStage("rankings");
+        if (pageCache.get(FetchDataWorker.MEN_RANKINGS_URL) == null) {
+            log("The website sent no validators, so there is nothing to prefetch");
+            return true;
+        }
+        if (!prefetchTournaments()) {
+            return false;
+        }
+        runRecorder.endStage("tournaments");
+        boolean isDone = prefetchPlayerPages(pageCache, mRankings, wRankings);
+        runRecorder.endStage("player pages");
+        return isDone;
+    }
+
+    /*
+       Fetches yesterday's and today's match schedules and the pages of
+       their tournaments into the PageCache
+       Returns true if all the pages were fetched, and false if the prefetch
+       stopped early
+       May throw IOException
+     */
+    private boolean prefetchTournaments() throws IOException {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DATE, -1);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd", Locale.US);
+        String dateOfYesterday = dateFormat.format(calendar.getTime());
+        TournamentPageFetcher tournamentFetcher = new TournamentPageFetcher();
+        List<String> tournamentURLs = new ArrayList<>();
+        tournamentURLs.addAll(tournamentFetcher.getTournamentURLs(pageFetcher.fetch(
+                FetchDataWorker.SCHEDULE_URL + "?date=" + dateOfYesterday,
+                PageFetcher.PAGE_SCHEDULE)));
+        tournamentURLs.addAll(tournamentFetcher.getTournamentURLs(pageFetcher.fetch(
+                FetchDataWorker.SCHEDULE_URL, PageFetcher.PAGE_SCHEDULE)));
+        for (String tournamentURL : tournamentURLs) {
+            if (shouldYieldSoon()) {
+                return false;
+            }
+            pageFetcher.fetch(tournamentURL, PageFetcher.PAGE_TOURNAMENT);
+        }
+        return true;
+    }
+
+    /*
+       Fetches the pages of all the players in the given rankings tables into
+       the given PageCache, in the order of their rankings
+       Pages that were downloaded recently are skipped
+       Returns true if all the pages were fetched, and false if the prefetch
+       stopped early
+       May throw IOException
+     */
+    private boolean prefetchPlayerPages(PageCache pageCache,
+                                        RankingsTable mRankings,
+                                        RankingsTable wRankings) throws IOException {
+        PlayerPageExtractor extractor = new PlayerPageExtractor();
+        int numOfRows = Math.max(mRankings.size(), wRankings.size());
+        for (int index = 0; index < numOfRows; index++) {
+            for (RankingsTable rankings : new RankingsTable[]{mRankings, wRankings}) {
+                if (index >= rankings.size()) {
+                    continue;
+                }
+                String playerURL = rankings.getPlayerURL(index);
+                PageCache.Entry cachedPage =
+                        pageCache.get(PlayerPageExtractor.getCacheKey(playerURL));
+                if (cachedPage != null && System.currentTimeMillis() -
+                        cachedPage.getStoredTime() < FRESH_PAGE_MILLIS) {
+                    continue;
+                }
+                if (shouldYieldSoon()) {
+                    return false;
+                }
+                extractor.fetchSubtrees(playerURL);
+            }
+        }
+        return true;
+    }
+
+    /*
+       Returns true if the prefetch should stop before the next page
+       The work being stopped is checked before every page, and a refresh
+       that started is checked once every PAGES_BETWEEN_CHECKS pages
+     */
+    private boolean shouldYieldSoon() {
+        if (isStopped()) {
+            return true;
+        }
+        pagesSinceCheck++;
+        if (pagesSinceCheck < PAGES_BETWEEN_CHECKS) {
+            return false;
+        }
+        return shouldYield();
+    }
+
+    /*
+       Returns true if the work was stopped or a refresh is running, in which
+       case the prefetch should stop so that the refresh gets the network
+     */
+    private boolean shouldYield() {
+        pagesSinceCheck = 0;
+        return isStopped() ||
+                new RefreshCoordinator(getApplicationContext()).isRefreshRunning();
+    }
+
+    /*
+       Writes the given message to the logcat
+     */
+    private void log(String msg) {
+        Log.i(getApplicationContext().getString(R.string.fetching_data_log), msg);
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+   Test for CircuitBreaker
+   Checks that the breaker opens after failures in a row, lets one probe
+   through after the cool down period, and closes when the probe succeeds
+ */
+
+package com.adizangi.tennisplayerstracker;
+
+import com.adizangi.tennisplayerstracker.network_calls.CircuitBreaker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private static final String HOST = "www.espn.com";
+    private static final long OPEN_MILLIS = 50;
+
+    @Test
+    public void testOpensAfterFailures() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(3, OPEN_MILLIS);
+        circuitBreaker.recordFailure(HOST);
+        circuitBreaker.recordFailure(HOST);
+        circuitBreaker.recordSuccess(HOST);
+        circuitBreaker.recordFailure(HOST);
+        circuitBreaker.recordFailure(HOST);
+        assertTrue(circuitBreaker.allowRequest(HOST));
+        circuitBreaker.recordFailure(HOST);
+        assertTrue(circuitBreaker.isOpen(HOST));
+        assertFalse(circuitBreaker.allowRequest(HOST));
+        assertTrue(circuitBreaker.allowRequest("other.host"));
+    }
+
+    @Test
+    public void testProbe() throws InterruptedException {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(3, OPEN_MILLIS);
+        circuitBreaker.trip(HOST);
+        assertFalse(circuitBreaker.allowRequest(HOST));
+        Thread.sleep(OPEN_MILLIS + 10);
+        assertTrue(circuitBreaker.allowRequest(HOST));
+        assertFalse(circuitBreaker.allowRequest(HOST));
+        circuitBreaker.recordFailure(HOST);
+        assertFalse(circuitBreaker.allowRequest(HOST));
+        Thread.sleep(OPEN_MILLIS + 10);
+        assertTrue(circuitBreaker.allowRequest(HOST));
+        circuitBreaker.recordSuccess(HOST);
+        assertFalse(circuitBreaker.isOpen(HOST));
+        assertTrue(circuitBreaker.allowRequest(HOST));
+        assertTrue(circuitBreaker.allowRequest(HOST));
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+   Test for ImageCache
+   Checks that images are read back as they were saved, that a removed
+   image isn't found, and that the images that were used least recently are
+   deleted when the cache is above its limit
+ */
+
+package com.adizangi.tennisplayerstracker;
+
+import com.adizangi.tennisplayerstracker.network_calls.ImageCache;
+import com.adizangi.tennisplayerstracker.network_calls.PageCache;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ImageCacheTest {
+
+    private static final String URL_1 = "https://a.espncdn.com/i/headshots/tennis/players/full/1.png";
+    private static final String URL_2 = "https://a.espncdn.com/i/headshots/tennis/players/full/2.png";
+    private static final String URL_3 = "https://a.espncdn.com/i/headshots/tennis/players/full/3.png";
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        File directory = Files.createTempDirectory("images").toFile();
+        ImageCache imageCache = new ImageCache(directory, 1024 * 1024);
+        byte[] data = {(byte) 0x89, 'P', 'N', 'G', 0, 1, 2, 3};
+        imageCache.put(URL_1, data);
+        assertArrayEquals(data, imageCache.get(URL_1));
+        assertNull(imageCache.get(URL_2));
+        /* A new ImageCache on the same directory finds the saved image */
+        assertArrayEquals(data, new ImageCache(directory, 1024 * 1024).get(URL_1));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        File directory = Files.createTempDirectory("images").toFile();
+        ImageCache imageCache = new ImageCache(directory, 1024 * 1024);
+        imageCache.put(URL_1, new byte[] {1, 2, 3});
+        imageCache.remove(URL_1);
+        assertNull(imageCache.get(URL_1));
+        /* Removing an image that isn't cached does nothing */
+        imageCache.remove(URL_2);
+    }
+
+    @Test
+    public void testTrim() throws Exception {
+        File directory = Files.createTempDirectory("images").toFile();
+        byte[] data = new byte[40 * 1024];
+        ImageCache imageCache = new ImageCache(directory, 100 * 1024);
+        imageCache.put(URL_1, data);
+        new File(directory, PageCache.getKeyHash(URL_1) + ".img")
+                .setLastModified(System.currentTimeMillis() - 10000);
+        imageCache.put(URL_2, data);
+        new File(directory, PageCache.getKeyHash(URL_2) + ".img")
+                .setLastModified(System.currentTimeMillis() - 20000);
+        /* Using the first image makes the second one the least recently used */
+        assertNotNull(imageCache.get(URL_1));
+        imageCache.put(URL_3, data);
+        assertNotNull(imageCache.get(URL_1));
+        assertNull(imageCache.get(URL_2));
+        assertNotNull(imageCache.get(URL_3));
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+   Test for MatchStore
+   Checks head to head records in both orders, that a match that is seen
+   again is kept once, and that the matches are kept in the log
+ */
+
+package com.adizangi.tennisplayerstracker;
+
+import com.adizangi.tennisplayerstracker.utils_data.MatchRecord;
+import com.adizangi.tennisplayerstracker.utils_data.MatchStore;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class MatchStoreTest {
+
+    @Test
+    public void testHeadToHead() throws Exception {
+        System.out.println("---------------- Test for MatchStore ----------------");
+        MatchStore store = MatchStore.open(Files.createTempDirectory("matches").toFile());
+        int added = store.addMatches(Arrays.asList(
+                new MatchRecord(100, "Australian Open", "Final",
+                        "Rafael Nadal", "Roger Federer", "6-4 6-4"),
+                /* The same match, seen from the other player's page */
+                new MatchRecord(100, "Australian Open", "Final",
+                        "Rafael Nadal (1)", "Roger Federer", "6-4 6-4"),
+                new MatchRecord(200, "Wimbledon", "Semifinal",
+                        "Roger Federer", "Rafael Nadal", "7-6 6-3"),
+                new MatchRecord(210, "US Open", "Round 1",
+                        "Rafael Nadal", "Novak Djokovic", "6-1 6-1")));
+        assertEquals(3, added);
+        /* The same match on the next day */
+        assertEquals(0, store.addMatches(Collections.singletonList(
+                new MatchRecord(101, "Australian Open", "Final",
+                        "Rafael Nadal", "Roger Federer", "6-4 6-4"))));
+        /* The same round of the tournament in the next year */
+        assertEquals(1, store.addMatches(Collections.singletonList(
+                new MatchRecord(465, "Australian Open", "Final",
+                        "Rafael Nadal", "Roger Federer", "6-2 6-2"))));
+        MatchStore.HeadToHead headToHead = store.getHeadToHead("Rafael Nadal", "Roger Federer");
+        assertEquals(2, headToHead.getWins());
+        assertEquals(1, headToHead.getLosses());
+        System.out.println(headToHead.getSummary());
+        assertEquals("Head to head vs Roger Federer: 2-1", headToHead.getSummary());
+        MatchStore.HeadToHead reversed = store.getHeadToHead("Roger Federer", "Rafael Nadal");
+        assertEquals(1, reversed.getWins());
+        assertEquals(2, reversed.getLosses());
+        assertEquals(0, store.getMatches("Roger Federer", "Novak Djokovic").size());
+        assertEquals(4, store.size());
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        File directory = Files.createTempDirectory("matches").toFile();
+        MatchStore.open(directory).addMatches(Collections.singletonList(
+                new MatchRecord(100, "Australian Open", "Final",
+                        "Rafael Nadal", "Roger Federer", "6-4 6-4")));
+        File copy = Files.createTempDirectory("matches").toFile();
+        Files.copy(new File(directory, "matches.log").toPath(),
+                new File(copy, "matches.log").toPath());
+        MatchStore reopened = MatchStore.open(copy);
+        assertEquals(1, reopened.size());
+        assertEquals("6-4 6-4", reopened.getMatches("Roger Federer", "Rafael Nadal")
+                .get(0).getScore());
+    }
+
+}
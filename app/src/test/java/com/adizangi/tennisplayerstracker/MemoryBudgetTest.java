@@ -0,0 +1,292 @@
+/*
+   Test for the memory that a crawl retains
+   Replays a crawl with the same stages as FetchDataWorker.fetchAllData():
+   the rankings pages are fetched into RankingsTables, the schedules and
+   tournament pages into a TournamentIndex, and the player pages go through
+   the PlayerPagePipeline of PlayerStatsFetcher
+   The pages are fixtures about as large as the ESPN pages, which a local
+   HTTP server serves, so the stages run with PageFetcher as they do in a
+   refresh
+   Measures the heap that is retained after each stage, and while the
+   pipeline is running, and checks that the peak stays within a fixed
+   budget
+   Prints the peak retained heap
+ */
+
+package com.adizangi.tennisplayerstracker;
+
+import com.adizangi.tennisplayerstracker.network_calls.PageFetcher;
+import com.adizangi.tennisplayerstracker.network_calls.PlayerStatsFetcher;
+import com.adizangi.tennisplayerstracker.network_calls.RankingsTable;
+import com.adizangi.tennisplayerstracker.network_calls.TournamentIndex;
+import com.adizangi.tennisplayerstracker.network_calls.TournamentPageFetcher;
+import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryBudgetTest {
+
+    /* A small part of the heap that Android gives an app on a 2 GB device */
+    private static final long RETAINED_HEAP_BUDGET = 16 * 1024 * 1024;
+
+    private static final int NUM_OF_PLAYERS = 100;
+    private static final int RANKING_DEPTH = 30;
+    private static final int NUM_OF_TOURNAMENTS = 8;
+    private static final int MATCHES_PER_TOURNAMENT = 16;
+    private static final int SCRIPT_SIZE = 300 * 1024;
+
+    /* The heap is measured while the pipeline runs, after every this many
+       player pages that were served */
+    private static final int PAGES_BETWEEN_MEASUREMENTS = 10;
+
+    private long baseline;
+    private long peakRetained;
+    private final AtomicInteger servedPlayerPages = new AtomicInteger();
+
+    @Test
+    public void testRetainedHeapWithinBudget() throws IOException {
+        System.out.println("---------------- Test for Retained Heap ----------------");
+        System.out.println();
+        HttpServer server = startServer();
+        String host = server.getAddress().getAddress().getHostAddress();
+        String baseURL = "http://" + host + ":" + server.getAddress().getPort();
+        /* The limits that a refresh reaches after a few fast responses, so
+           the test doesn't wait for them to grow */
+        PageFetcher.getRateLimiter().restoreState(host + " 8 10");
+        try {
+            baseline = getRetainedHeap();
+            PageFetcher pageFetcher = new PageFetcher();
+            RankingsTable mRankings = new RankingsTable(
+                    pageFetcher.fetch(baseURL + "/rankings/atp", PageFetcher.PAGE_RANKINGS));
+            RankingsTable wRankings = new RankingsTable(
+                    pageFetcher.fetch(baseURL + "/rankings/wta", PageFetcher.PAGE_RANKINGS));
+            measure();
+            TournamentPageFetcher tournamentFetcher = new TournamentPageFetcher();
+            List<String> yesterdayURLs = tournamentFetcher.getTournamentURLs(
+                    pageFetcher.fetch(baseURL + "/schedule?date=yesterday",
+                            PageFetcher.PAGE_SCHEDULE));
+            List<String> todayURLs = tournamentFetcher.getTournamentURLs(
+                    pageFetcher.fetch(baseURL + "/schedule", PageFetcher.PAGE_SCHEDULE));
+            TournamentIndex tournamentIndex = new TournamentIndex();
+            addTournamentPages(tournamentIndex, tournamentFetcher, yesterdayURLs, false);
+            addTournamentPages(tournamentIndex, tournamentFetcher, todayURLs, true);
+            measure();
+            PlayerStatsFetcher statsFetcher = new PlayerStatsFetcher(mRankings, wRankings,
+                    tournamentIndex, new HashMap<String, PlayerStats>());
+            Map<String, PlayerStats> stats = statsFetcher.getPlayerStatsMap(
+                    RANKING_DEPTH, new ArrayList<String>());
+            measure();
+            assertEquals(NUM_OF_PLAYERS, wRankings.size());
+            assertEquals(NUM_OF_TOURNAMENTS, todayURLs.size());
+            assertTrue(tournamentIndex.contains(baseURL + "/player/atp/0"));
+            assertEquals(RANKING_DEPTH * 2, stats.size());
+            assertEquals(RANKING_DEPTH * 2, servedPlayerPages.get());
+            PlayerStats playerStats = stats.get(mRankings.getPlayerKey(0));
+            assertEquals(mRankings.getName(0), playerStats.getName());
+            assertEquals("out", playerStats.getTournamentStanding());
+        } finally {
+            server.stop(0);
+        }
+        System.out.println("Peak retained heap (MB): " +
+                (peakRetained / (1024.0 * 1024.0)));
+        System.out.println();
+        assertTrue("Retained heap is over the budget",
+                peakRetained < RETAINED_HEAP_BUDGET);
+    }
+
+    /*
+       Fetches the pages of the tournaments with the given URLs with the
+       given TournamentPageFetcher and adds them to the given index, the way
+       FetchDataWorker does
+       The given boolean tells whether the pages are of today's matches
+     */
+    private void addTournamentPages(TournamentIndex tournamentIndex,
+                                    TournamentPageFetcher tournamentFetcher,
+                                    List<String> tournamentURLs,
+                                    boolean isToday) throws IOException {
+        Map<String, Document> tournamentPages =
+                tournamentFetcher.getTournamentPages(tournamentURLs);
+        for (String tournamentURL : tournamentURLs) {
+            tournamentIndex.addTournamentPage(tournamentPages.get(tournamentURL), isToday);
+        }
+    }
+
+    /*
+       Starts an HTTP server on the loopback address that serves the fixture
+       pages, and returns it
+       Measures the heap after every PAGES_BETWEEN_MEASUREMENTS player pages
+     */
+    private HttpServer startServer() throws IOException {
+        HttpServer server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                sendPage(exchange, path);
+                if (path.startsWith("/player/") && servedPlayerPages.incrementAndGet() %
+                        PAGES_BETWEEN_MEASUREMENTS == 0) {
+                    measure();
+                }
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /*
+       Sends the fixture page with the given path as the response of the
+       given exchange
+     */
+    private void sendPage(HttpExchange exchange, String path) throws IOException {
+        byte[] body = createPage(path).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /*
+       Returns the fixture page with the given path
+     */
+    private String createPage(String path) {
+        if (path.startsWith("/rankings/")) {
+            return createRankingsPage(path.substring("/rankings/".length()));
+        } else if (path.equals("/schedule")) {
+            return createSchedulePage();
+        } else if (path.startsWith("/tournament/")) {
+            return createTournamentPage(
+                    Integer.parseInt(path.substring("/tournament/".length())));
+        }
+        return createPlayerPage(path.substring(path.lastIndexOf('/') + 1));
+    }
+
+    /*
+       Updates the peak with the heap that is retained now
+     */
+    private synchronized void measure() {
+        peakRetained = Math.max(peakRetained, getRetainedHeap() - baseline);
+    }
+
+    /*
+       Returns the number of bytes in the heap that are still in use after
+       garbage collection
+     */
+    private long getRetainedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /*
+       Returns a script element of SCRIPT_SIZE characters, like the scripts
+       that take up most of the ESPN pages
+     */
+    private String createScript() {
+        StringBuilder script = new StringBuilder("<script>var data = '");
+        while (script.length() < SCRIPT_SIZE) {
+            script.append("<div class=\"ad\">navigation</div>");
+        }
+        return script.append("';</script>").toString();
+    }
+
+    /*
+       Returns a rankings page of NUM_OF_PLAYERS players of the given tour
+     */
+    private String createRankingsPage(String tour) {
+        StringBuilder html = new StringBuilder(createScript());
+        html.append("<table><tr><th>RK</th><th>Name</th></tr>");
+        for (int player = 0; player < NUM_OF_PLAYERS; player++) {
+            html.append("<tr><td>").append(player + 1)
+                    .append("</td><td><a href=\"/player/").append(tour).append("/")
+                    .append(player).append("\">Player ").append(tour).append(" ")
+                    .append(player).append("</a></td></tr>");
+        }
+        html.append("</table>");
+        return html.toString();
+    }
+
+    /*
+       Returns a match schedule with NUM_OF_TOURNAMENTS tournaments
+       The schedules of yesterday and today have the same tournaments
+     */
+    private String createSchedulePage() {
+        StringBuilder html = new StringBuilder(createScript());
+        for (int tournament = 0; tournament < NUM_OF_TOURNAMENTS; tournament++) {
+            html.append("<div class=\"scoreHeadline\"><a href=\"/tournament/")
+                    .append(tournament).append("\">Tournament</a></div>");
+        }
+        return html.toString();
+    }
+
+    /*
+       Returns the page of the given tournament, with matches between the
+       men players
+     */
+    private String createTournamentPage(int tournament) {
+        StringBuilder html = new StringBuilder("<title>Open ").append(tournament)
+                .append(" Daily Match Schedule - ESPN</title>").append(createScript());
+        for (int match = 0; match < MATCHES_PER_TOURNAMENT; match++) {
+            int firstPlayer = (tournament * MATCHES_PER_TOURNAMENT + match * 2) %
+                    NUM_OF_PLAYERS;
+            html.append("<div class=\"matchCourt\">Men's Singles - Round 1: Court 1</div>")
+                    .append("<div class=\"matchTitle\">Match: 11:00 AM ET - Court</div>")
+                    .append("<table><tr><th>Players</th></tr>")
+                    .append("<tr><td><div class=\"arrowWrapper\"></div><a href=\"/player/atp/")
+                    .append(firstPlayer).append("\">A</a></td></tr>")
+                    .append("<tr><td><a href=\"/player/atp/").append(firstPlayer + 1)
+                    .append("\">B</a></td></tr></table>")
+                    .append("<table><tr><th>Score</th></tr><tr><td>6-4 6-4</td></tr>")
+                    .append("<tr><td>4-6 4-6</td></tr></table>");
+        }
+        return html.toString();
+    }
+
+    /*
+       Returns the page of the player with the given ID, who won the first
+       round of the current tournament and lost the second
+     */
+    private String createPlayerPage(String id) {
+        return "<html><head>" + createScript() + "</head><body>" +
+                "<nav>" + createScript() + "</nav>" +
+                "<div class=\"main-headshot\"><img src=\"/headshots/" + id + ".png\"></div>" +
+                "<h1>Player " + id + "</h1>" +
+                "<ul class=\"general-info\"><li><img src=\"/flags/" + id + ".png\"></li></ul>" +
+                "<div class=\"player-stats\"><p>2020 Stats</p><table><tr><td>Titles</td>" +
+                "</tr><tr><td>2</td></tr></table></div>" +
+                "<div id=\"my-players-table\"><h4>CURRENT TOURNAMENT</h4>" +
+                "<a href=\"/tournament/0\">Open</a><table></table><table>" +
+                "<tr><td>Round</td></tr><tr><td>Men's Singles</td></tr>" +
+                "<tr><td>Round 1</td><td>Opponent A</td><td>W</td><td>6-4 6-4</td></tr>" +
+                "<tr><td>Round 2</td><td>Opponent B</td><td>L</td><td>4-6 4-6</td></tr>" +
+                "</table></div>" +
+                createScript() + "</body></html>";
+    }
+
+}
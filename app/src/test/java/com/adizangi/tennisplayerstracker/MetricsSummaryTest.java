@@ -0,0 +1,83 @@
+/*
+   Test for MetricsSummary
+   Checks the percentiles and the latency histogram on known values, and
+   prints the report of a few generated runs
+ */
+
+package com.adizangi.tennisplayerstracker;
+
+import com.adizangi.tennisplayerstracker.utils_data.MetricsSummary;
+import com.adizangi.tennisplayerstracker.utils_data.RequestMetric;
+import com.adizangi.tennisplayerstracker.utils_data.RunMetrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsSummaryTest {
+
+    @Test
+    public void testPercentiles() {
+        List<Long> values = new ArrayList<>();
+        for (long value = 100; value >= 1; value--) {
+            values.add(value);
+        }
+        assertEquals(50, MetricsSummary.getPercentile(values, 50));
+        assertEquals(95, MetricsSummary.getPercentile(values, 95));
+        assertEquals(7, MetricsSummary.getPercentile(Arrays.asList(7L), 95));
+        assertEquals(RequestMetric.UNKNOWN,
+                MetricsSummary.getPercentile(new ArrayList<Long>(), 50));
+    }
+
+    @Test
+    public void testLatencyHistogram() {
+        int[] histogram = MetricsSummary.getLatencyHistogram(
+                Arrays.asList(10L, 249L, 250L, 700L, 1999L, 2000L, 9000L));
+        assertArrayEquals(new int[]{2, 1, 1, 1, 2}, histogram);
+    }
+
+    @Test
+    public void testReport() {
+        System.out.println("---------------- Test for Metrics Summary ----------------");
+        System.out.println();
+        List<RunMetrics> runs = new ArrayList<>();
+        for (int run = 0; run < 5; run++) {
+            Map<String, Long> stageMillis = new LinkedHashMap<>();
+            stageMillis.put("rankings", 800L + run * 100);
+            stageMillis.put("player stats", 4000L + run * 500);
+            List<RequestMetric> requests = new ArrayList<>();
+            for (int request = 0; request < 20; request++) {
+                /* The first request failed and the second one retried it */
+                RequestMetric metric = new RequestMetric("http://www.espn.com/player/" +
+                        Math.max(request - 1, 0), "player", request == 1 ? 1 : 0,
+                        200 + request * 60, request == 0 ? 503 : 200);
+                metric.setBytes(300 * 1024);
+                metric.setParseMillis(5 + request);
+                requests.add(metric);
+            }
+            RunMetrics runMetrics = new RunMetrics("FetchDataWorker", run, 5000 + run * 600,
+                    0, run == 4 ? RunMetrics.RESULT_RETRY : RunMetrics.RESULT_SUCCESS,
+                    stageMillis, requests);
+            runMetrics.setFetchProfile("unmetered");
+            runMetrics.setByteBudget(100 * 1024 * 1024);
+            runMetrics.setBytesUsed(6000 * 1024);
+            runs.add(runMetrics);
+        }
+        String report = new MetricsSummary(runs).getReport();
+        System.out.println(report);
+        System.out.println();
+        assertTrue(report.contains("runs: 5, retries: 1, failures: 0"));
+        assertTrue(report.contains("requests: 100, errors: 5, not modified: 0, retries: 5"));
+        assertTrue(report.contains("size: p50 300 KB, p95 300 KB"));
+        assertTrue(report.contains("unmetered data: p50 6000 KB, p95 6000 KB"));
+    }
+
+}
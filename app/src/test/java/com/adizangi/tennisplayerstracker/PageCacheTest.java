@@ -0,0 +1,77 @@
+/*
+   Test for PageCache
+   Checks that pages are saved with their validators, that pages without
+   validators aren't saved, that a revalidated page is fresh again, and that
+   the pages that were used least recently are deleted when the cache is
+   above its limit
+ */
+
+package com.adizangi.tennisplayerstracker;
+
+import com.adizangi.tennisplayerstracker.network_calls.PageCache;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PageCacheTest {
+
+    private static final String URL_1 = "http://www.espn.com/tennis/player/_/id/1";
+    private static final String URL_2 = "http://www.espn.com/tennis/player/_/id/2";
+    private static final String URL_3 = "http://www.espn.com/tennis/player/_/id/3";
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        File directory = Files.createTempDirectory("pages").toFile();
+        PageCache pageCache = new PageCache(directory, 1024 * 1024);
+        byte[] content = "<h1>Player</h1>".getBytes("UTF-8");
+        pageCache.put(URL_1, "\"abc\"", null, "UTF-8", content);
+        pageCache.put(URL_2, null, null, "UTF-8", content);
+        PageCache.Entry entry = pageCache.get(URL_1);
+        assertNotNull(entry);
+        assertEquals("\"abc\"", entry.getETag());
+        assertNull(entry.getLastModified());
+        assertArrayEquals(content, entry.getContent());
+        assertNull(pageCache.get(URL_2));
+        assertNull(pageCache.get(URL_3));
+    }
+
+    @Test
+    public void testMarkRevalidated() throws Exception {
+        File directory = Files.createTempDirectory("pages").toFile();
+        PageCache pageCache = new PageCache(directory, 1024 * 1024);
+        pageCache.put(URL_1, "\"abc\"", null, "UTF-8", new byte[] {1, 2, 3});
+        PageCache.Entry entry = pageCache.get(URL_1);
+        long storedTime = entry.getStoredTime();
+        Thread.sleep(10);
+        pageCache.markRevalidated(URL_1, entry);
+        assertTrue(pageCache.get(URL_1).getStoredTime() > storedTime);
+    }
+
+    @Test
+    public void testTrim() throws Exception {
+        File directory = Files.createTempDirectory("pages").toFile();
+        byte[] content = new byte[40 * 1024];
+        PageCache pageCache = new PageCache(directory, 100 * 1024);
+        pageCache.put(URL_1, "\"1\"", null, null, content);
+        new File(directory, PageCache.getKeyHash(URL_1) + ".page")
+                .setLastModified(System.currentTimeMillis() - 10000);
+        pageCache.put(URL_2, "\"2\"", null, null, content);
+        new File(directory, PageCache.getKeyHash(URL_2) + ".page")
+                .setLastModified(System.currentTimeMillis() - 20000);
+        /* Using the first page makes the second one the least recently used */
+        assertNotNull(pageCache.get(URL_1));
+        pageCache.put(URL_3, "\"3\"", null, null, content);
+        assertNotNull(pageCache.get(URL_1));
+        assertNull(pageCache.get(URL_2));
+        assertNotNull(pageCache.get(URL_3));
+    }
+
+}
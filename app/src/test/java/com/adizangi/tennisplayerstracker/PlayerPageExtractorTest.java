@@ -0,0 +1,220 @@
+/*
+   Test for PlayerPageExtractor
+   Extracts the subtrees from a fixture player's page whose comments,
+   scripts and styles contain the markup of the subtrees, whose subtrees
+   have nested tags of the same name as their roots, and whose attributes
+   are quoted in every way
+   Checks that reading stops after the last subtree, and that
+   PlayerStatsFetcher takes the same stats from the extracted subtrees as
+   from the full page
+ */
+
+package com.adizangi.tennisplayerstracker;
+
+import com.adizangi.tennisplayerstracker.network_calls.PlayerPageExtractor;
+import com.adizangi.tennisplayerstracker.network_calls.PlayerStatsFetcher;
+import com.adizangi.tennisplayerstracker.network_calls.RankingsTable;
+import com.adizangi.tennisplayerstracker.utils_data.MatchRecord;
+import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PlayerPageExtractorTest {
+
+    private static final String PLAYER_URL = "https://www.espn.com/tennis/player/_/id/1";
+
+    /* The part of the page that comes after the last subtree */
+    private static final String PAGE_END =
+            "<div class=\"player-stats\"><p>2019 Stats</p></div>" +
+            "<footer><h1>Footer</h1></footer></body></html>";
+
+    @Test
+    public void testSkipsCommentsAndRawText() throws IOException {
+        System.out.println("---------------- Test for PlayerPageExtractor ----------------");
+        String subtreesHtml = new PlayerPageExtractor()
+                .readSubtrees(new StringReader(createPlayerPage()));
+        System.out.println(subtreesHtml);
+        assertTrue(subtreesHtml.startsWith("<h1 class=\"name\">Player A</h1>"));
+        assertFalse(subtreesHtml.contains("Commented"));
+        assertFalse(subtreesHtml.contains("Scripted"));
+        assertFalse(subtreesHtml.contains("Styled"));
+        assertFalse(subtreesHtml.contains("Footer"));
+        assertFalse(subtreesHtml.contains("2019 Stats"));
+        assertFalse(subtreesHtml.contains("<script"));
+        assertFalse(subtreesHtml.contains("<!--"));
+    }
+
+    @Test
+    public void testNestedTagsAndAttributes() throws IOException {
+        Document subtrees = new PlayerPageExtractor().parseSubtrees(new PlayerPageExtractor()
+                .readSubtrees(new StringReader(createPlayerPage())), PLAYER_URL);
+        assertEquals(1, subtrees.select("h1").size());
+        /* Single quotes, and a nested div before the stats table */
+        assertEquals("1", subtrees.select("div.player-stats table tr").get(1).text());
+        assertEquals(1, subtrees.select("div.player-stats").size());
+        /* No quotes, and nested divs around the tournament tables */
+        assertEquals(2, subtrees.select("#my-players-table table").size());
+        assertEquals("Open", subtrees.select("#my-players-table a").text());
+        /* Double quotes, with a '>' inside the quotes of another attribute */
+        assertEquals("https://www.espn.com/headshots/1.png",
+                subtrees.select("div.main-headshot img").attr("abs:src"));
+        assertEquals("https://www.espn.com/flags/usa.png",
+                subtrees.select("ul.general-info img").attr("abs:src"));
+        assertEquals(0, subtrees.select("nav").size());
+    }
+
+    @Test
+    public void testStopsAfterLastSubtree() throws IOException {
+        String page = createPlayerPage();
+        CountingReader pageReader = new CountingReader(page);
+        new PlayerPageExtractor().readSubtrees(pageReader);
+        /* The character after the end tag of the last subtree is read */
+        assertEquals(page.length() - PAGE_END.length() + 1, pageReader.getCount());
+        assertTrue(pageReader.isClosed());
+    }
+
+    @Test
+    public void testSameStatsAsFullPage() throws IOException {
+        String page = createPlayerPage();
+        PlayerStatsFetcher fullPageFetcher = createStatsFetcher();
+        PlayerStats fullPageStats = fullPageFetcher.getPlayerStats(
+                Jsoup.parse(page, PLAYER_URL), "Player A", "1");
+        PlayerPageExtractor extractor = new PlayerPageExtractor();
+        PlayerStatsFetcher subtreesFetcher = createStatsFetcher();
+        PlayerStats subtreesStats = subtreesFetcher.getPlayerStats(extractor.parseSubtrees(
+                extractor.readSubtrees(new StringReader(page)), PLAYER_URL), "Player A", "1");
+        System.out.println(subtreesStats.getStatsSummary());
+        assertEquals("advanced to Final", subtreesStats.getTournamentStanding());
+        assertEquals(fullPageStats.getName(), subtreesStats.getName());
+        assertEquals(fullPageStats.getRanking(), subtreesStats.getRanking());
+        assertEquals(fullPageStats.getTitles(), subtreesStats.getTitles());
+        assertEquals(fullPageStats.getTournamentStanding(),
+                subtreesStats.getTournamentStanding());
+        assertEquals(fullPageStats.getCurrentTournament(),
+                subtreesStats.getCurrentTournament());
+        assertEquals(fullPageStats.getLatestMatchResult(),
+                subtreesStats.getLatestMatchResult());
+        assertEquals(fullPageStats.getUpcomingMatch(), subtreesStats.getUpcomingMatch());
+        assertEquals(fullPageStats.getHeadshotURL(), subtreesStats.getHeadshotURL());
+        assertEquals(fullPageStats.getFlagURL(), subtreesStats.getFlagURL());
+        List<MatchRecord> fullPageMatches = fullPageFetcher.getObservedMatches();
+        List<MatchRecord> subtreesMatches = subtreesFetcher.getObservedMatches();
+        assertEquals(2, subtreesMatches.size());
+        assertEquals(fullPageMatches.size(), subtreesMatches.size());
+        for (int match = 0; match < fullPageMatches.size(); match++) {
+            assertEquals(fullPageMatches.get(match).getMatchId(),
+                    subtreesMatches.get(match).getMatchId());
+        }
+    }
+
+    /*
+       Returns a PlayerStatsFetcher with empty rankings tables, which is
+       used only to read players' pages
+     */
+    private PlayerStatsFetcher createStatsFetcher() {
+        return new PlayerStatsFetcher(new RankingsTable(new Document(PLAYER_URL)),
+                new RankingsTable(new Document(PLAYER_URL)));
+    }
+
+    /*
+       Returns the page of a player whose current tournament is the Open,
+       in which the player has a final today
+       Before each subtree there is a comment, script or style that contains
+       the markup of a subtree, and the subtrees are followed by PAGE_END
+     */
+    private String createPlayerPage() {
+        String today = new SimpleDateFormat("MMMMM d", Locale.US).format(new Date());
+        StringBuilder page = new StringBuilder();
+        page.append("<!DOCTYPE html><html><head><title>Player A - ESPN</title>")
+                .append("<style>h1:after { content: \"<h1>Styled</h1>\"; }</style>")
+                .append("<script>var stats = '<div class=\"player-stats\">Scripted</div>';")
+                .append(" if (a < b && b > c) { document.write(\"</scr\" + \"ipt>\"); }")
+                .append("</script></head><body>")
+                .append("<nav><div class=\"menu\"><div>Menu</div></div></nav>")
+                .append("<!-- <h1>Commented</h1> -- <div id=\"my-players-table\"> --->")
+                .append("<h1 class=\"name\">Player A</h1>")
+                .append("<div class='player-stats wide'><div class='header'><div>")
+                .append("<p>2020 Stats</p></div></div><table><tr><td>Titles</td></tr>")
+                .append("<tr><td>1</td></tr></table></div>")
+                .append("<SCRIPT type=\"text/javascript\">var headshot = ")
+                .append("'<div class=\"main-headshot\"><img src=\"/Scripted.png\"></div>';")
+                .append("</SCRIPT>")
+                .append("<div id=my-players-table><div><div><h4>CURRENT TOURNAMENT</h4>")
+                .append("<a href=\"/tennis/tournament\">Open</a></div></div><table></table>")
+                .append("<div><table><tr><td>Round</td></tr><tr><td>Men's Singles</td></tr>")
+                .append("<tr><td>Quarterfinal</td><td>Player C</td><td>W</td>")
+                .append("<td>7-6 6-3</td></tr>")
+                .append("<tr><td>Semifinal</td><td>Player B</td><td>W</td>")
+                .append("<td>6-4 6-4</td></tr>")
+                .append("<tr><td>Final</td><td>Player D</td><td>-</td><td>")
+                .append(today).append(" 2:00 PM ET</td></tr></table></div></div>")
+                .append("<div title=\"a > b\" class=\"main-headshot\">")
+                .append("<img src=\"/headshots/1.png\"/></div>")
+                .append("<ul class=general-info><li><img src='/flags/usa.png'>")
+                .append("<ul><li>Nested</li></ul></li></ul>")
+                .append(PAGE_END);
+        return page.toString();
+    }
+
+    /*
+       A Reader of a string that counts the characters that were read from
+       it, and remembers whether it was closed
+     */
+    private static class CountingReader extends Reader {
+
+        private final Reader reader;
+        private int count;
+        private boolean isClosed;
+
+        /*
+           Constructs a CountingReader of the given string
+         */
+        CountingReader(String text) {
+            reader = new StringReader(text);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int numOfChars = reader.read(buffer, offset, length);
+            if (numOfChars > 0) {
+                count += numOfChars;
+            }
+            return numOfChars;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+            isClosed = true;
+        }
+
+        /*
+           Returns the number of characters that were read so far
+         */
+        int getCount() {
+            return count;
+        }
+
+        /*
+           Returns true if the Reader was closed
+         */
+        boolean isClosed() {
+            return isClosed;
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+   Test for PlayerStatsFetcher
+   Checks which players of the rankings tables are in the player stats map,
+   with the players' pages left out, since players who are not playing in
+   the previous refresh and in the tournament index keep their stats
+ */
+
+package com.adizangi.tennisplayerstracker;
+
+import com.adizangi.tennisplayerstracker.network_calls.PlayerStatsFetcher;
+import com.adizangi.tennisplayerstracker.network_calls.RankingsTable;
+import com.adizangi.tennisplayerstracker.network_calls.TournamentIndex;
+import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+
+import org.jsoup.Jsoup;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlayerStatsFetcherTest {
+
+    private static final int NUM_OF_PLAYERS = 6;
+
+    @Test
+    public void testSelectedPlayersMatchedByName() throws IOException {
+        System.out.println("---------------- Test for PlayerStatsFetcher ----------------");
+        RankingsTable mRankings = createRankingsTable("atp");
+        RankingsTable wRankings = createRankingsTable("wta");
+        PlayerStatsFetcher statsFetcher = new PlayerStatsFetcher(mRankings, wRankings,
+                new TournamentIndex(), createPreviousStats(mRankings, wRankings));
+        /* The selected players' rankings changed since they were selected */
+        Map<String, PlayerStats> stats = statsFetcher.getPlayerStatsMap(
+                2, Arrays.asList("Player atp 4 (2)", "Player wta 5 (40)"));
+        System.out.println(stats.keySet());
+        assertEquals(6, stats.size());
+        assertTrue(stats.containsKey("Player atp 1 (2)"));
+        assertTrue(stats.containsKey("Player wta 1 (2)"));
+        assertEquals("Player atp 4", stats.get("Player atp 4 (5)").getName());
+        assertEquals("Current ranking: 6", stats.get("Player wta 5 (6)").getRanking());
+        /* A player who dropped out of the rankings is left out */
+        stats = statsFetcher.getPlayerStatsMap(
+                Arrays.asList("Player atp 4 (2)", "Player atp 9 (10)"));
+        assertEquals(Collections.singleton("Player atp 4 (5)"), stats.keySet());
+    }
+
+    /*
+       Returns a rankings table of NUM_OF_PLAYERS players of the given tour
+     */
+    private RankingsTable createRankingsTable(String tour) {
+        StringBuilder html = new StringBuilder("<table><tr><th>RK</th><th>Name</th></tr>");
+        for (int player = 0; player < NUM_OF_PLAYERS; player++) {
+            html.append("<tr><td>").append(player + 1)
+                    .append("</td><td><a href=\"/player/").append(tour).append("/")
+                    .append(player).append("\">Player ").append(tour).append(" ")
+                    .append(player).append("</a></td></tr>");
+        }
+        html.append("</table>");
+        return new RankingsTable(Jsoup.parse(html.toString(), "https://www.espn.com"));
+    }
+
+    /*
+       Returns a player stats map from the previous refresh, in which every
+       player of the given tables was not playing
+     */
+    private Map<String, PlayerStats> createPreviousStats(RankingsTable mRankings,
+                                                         RankingsTable wRankings) {
+        Map<String, PlayerStats> stats = new HashMap<>();
+        for (RankingsTable rankings : Arrays.asList(mRankings, wRankings)) {
+            for (int index = 0; index < rankings.size(); index++) {
+                stats.put(rankings.getPlayerKey(index), new PlayerStats(
+                        rankings.getName(index),
+                        "Current ranking: " + rankings.getRanking(index),
+                        "Titles: 0", "not playing", "", "", "",
+                        "https://a.espncdn.com/headshot.png",
+                        "https://a.espncdn.com/flag.png"));
+            }
+        }
+        return stats;
+    }
+
+}
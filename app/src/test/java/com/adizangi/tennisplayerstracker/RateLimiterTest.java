@@ -0,0 +1,92 @@
+/*
+   Test for RateLimiter
+   Checks that the limits grow after fast responses, are cut in half once
+   after the overloads of requests that were in flight together, stay in
+   range, and survive saving and restoring
+ */
+
+package com.adizangi.tennisplayerstracker;
+
+import com.adizangi.tennisplayerstracker.network_calls.RateLimiter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+    private static final String HOST = "www.espn.com";
+
+    @Test
+    public void testIncreaseAndDecrease() {
+        RateLimiter rateLimiter = new RateLimiter();
+        int initialConcurrency = rateLimiter.getConcurrency(HOST);
+        double initialRate = rateLimiter.getRate(HOST);
+        for (int i = 0; i < initialConcurrency; i++) {
+            rateLimiter.recordResponse(HOST, 100);
+        }
+        assertEquals(initialConcurrency + 1, rateLimiter.getConcurrency(HOST));
+        assertTrue(rateLimiter.getRate(HOST) > initialRate);
+        rateLimiter.recordResponse(HOST, 5000);
+        assertEquals(initialConcurrency + 1, rateLimiter.getConcurrency(HOST));
+        rateLimiter.recordOverload(HOST, System.nanoTime());
+        assertEquals((initialConcurrency + 1) / 2, rateLimiter.getConcurrency(HOST));
+        for (int i = 0; i < 10; i++) {
+            rateLimiter.recordOverload(HOST, System.nanoTime());
+        }
+        assertEquals(1, rateLimiter.getConcurrency(HOST));
+        assertTrue(rateLimiter.getRate(HOST) > 0);
+    }
+
+    @Test
+    public void testOverloadsOfOneWindow() {
+        RateLimiter rateLimiter = new RateLimiter();
+        for (int i = 0; i < 10; i++) {
+            rateLimiter.recordResponse(HOST, 100);
+        }
+        int concurrency = rateLimiter.getConcurrency(HOST);
+        /* Requests that were in flight together all time out */
+        long requestStart = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            rateLimiter.recordOverload(HOST, requestStart);
+        }
+        assertEquals(concurrency / 2, rateLimiter.getConcurrency(HOST));
+        rateLimiter.recordOverload(HOST, System.nanoTime());
+        assertEquals(concurrency / 4, rateLimiter.getConcurrency(HOST));
+    }
+
+    @Test
+    public void testConcurrencyCap() {
+        RateLimiter rateLimiter = new RateLimiter();
+        for (int i = 0; i < 1000; i++) {
+            rateLimiter.recordResponse(HOST, 10);
+        }
+        int maxConcurrency = rateLimiter.getConcurrency(HOST);
+        rateLimiter.recordResponse(HOST, 10);
+        assertEquals(maxConcurrency, rateLimiter.getConcurrency(HOST));
+        assertTrue(maxConcurrency <= 8);
+    }
+
+    @Test
+    public void testSaveAndRestore() throws InterruptedException {
+        System.out.println("---------------- Test for Rate Limiter ----------------");
+        System.out.println();
+        RateLimiter rateLimiter = new RateLimiter();
+        for (int i = 0; i < 20; i++) {
+            rateLimiter.acquire(HOST);
+            rateLimiter.recordResponse(HOST, 50);
+            rateLimiter.release(HOST);
+        }
+        String savedState = rateLimiter.saveState();
+        System.out.println(savedState);
+        RateLimiter restoredRateLimiter = new RateLimiter();
+        restoredRateLimiter.restoreState(savedState + "bad line\nother.host x 2\n");
+        assertEquals(rateLimiter.getConcurrency(HOST), restoredRateLimiter.getConcurrency(HOST));
+        assertEquals(rateLimiter.getRate(HOST), restoredRateLimiter.getRate(HOST), 0.01);
+        restoredRateLimiter.restoreState(HOST + " 100 100");
+        assertEquals(8, restoredRateLimiter.getConcurrency(HOST));
+        assertEquals(10, restoredRateLimiter.getRate(HOST), 0.01);
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+   Benchmark for Selector
+   Runs the selections of a crawl on generated rankings and player pages,
+   once with CSS query strings and once with precompiled Selectors
+   Checks that both ways select the same elements, and that Selectors are
+   not slower than queries, with a wide margin so a busy machine doesn't
+   fail the test
+   Prints the time each way took and the savings per crawl
+ */
+
+package com.adizangi.tennisplayerstracker;
+
+import com.adizangi.tennisplayerstracker.network_calls.Selector;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SelectorBenchmarkTest {
+
+    private static final int NUM_OF_PLAYERS = 200;
+    private static final int NUM_OF_CRAWLS = 20;
+
+    /* Selectors fail the benchmark only if they take this many times as
+       long as queries */
+    private static final double MAX_TIME_RATIO = 1.5;
+
+    @Test
+    public void testSelectorSavings() {
+        System.out.println("---------------- Benchmark for Selector ----------------");
+        System.out.println();
+        Document rankings = createRankingsPage();
+        Document playerPage = createPlayerPage();
+        assertEquals(crawlWithQueries(rankings, playerPage),
+                crawlWithSelectors(rankings, playerPage));
+        /* Warm up before measuring */
+        for (int crawl = 0; crawl < NUM_OF_CRAWLS; crawl++) {
+            crawlWithQueries(rankings, playerPage);
+            crawlWithSelectors(rankings, playerPage);
+        }
+        long startTime = System.nanoTime();
+        for (int crawl = 0; crawl < NUM_OF_CRAWLS; crawl++) {
+            crawlWithQueries(rankings, playerPage);
+        }
+        long queriesTime = (System.nanoTime() - startTime) / NUM_OF_CRAWLS;
+        startTime = System.nanoTime();
+        for (int crawl = 0; crawl < NUM_OF_CRAWLS; crawl++) {
+            crawlWithSelectors(rankings, playerPage);
+        }
+        long selectorsTime = (System.nanoTime() - startTime) / NUM_OF_CRAWLS;
+        System.out.println("Time per crawl with queries (ms): " + (queriesTime / 1000000.0));
+        System.out.println("Time per crawl with Selectors (ms): " + (selectorsTime / 1000000.0));
+        System.out.println("Savings per crawl (ms): " +
+                ((queriesTime - selectorsTime) / 1000000.0));
+        System.out.println();
+        assertTrue(selectorsTime < queriesTime * MAX_TIME_RATIO);
+    }
+
+    /*
+       Makes the selections of a crawl with CSS query strings, the way the
+       fetchers made them before Selector
+       Returns the number of selected cells, so the work can't be skipped
+     */
+    private int crawlWithQueries(Document rankings, Document playerPage) {
+        int numOfCells = 0;
+        Elements rows = rankings.selectFirst("table").select("tr");
+        for (int rowIndex = 1; rowIndex < rows.size(); rowIndex++) {
+            Elements columns = rows.get(rowIndex).select("td");
+            columns.get(1).selectFirst("a");
+            Element latestTournamentDiv = playerPage.selectFirst("#my-players-table");
+            latestTournamentDiv.selectFirst("h4");
+            Elements resultRows = latestTournamentDiv.select("table").get(1).select("tr");
+            for (Element resultRow : resultRows) {
+                numOfCells += resultRow.select("td").size();
+            }
+            Element playerStatsDiv = playerPage.selectFirst("div.player-stats");
+            playerStatsDiv.selectFirst("p");
+            playerPage.selectFirst("h1");
+        }
+        return numOfCells;
+    }
+
+    /*
+       Makes the same selections as crawlWithQueries() with Selectors
+     */
+    private int crawlWithSelectors(Document rankings, Document playerPage) {
+        int numOfCells = 0;
+        Elements rows = Selector.ROW.select(Selector.TABLE.selectFirst(rankings));
+        for (int rowIndex = 1; rowIndex < rows.size(); rowIndex++) {
+            Elements columns = Selector.CELL.select(rows.get(rowIndex));
+            Selector.LINK.selectFirst(columns.get(1));
+            Element latestTournamentDiv = Selector.MY_PLAYERS_TABLE.selectFirst(playerPage);
+            Selector.H4.selectFirst(latestTournamentDiv);
+            Elements resultRows = Selector.ROW.select(
+                    Selector.TABLE.select(latestTournamentDiv).get(1));
+            for (Element resultRow : resultRows) {
+                numOfCells += Selector.CELL.select(resultRow).size();
+            }
+            Element playerStatsDiv = Selector.PLAYER_STATS.selectFirst(playerPage);
+            Selector.PARAGRAPH.selectFirst(playerStatsDiv);
+            Selector.H1.selectFirst(playerPage);
+        }
+        return numOfCells;
+    }
+
+    /*
+       Returns a page with a rankings table of NUM_OF_PLAYERS players
+     */
+    private Document createRankingsPage() {
+        StringBuilder html = new StringBuilder("<table><tr><th>RK</th><th>Name</th></tr>");
+        for (int player = 1; player <= NUM_OF_PLAYERS; player++) {
+            html.append("<tr><td>").append(player)
+                    .append("</td><td><a href=\"/player/").append(player)
+                    .append("\">Player ").append(player).append("</a></td></tr>");
+        }
+        html.append("</table>");
+        return Jsoup.parse(html.toString(), "http://www.espn.com");
+    }
+
+    /*
+       Returns a player page with the parts that PlayerStatsFetcher reads
+     */
+    private Document createPlayerPage() {
+        StringBuilder html = new StringBuilder("<h1>Player 1</h1>");
+        html.append("<div class=\"player-stats\"><p>2020 Stats</p><table>")
+                .append("<tr><td>Titles</td></tr><tr><td>2</td></tr></table></div>");
+        html.append("<div id=\"my-players-table\"><h4>CURRENT TOURNAMENT</h4>")
+                .append("<a href=\"/tournament\">Open</a><table></table><table>")
+                .append("<tr><td>Round</td></tr><tr><td>Men's Singles</td></tr>");
+        for (int round = 1; round <= 6; round++) {
+            html.append("<tr><td>Round ").append(round)
+                    .append("</td><td>Opponent</td><td>W</td><td>6-4 6-4</td></tr>");
+        }
+        html.append("</table></div>");
+        return Jsoup.parse(html.toString(), "http://www.espn.com");
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+   Test for SnapshotDiff
+   Checks the events that are found between two snapshots, that players
+   whose stats didn't change have no events, and that a match today is
+   listed even if the previous snapshot had the same upcoming match
+ */
+
+package com.adizangi.tennisplayerstracker;
+
+import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+import com.adizangi.tennisplayerstracker.utils_data.SnapshotDiff;
+import com.adizangi.tennisplayerstracker.utils_data.StatsEvent;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SnapshotDiffTest {
+
+    @Test
+    public void testDiff() {
+        System.out.println("---------------- Test for SnapshotDiff ----------------");
+        Map<String, PlayerStats> previous = new HashMap<>();
+        Map<String, PlayerStats> current = new HashMap<>();
+        put(previous, "Rafael Nadal", "1", "3", "advanced to R2", "R1- Player A 6-1 6-1", "");
+        put(current, "Rafael Nadal", "1", "3", "advanced to R3", "R2- Player B 6-2 6-2",
+                "Rafael Nadal 1:00 PM ET");
+        put(previous, "Roger Federer", "10", "1", "advanced to R2", "R1- Player C 6-3 6-3", "");
+        put(current, "Roger Federer", "16", "1", "out", "R2- Player D 3-6 3-6", "");
+        put(previous, "Novak Djokovic", "2", "4", "advanced to F", "SF- Player E 6-4 6-4", "");
+        put(current, "Novak Djokovic", "2", "5", "winner", "F- Player F 6-4 6-4", "");
+        put(previous, "Andy Murray", "50", "0", "not playing", "", "");
+        put(current, "Andy Murray", "50", "0", "not playing", "", "");
+        put(current, "Dominic Thiem", "3", "2", "advanced to R2", "R1- Player G 6-0 6-0",
+                "Dominic Thiem 3:00 PM ET");
+        List<StatsEvent> events = new SnapshotDiff(SnapshotDiff.DEFAULT_RANK_THRESHOLD)
+                .diff(previous, current);
+        Map<String, String> types = new HashMap<>();
+        for (StatsEvent event : events) {
+            System.out.println(event.getType() + ": " + event.getText());
+            String type = types.get(event.getPlayer());
+            types.put(event.getPlayer(), type == null ? event.getType() :
+                    type + "," + event.getType());
+        }
+        assertEquals(StatsEvent.TYPE_ADVANCED + "," + StatsEvent.TYPE_MATCH_SCHEDULED,
+                types.get("Rafael Nadal"));
+        assertEquals(StatsEvent.TYPE_ELIMINATED + "," + StatsEvent.TYPE_RANK_CHANGE,
+                types.get("Roger Federer"));
+        assertEquals(StatsEvent.TYPE_WON_TITLE, types.get("Novak Djokovic"));
+        assertEquals(StatsEvent.TYPE_MATCH_SCHEDULED, types.get("Dominic Thiem"));
+        assertNull(types.get("Andy Murray"));
+        assertEquals(6, events.size());
+    }
+
+    @Test
+    public void testSmallRankChange() {
+        Map<String, PlayerStats> previous = new HashMap<>();
+        Map<String, PlayerStats> current = new HashMap<>();
+        put(previous, "Rafael Nadal", "10", "3", "not playing", "", "");
+        put(current, "Rafael Nadal", "12", "3", "not playing", "", "");
+        assertEquals(0, new SnapshotDiff(SnapshotDiff.DEFAULT_RANK_THRESHOLD)
+                .diff(previous, current).size());
+    }
+
+    @Test
+    public void testSameMatchTimeOnConsecutiveDays() {
+        Map<String, PlayerStats> previous = new HashMap<>();
+        Map<String, PlayerStats> current = new HashMap<>();
+        put(previous, "Rafael Nadal", "1", "3", "advanced to R2", "R1- Player A 6-1 6-1",
+                "Rafael Nadal 1:00 PM ET");
+        put(current, "Rafael Nadal", "1", "3", "advanced to R2", "R1- Player A 6-1 6-1",
+                "Rafael Nadal 1:00 PM ET");
+        List<StatsEvent> events = new SnapshotDiff(SnapshotDiff.DEFAULT_RANK_THRESHOLD)
+                .diff(previous, current);
+        assertEquals(1, events.size());
+        assertEquals(StatsEvent.TYPE_MATCH_SCHEDULED, events.get(0).getType());
+        assertEquals("Rafael Nadal 1:00 PM ET", events.get(0).getText());
+    }
+
+    private void put(Map<String, PlayerStats> snapshot, String name, String ranking,
+                     String titles, String standing, String latestMatchResult,
+                     String upcomingMatch) {
+        snapshot.put(name, new PlayerStats(name, "Current ranking: " + ranking,
+                "2020 singles titles: " + titles, standing,
+                standing.equals("not playing") ? "" : "Australian Open",
+                latestMatchResult, upcomingMatch));
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+   Test for SnapshotStore
+   Checks point in time reads of players, removed players, reopening the
+   segment, compaction, and the size and read time of a season of history
+ */
+
+package com.adizangi.tennisplayerstracker;
+
+import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+import com.adizangi.tennisplayerstracker.utils_data.SnapshotStore;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotStoreTest {
+
+    @Test
+    public void testPointInTimeReads() throws Exception {
+        SnapshotStore store = SnapshotStore.open(Files.createTempDirectory("snapshots").toFile());
+        store.appendSnapshot(100, Arrays.asList(
+                getStats("Rafael Nadal", "2", "Match 1"),
+                getStats("Roger Federer", "3", "Match 2")));
+        store.appendSnapshot(101, Arrays.asList(
+                getStats("Rafael Nadal", "1", "Match 3"),
+                getStats("Roger Federer", "3", "Match 2")));
+        store.appendSnapshot(103, Arrays.asList(
+                getStats("Rafael Nadal", "1", "Match 4")));
+        assertNull(store.getPlayerStats("Rafael Nadal", 99));
+        assertEquals("2", store.getPlayerStats("Rafael Nadal", 100).getRanking());
+        assertEquals("Match 3", store.getPlayerStats("Rafael Nadal", 102).getLatestMatchResult());
+        assertEquals("Match 4", store.getPlayerStats("Rafael Nadal", 200).getLatestMatchResult());
+        assertEquals("Match 2", store.getPlayerStats("Roger Federer", 102).getLatestMatchResult());
+        assertNull(store.getPlayerStats("Roger Federer", 103));
+        assertEquals(Arrays.asList(100, 101, 103), store.getDays());
+        assertEquals(Arrays.asList(100, 103), store.getChangeDays("Roger Federer"));
+        assertEquals(2, store.getSnapshot(101).size());
+        assertEquals(1, store.getSnapshot(103).size());
+    }
+
+    @Test
+    public void testSameDayReplaces() throws Exception {
+        SnapshotStore store = SnapshotStore.open(Files.createTempDirectory("snapshots").toFile());
+        store.appendSnapshot(100, Arrays.asList(getStats("Rafael Nadal", "2", "Match 1")));
+        store.appendSnapshot(100, Arrays.asList(getStats("Rafael Nadal", "2", "Match 2")));
+        assertEquals("Match 2", store.getPlayerStats("Rafael Nadal", 100).getLatestMatchResult());
+        assertEquals(Arrays.asList(100), store.getDays());
+    }
+
+    @Test
+    public void testCutRecordIsDropped() throws Exception {
+        File directory = Files.createTempDirectory("snapshots").toFile();
+        SnapshotStore store = SnapshotStore.open(directory);
+        store.appendSnapshot(100, Arrays.asList(getStats("Rafael Nadal", "2", "Match 1")));
+        long length = store.getSizeBytes();
+        store.appendSnapshot(101, Arrays.asList(getStats("Rafael Nadal", "1", "Match 2")));
+        File segmentFile = new File(directory, "history.seg");
+        try (RandomAccessFile out = new RandomAccessFile(segmentFile, "rw")) {
+            out.setLength(segmentFile.length() - 2);
+        }
+        File copy = Files.createTempDirectory("snapshots").toFile();
+        Files.copy(segmentFile.toPath(), new File(copy, "history.seg").toPath());
+        SnapshotStore reopened = SnapshotStore.open(copy);
+        assertEquals(Arrays.asList(100), reopened.getDays());
+        assertEquals("Match 1", reopened.getPlayerStats("Rafael Nadal", 101).getLatestMatchResult());
+        assertTrue(reopened.getSizeBytes() >= length);
+        reopened.appendSnapshot(102, Arrays.asList(getStats("Rafael Nadal", "1", "Match 3")));
+        assertEquals("Match 3", reopened.getPlayerStats("Rafael Nadal", 102).getLatestMatchResult());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        SnapshotStore store = SnapshotStore.open(Files.createTempDirectory("snapshots").toFile());
+        for (int day = 0; day < 50; day++) {
+            List<PlayerStats> stats = new ArrayList<>();
+            stats.add(getStats("Rafael Nadal", "1", "Match " + day));
+            if (day < 20) {
+                stats.add(getStats("Roger Federer", "3", "Match " + day));
+            }
+            store.appendSnapshot(day, stats);
+        }
+        long sizeBefore = store.getSizeBytes();
+        store.compact(40);
+        assertTrue(store.getSizeBytes() < sizeBefore);
+        assertEquals(40, (int) store.getDays().get(0));
+        assertEquals(10, store.getDays().size());
+        assertEquals("Match 40", store.getPlayerStats("Rafael Nadal", 40).getLatestMatchResult());
+        assertEquals("Match 45", store.getPlayerStats("Rafael Nadal", 45).getLatestMatchResult());
+        assertNull(store.getPlayerStats("Rafael Nadal", 39));
+        assertNull(store.getPlayerStats("Roger Federer", 45));
+        store.appendSnapshot(50, Arrays.asList(getStats("Rafael Nadal", "1", "Match 40")));
+        assertEquals("Match 40", store.getPlayerStats("Rafael Nadal", 50).getLatestMatchResult());
+    }
+
+    @Test
+    public void testSeason() throws Exception {
+        System.out.println("---------------- Test for SnapshotStore ----------------");
+        SnapshotStore store = SnapshotStore.open(Files.createTempDirectory("snapshots").toFile());
+        Random random = new Random(7);
+        int numOfPlayers = 2000;
+        String[] rankings = new String[numOfPlayers];
+        String[] results = new String[numOfPlayers];
+        for (int i = 0; i < numOfPlayers; i++) {
+            rankings[i] = String.valueOf(i + 1);
+            results[i] = "No matches yet";
+        }
+        int numOfDays = 366;
+        for (int day = 0; day < numOfDays; day++) {
+            /* Rankings change once a week, and about a tenth of the players
+               play every day */
+            if (day % 7 == 0) {
+                for (int i = 0; i < numOfPlayers; i++) {
+                    rankings[i] = String.valueOf(Math.max(1, i + 1 + random.nextInt(11) - 5));
+                }
+            }
+            for (int i = 0; i < numOfPlayers / 10; i++) {
+                int player = random.nextInt(numOfPlayers);
+                results[player] = "Won against Player " + random.nextInt(numOfPlayers) +
+                        " 6-" + random.nextInt(5) + " 6-" + random.nextInt(5);
+            }
+            List<PlayerStats> stats = new ArrayList<>();
+            for (int i = 0; i < numOfPlayers; i++) {
+                stats.add(getStats("Player " + i, rankings[i], results[i]));
+            }
+            store.appendSnapshot(day, stats);
+        }
+        System.out.println("Size of a season: " + store.getSizeBytes() / 1024 + " KB");
+        assertTrue(store.getSizeBytes() < 8 * 1024 * 1024);
+        int numOfReads = 100000;
+        long start = System.nanoTime();
+        for (int i = 0; i < numOfReads; i++) {
+            store.getPlayerStats("Player " + random.nextInt(numOfPlayers),
+                    random.nextInt(numOfDays));
+        }
+        long micros = (System.nanoTime() - start) / 1000 / numOfReads;
+        System.out.println("Read time: " + micros + " microseconds");
+        assertTrue(micros < 1000);
+        Map<String, PlayerStats> latest = store.getSnapshot(numOfDays - 1);
+        assertEquals(numOfPlayers, latest.size());
+        assertEquals(results[5], latest.get("Player 5").getLatestMatchResult());
+    }
+
+    private PlayerStats getStats(String name, String ranking, String latestMatchResult) {
+        return new PlayerStats(name, ranking, "Titles: 0", "Standing",
+                "Tournament", latestMatchResult, "Upcoming");
+    }
+
+}
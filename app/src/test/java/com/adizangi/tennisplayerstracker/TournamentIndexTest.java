@@ -0,0 +1,232 @@
+/*
+   Test for TournamentIndex
+   Builds an index from fixture pages of yesterday's and today's matches of
+   two tournaments, and checks the standings of the winners, the losers and
+   the players whose matches are upcoming, and which players the index
+   covers
+   Checks that the index gives a player the same standing, latest match
+   result, upcoming match and matches as PlayerStatsFetcher takes from the
+   player's page
+ */
+
+package com.adizangi.tennisplayerstracker;
+
+import com.adizangi.tennisplayerstracker.network_calls.PlayerStatsFetcher;
+import com.adizangi.tennisplayerstracker.network_calls.RankingsTable;
+import com.adizangi.tennisplayerstracker.network_calls.TournamentIndex;
+import com.adizangi.tennisplayerstracker.utils_data.MatchRecord;
+import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TournamentIndexTest {
+
+    private static final String BASE_URL = "https://www.espn.com";
+
+    private TournamentIndex tournamentIndex;
+
+    /*
+       Builds the index from the fixture pages
+       In the Open, yesterday's quarterfinal and semifinal were played, and
+       today's semifinal and final are upcoming
+       In the Cup, yesterday's final was played and today there are no
+       singles matches
+     */
+    @Before
+    public void addPages() {
+        tournamentIndex = new TournamentIndex();
+        tournamentIndex.addTournamentPage(createTournamentPage("Open",
+                createPlayedMatch("Men's Singles - Quarterfinal: Court 2",
+                        "c", "Player C", "e", "Player E", "7-6 6-3", "6-7 3-6") +
+                createPlayedMatch("Men's Singles - Semifinal: Center Court",
+                        "a", "Player A", "b", "Player B", "6-4 6-4", "4-6 4-6")), false);
+        tournamentIndex.addTournamentPage(createTournamentPage("Cup",
+                createPlayedMatch("Women's Singles - Final: Center Court",
+                        "w", "Player W", "x", "Player X", "6-2 6-1", "2-6 1-6")), false);
+        tournamentIndex.addTournamentPage(createTournamentPage("Open",
+                createUpcomingMatch("Men's Singles - Semifinal: Court 1",
+                        "Match: 11:00 AM ET - Court 1", "c", "Player C", "f", "Player F") +
+                createUpcomingMatch("Men's Singles - Final: Center Court",
+                        "Match: 2:00 PM ET - Center Court", "a", "Player A", "d", "Player D") +
+                createUpcomingMatch("Men's Doubles - Final: Court 3",
+                        "Match: 4:00 PM ET - Court 3", "g", "Player G", "h", "Player H")), true);
+        tournamentIndex.addTournamentPage(createTournamentPage("Cup", ""), true);
+    }
+
+    @Test
+    public void testStandings() {
+        System.out.println("---------------- Test for TournamentIndex ----------------");
+        /* Won the semifinal, so the winner of the final isn't known yet */
+        assertTrue(tournamentIndex.covers(getURL("a")));
+        assertEquals("advanced to Final", tournamentIndex.getTournamentStanding(getURL("a")));
+        assertEquals("Open", tournamentIndex.getCurrentTournament(getURL("a")));
+        assertEquals("Semifinal- Player B 6-4 6-4",
+                tournamentIndex.getLatestMatchResult(getURL("a")));
+        assertEquals("Player A 2:00 PM ET", tournamentIndex.getUpcomingMatch(getURL("a")));
+        /* Won the quarterfinal */
+        assertTrue(tournamentIndex.covers(getURL("c")));
+        assertEquals("advanced to Semifinal",
+                tournamentIndex.getTournamentStanding(getURL("c")));
+        assertEquals("Quarterfinal- Player E 7-6 6-3",
+                tournamentIndex.getLatestMatchResult(getURL("c")));
+        /* Eliminated */
+        assertTrue(tournamentIndex.covers(getURL("b")));
+        assertEquals("out", tournamentIndex.getTournamentStanding(getURL("b")));
+        assertEquals("Semifinal- Player A 6-4 6-4",
+                tournamentIndex.getLatestMatchResult(getURL("b")));
+        assertEquals("", tournamentIndex.getUpcomingMatch(getURL("b")));
+        assertEquals("out", tournamentIndex.getTournamentStanding(getURL("x")));
+        assertEquals(3, tournamentIndex.getObservedMatches().size());
+    }
+
+    @Test
+    public void testCovers() {
+        /* Won the final, so the player's titles changed */
+        assertTrue(tournamentIndex.contains(getURL("w")));
+        assertFalse(tournamentIndex.covers(getURL("w")));
+        /* Only in today's page, so the latest match result isn't known */
+        assertTrue(tournamentIndex.contains(getURL("d")));
+        assertFalse(tournamentIndex.covers(getURL("d")));
+        assertFalse(tournamentIndex.covers(getURL("f")));
+        /* Doubles matches are not indexed */
+        assertFalse(tournamentIndex.contains(getURL("g")));
+        assertFalse(tournamentIndex.contains(getURL("z")));
+        assertFalse(tournamentIndex.covers(getURL("z")));
+    }
+
+    @Test
+    public void testParityWithPlayerPages() {
+        PlayerStatsFetcher statsFetcher = new PlayerStatsFetcher(
+                new RankingsTable(new Document(BASE_URL)),
+                new RankingsTable(new Document(BASE_URL)));
+        String today = new SimpleDateFormat("MMMMM d", Locale.US).format(new Date());
+        PlayerStats aStats = statsFetcher.getPlayerStats(createPlayerPage("Player A",
+                createResultRow("Quarterfinal", "Player G", "W", "6-3 6-3") +
+                createResultRow("Semifinal", "Player B", "W", "6-4 6-4") +
+                createResultRow("Final", "Player D", "-", today + " 2:00 PM ET")), "Player A", "1");
+        assertSameAsIndex(aStats, getURL("a"));
+        PlayerStats bStats = statsFetcher.getPlayerStats(createPlayerPage("Player B",
+                createResultRow("Quarterfinal", "Player H", "W", "6-2 6-2") +
+                createResultRow("Semifinal", "Player A", "L", "6-4 6-4")), "Player B", "2");
+        assertSameAsIndex(bStats, getURL("b"));
+        List<MatchRecord> profileMatches = statsFetcher.getObservedMatches();
+        MatchRecord semifinal = null;
+        for (MatchRecord match : tournamentIndex.getObservedMatches()) {
+            if (match.getWinner().equals("Player A")) {
+                semifinal = match;
+            }
+        }
+        assertEquals(semifinal.getPairKey(), profileMatches.get(1).getPairKey());
+        assertEquals(semifinal.getRound(), profileMatches.get(1).getRound());
+        assertEquals(semifinal.getScore(), profileMatches.get(1).getScore());
+        assertEquals(semifinal.getTournament(), profileMatches.get(1).getTournament());
+    }
+
+    /*
+       Checks that the given stats, which were taken from a player's page,
+       are the same as what the index has for the player with the given URL
+     */
+    private void assertSameAsIndex(PlayerStats playerStats, String playerURL) {
+        System.out.println(playerStats.getStatsSummary());
+        assertTrue(tournamentIndex.covers(playerURL));
+        assertEquals(playerStats.getTournamentStanding(),
+                tournamentIndex.getTournamentStanding(playerURL));
+        assertEquals(playerStats.getCurrentTournament(),
+                tournamentIndex.getCurrentTournament(playerURL));
+        assertEquals(playerStats.getLatestMatchResult(),
+                tournamentIndex.getLatestMatchResult(playerURL));
+        assertEquals(playerStats.getUpcomingMatch(),
+                tournamentIndex.getUpcomingMatch(playerURL));
+    }
+
+    /*
+       Returns the URL of the page of the player with the given ID
+     */
+    private String getURL(String id) {
+        return BASE_URL + "/tennis/player/_/id/" + id;
+    }
+
+    /*
+       Returns the daily match schedule page of the tournament with the
+       given name, with the given matches
+     */
+    private Document createTournamentPage(String tournament, String matches) {
+        return Jsoup.parse("<html><head><title>" + tournament +
+                " Daily Match Schedule - ESPN</title></head><body>" + matches +
+                "</body></html>", BASE_URL);
+    }
+
+    /*
+       Returns a match of the given round between the players with the given
+       IDs and names, which the first player won with the given score
+       The score table has a row of each player's games
+     */
+    private String createPlayedMatch(String round,
+                                     String winnerId, String winnerName,
+                                     String loserId, String loserName,
+                                     String winnerScore, String loserScore) {
+        return "<div class=\"matchCourt\">" + round + "</div>" +
+                "<div class=\"matchTitle\">Final</div>" +
+                "<table><tr><th>Players</th></tr>" +
+                "<tr><td><div class=\"arrowWrapper\"></div><a href=\"" + getURL(winnerId) +
+                "\">" + winnerName + "</a></td></tr>" +
+                "<tr><td><a href=\"" + getURL(loserId) + "\">" + loserName +
+                "</a></td></tr></table>" +
+                "<table><tr><th>Score</th></tr><tr><td>" + winnerScore + "</td></tr>" +
+                "<tr><td>" + loserScore + "</td></tr></table>";
+    }
+
+    /*
+       Returns a match of the given round with the given title between the
+       players with the given IDs and names, which wasn't played yet
+     */
+    private String createUpcomingMatch(String round, String title,
+                                       String firstId, String firstName,
+                                       String secondId, String secondName) {
+        return "<div class=\"matchCourt\">" + round + "</div>" +
+                "<div class=\"matchTitle\">" + title + "</div>" +
+                "<table><tr><th>Players</th></tr>" +
+                "<tr><td><a href=\"" + getURL(firstId) + "\">" + firstName + "</a></td></tr>" +
+                "<tr><td><a href=\"" + getURL(secondId) + "\">" + secondName +
+                "</a></td></tr></table>" +
+                "<table><tr><th>Score</th></tr><tr><td></td></tr><tr><td></td></tr></table>";
+    }
+
+    /*
+       Returns the page of the player with the given name, whose current
+       tournament is the Open, with the given rows of results
+     */
+    private Document createPlayerPage(String name, String resultRows) {
+        return Jsoup.parse("<html><body>" +
+                "<h1>" + name + "</h1>" +
+                "<div class=\"player-stats\"><p>2020 Stats</p><table><tr><td>Titles</td>" +
+                "</tr><tr><td>1</td></tr></table></div>" +
+                "<div id=\"my-players-table\"><h4>CURRENT TOURNAMENT</h4>" +
+                "<a href=\"/tennis/tournament\">Open</a><table></table><table>" +
+                "<tr><td>Round</td></tr><tr><td>Men's Singles</td></tr>" + resultRows +
+                "</table></div></body></html>", BASE_URL);
+    }
+
+    /*
+       Returns a row of a player's results with the given round, opponent,
+       result and score, or the date and time for a match that wasn't played
+     */
+    private String createResultRow(String round, String opponent,
+                                   String result, String score) {
+        return "<tr><td>" + round + "</td><td>" + opponent + "</td><td>" + result +
+                "</td><td>" + score + "</td></tr>";
+    }
+
+}
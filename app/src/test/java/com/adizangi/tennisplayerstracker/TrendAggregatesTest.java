@@ -0,0 +1,80 @@
+/*
+   Test for TrendAggregates
+   Checks the ranking trajectory, the counting of wins and losses, including
+   a won final, and the titles progression as snapshots are added
+ */
+
+package com.adizangi.tennisplayerstracker;
+
+import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+import com.adizangi.tennisplayerstracker.utils_data.TrendAggregates;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TrendAggregatesTest {
+
+    @Test
+    public void testTrends() {
+        System.out.println("---------------- Test for TrendAggregates ----------------");
+        TrendAggregates trends = new TrendAggregates();
+        update(trends, 0, "20", "1", "not playing", "");
+        update(trends, 1, "20", "1", "advanced to Round 2", "Round 1- Player A 6-1 6-2");
+        /* The same snapshot again doesn't count the match twice */
+        update(trends, 1, "20", "1", "advanced to Round 2", "Round 1- Player A 6-1 6-2");
+        update(trends, 2, "20", "1", "advanced to Round 3", "Round 2- Player B 6-3 6-4");
+        update(trends, 3, "20", "1", "advanced to Round 4", "Round 3- automatically advanced");
+        update(trends, 4, "20", "1", "out", "Round 4- Player C 3-6 4-6");
+        update(trends, 7, "15", "1", "not playing", "");
+        update(trends, 14, "12", "2", "not playing", "");
+        TrendAggregates.PlayerTrend trend = trends.getTrend("Rafael Nadal");
+        assertEquals("WWL", trend.getForm());
+        assertEquals(-1, trend.getStreak());
+        assertEquals(Arrays.asList(20, 15, 12), trend.getRankings());
+        assertEquals(12, trend.getRanking());
+        assertEquals(12, trend.getBestRanking());
+        assertEquals(3, trend.getRankingChangeSince(7));
+        assertEquals(8, trend.getRankingChangeSince(0));
+        assertEquals(Arrays.asList(1, 2), trend.getTitlesProgression());
+        String summary = trend.getSummary(trends.getLatestDay());
+        System.out.println(summary);
+        assertEquals("Ranking trend: 20 → 15 → 12 (up 3 this week), best 12\n" +
+                "Form: W W L\n" +
+                "Titles this season: 1 → 2", summary);
+        assertNull(trends.getTrend("Roger Federer"));
+    }
+
+    @Test
+    public void testWinningFinal() {
+        TrendAggregates trends = new TrendAggregates();
+        update(trends, 0, "3", "1", "advanced to Final", "Semifinal- Player A 6-4 6-4");
+        update(trends, 1, "3", "1", "winner", "Final- Player B 7-5 6-3");
+        TrendAggregates.PlayerTrend trend = trends.getTrend("Rafael Nadal");
+        assertEquals("WW", trend.getForm());
+        assertEquals(2, trend.getStreak());
+    }
+
+    @Test
+    public void testNewSeason() {
+        TrendAggregates trends = new TrendAggregates();
+        update(trends, 0, "5", "3", "not playing", "");
+        update(trends, 1, "5", "4", "not playing", "");
+        update(trends, 2, "5", "0", "not playing", "");
+        TrendAggregates.PlayerTrend trend = trends.getTrend("Rafael Nadal");
+        assertEquals(Collections.singletonList(0), trend.getTitlesProgression());
+        assertEquals("", trend.getSummary(trends.getLatestDay()));
+    }
+
+    private void update(TrendAggregates trends, int day, String ranking, String titles,
+                        String standing, String latestMatchResult) {
+        trends.update(day, Collections.singletonList(new PlayerStats("Rafael Nadal",
+                "Current ranking: " + ranking, "2020 singles titles: " + titles,
+                standing, "", latestMatchResult, "")));
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+   Test for WidgetSnapshot
+   Checks that the rows are read back as they were written, that only
+   MAX_ROWS rows are kept, that bytes that aren't a widget snapshot are
+   rejected, and how long reading the rows takes
+ */
+
+package com.adizangi.tennisplayerstracker;
+
+import com.adizangi.tennisplayerstracker.utils_data.PlayerStats;
+import com.adizangi.tennisplayerstracker.utils_data.WidgetSnapshot;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WidgetSnapshotTest {
+
+    @Test
+    public void testBuildAndRead() throws IOException {
+        System.out.println("---------------- Test for WidgetSnapshot ----------------");
+        List<PlayerStats> stats = new ArrayList<>();
+        stats.add(new PlayerStats("Rafael Nadal", "Current ranking: 1",
+                "2020 singles titles: 3", "advanced to R3", "Australian Open",
+                "R2- Player B 6-2 6-2", "Rafael Nadal vs. Player C 1:00 PM ET"));
+        stats.add(new PlayerStats("Dominic Thiem", "Current ranking: unknown",
+                "2020 singles titles: 0", "not playing", "", "", ""));
+        stats.add(new PlayerStats("Bianca Andreescu", "Current ranking: 7",
+                "2020 singles titles: 1", "out", "Australian Open",
+                "R1- Player D 3-6 3-6", ""));
+        WidgetSnapshot snapshot = new WidgetSnapshot(WidgetSnapshot.build(stats, 1234L));
+        assertEquals(3, snapshot.getNumOfRows());
+        assertEquals(1234L, snapshot.getCreatedTime());
+        assertEquals(1, snapshot.getRankingNumber(0));
+        assertEquals("Rafael Nadal", snapshot.getName(0));
+        assertEquals("advanced to R3", snapshot.getTournamentStanding(0));
+        assertEquals("Rafael Nadal vs. Player C 1:00 PM ET", snapshot.getUpcomingMatch(0));
+        assertEquals(-1, snapshot.getRankingNumber(1));
+        assertEquals("Dominic Thiem", snapshot.getName(1));
+        assertEquals("", snapshot.getUpcomingMatch(1));
+        assertEquals(7, snapshot.getRankingNumber(2));
+        assertEquals("Bianca Andreescu", snapshot.getName(2));
+        assertEquals("out", snapshot.getTournamentStanding(2));
+    }
+
+    @Test
+    public void testMaxRows() throws IOException {
+        List<PlayerStats> stats = new ArrayList<>();
+        for (int i = 1; i <= WidgetSnapshot.MAX_ROWS + 5; i++) {
+            stats.add(new PlayerStats("Player " + i, "Current ranking: " + i,
+                    "2020 singles titles: 0", "not playing", "", "", ""));
+        }
+        byte[] data = WidgetSnapshot.build(stats, 0);
+        WidgetSnapshot snapshot = new WidgetSnapshot(data);
+        assertEquals(WidgetSnapshot.MAX_ROWS, snapshot.getNumOfRows());
+        assertEquals("Player " + WidgetSnapshot.MAX_ROWS,
+                snapshot.getName(WidgetSnapshot.MAX_ROWS - 1));
+        int rounds = 10000;
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            WidgetSnapshot read = new WidgetSnapshot(data);
+            for (int row = 0; row < read.getNumOfRows(); row++) {
+                read.getName(row);
+                read.getTournamentStanding(row);
+                read.getUpcomingMatch(row);
+            }
+        }
+        long micros = (System.nanoTime() - start) / 1000 / rounds;
+        System.out.println("File size: " + data.length + " bytes, read all rows in " +
+                micros + " microseconds");
+        assertTrue(micros < 1000);
+    }
+
+    @Test
+    public void testNotASnapshot() {
+        try {
+            new WidgetSnapshot(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14});
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+        try {
+            new WidgetSnapshot(new byte[3]);
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+}